@@ -0,0 +1,98 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.FursClient;
+import com.github.mslenc.fursinvoices.FursClientAsync;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FursClientAsync#fromBlocking} against the local stand-in, with a fixed pool
+ * of platform threads and with a virtual-thread-per-task executor: all submissions are issued
+ * at once, and the time until all have completed, the latency percentiles and the peak number
+ * of live threads are reported. The virtual-thread executor is created by reflection, so this
+ * compiles for Java 8, and is skipped on JVMs older than 21.
+ * <p>
+ * Usage: <tt>AdapterBenchmark [submissions (10000)] [latency ms (20)] [pool threads (200)]</tt>
+ */
+public class AdapterBenchmark {
+    public static void main(String[] args) throws Exception {
+        int submissions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int poolThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        LocalFurs localFurs = new LocalFurs(latencyMillis, 0);
+        FursClient client = FursClient.create(localFurs.createConfig(), localFurs.httpClient());
+        InvoiceFactory invoices = new InvoiceFactory(12345678, 87654321, "P1", "D1");
+
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+
+        // warm up both, so that neither pays for class loading and JIT compilation
+        run("warmup", client, invoices, Executors.newFixedThreadPool(poolThreads), submissions / 10);
+        if (virtualThreads != null)
+            run("warmup", client, invoices, newVirtualThreadPerTaskExecutor(), submissions / 10);
+
+        run(String.format("fixed pool (%d threads)", poolThreads), client, invoices, Executors.newFixedThreadPool(poolThreads), submissions);
+        if (virtualThreads != null) {
+            run("virtual thread per task", client, invoices, virtualThreads, submissions);
+        } else {
+            System.out.println("virtual thread per task: not available (requires Java 21 or later)");
+        }
+    }
+
+    private static void run(String name, FursClient client, InvoiceFactory invoices, ExecutorService executor, int submissions) throws InterruptedException {
+        FursClientAsync asyncClient = FursClientAsync.fromBlocking(client, executor);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        long[] latencies = new long[submissions];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[submissions];
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < submissions; i++) {
+            int index = i;
+            long start = System.nanoTime();
+            futures[i] = asyncClient.invoice(invoices.next()).whenComplete((uniqueInvoiceId, error) -> latencies[index] = System.nanoTime() - start);
+        }
+
+        long failed = 0;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        if (name.equals("warmup"))
+            return;
+
+        Arrays.sort(latencies);
+        System.out.printf("%-28s %,8d invoices in %6.2f s  %,9.0f/s  p50 %7.1f ms  p99 %7.1f ms  peak threads %5d  failed %d%n",
+            name, submissions, elapsed, submissions / elapsed, millis(latencies, 0.50), millis(latencies, 0.99), threads.getPeakThreadCount(), failed);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Returns <tt>Executors.newVirtualThreadPerTaskExecutor()</tt>, or null before Java 21.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.FursClientAsync;
+import com.github.mslenc.fursinvoices.FursClientOptions;
+import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how much the asynchronous client delays the thread that completes its HTTP futures,
+ * which in a Netty or Vert.x application is an event loop that also serves everything else.
+ * The local stand-in's responses are completed on a single "event loop" thread, and a probe
+ * task is queued on that thread every millisecond; the time each probe waits before it runs is
+ * the event loop's queueing delay. Invoices are submitted at a fixed rate, first without a CPU
+ * executor (so the responses are verified and parsed on the event loop) and then with one.
+ * <p>
+ * Usage: <tt>EventLoopBenchmark [rate (200)] [seconds (10)] [latency ms (20)] [cpu threads (available processors)]</tt>
+ */
+public class EventLoopBenchmark {
+    public static void main(String[] args) throws Exception {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        int cpuThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        LocalFurs localFurs = new LocalFurs(0, 0);
+        InvoiceFactory invoices = new InvoiceFactory(12345678, 87654321, "P1", "D1");
+        ScheduledExecutorService server = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads("local-furs"));
+        ScheduledExecutorService eventLoop = Executors.newSingleThreadScheduledExecutor(daemonThreads("event-loop"));
+        ExecutorService cpuExecutor = Executors.newFixedThreadPool(cpuThreads, daemonThreads("cpu"));
+
+        // the stand-in does its own work elsewhere; only completing the future is left to the event loop
+        HttpClientAsync httpClient = request -> {
+            CompletableFuture<byte[]> promise = new CompletableFuture<>();
+            server.schedule(() -> {
+                try {
+                    byte[] response = localFurs.handle(request);
+                    eventLoop.execute(() -> promise.complete(response));
+                } catch (Throwable t) {
+                    eventLoop.execute(() -> promise.completeExceptionally(t));
+                }
+            }, latencyMillis, TimeUnit.MILLISECONDS);
+            return promise;
+        };
+
+        FursClientAsync onEventLoop = FursClientAsync.create(localFurs.createConfig(), httpClient, new FursClientOptions());
+        FursClientAsync onCpuExecutor = FursClientAsync.create(localFurs.createConfig(), httpClient, new FursClientOptions().setCpuExecutor(cpuExecutor));
+
+        // warm up both, then alternate, so that neither benefits from running later
+        run("warmup", onEventLoop, invoices, eventLoop, rate, 2);
+        run("warmup", onCpuExecutor, invoices, eventLoop, rate, 2);
+        for (int round = 0; round < 2; round++) {
+            run("without CPU executor       ", onEventLoop, invoices, eventLoop, rate, seconds);
+            run(String.format("with CPU executor (%2d thr.)", cpuThreads), onCpuExecutor, invoices, eventLoop, rate, seconds);
+        }
+
+        server.shutdownNow();
+        eventLoop.shutdownNow();
+        cpuExecutor.shutdownNow();
+    }
+
+    private static void run(String name, FursClientAsync client, InvoiceFactory invoices, ScheduledExecutorService eventLoop, double rate, int seconds) throws InterruptedException {
+        long[] loopDelays = new long[seconds * 1000 + 1000];
+        AtomicInteger loopDelayCount = new AtomicInteger();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(daemonThreads("ticker"));
+        ScheduledFuture<?> probes = ticker.scheduleAtFixedRate(() -> {
+            long queuedAt = System.nanoTime();
+            eventLoop.execute(() -> {
+                int index = loopDelayCount.getAndIncrement();
+                if (index < loopDelays.length)
+                    loopDelays[index] = System.nanoTime() - queuedAt;
+            });
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        int count = (int) (rate * seconds);
+        long[] latencies = new long[count];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long intended = t0 + (long) (i * intervalNanos);
+            long waitNanos = intended - System.nanoTime();
+            if (waitNanos > 0)
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+
+            int index = i;
+            futures[i] = client.invoice(invoices.next()).whenComplete((uniqueInvoiceId, error) -> latencies[index] = System.nanoTime() - intended);
+        }
+
+        long failed = 0;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+
+        probes.cancel(false);
+        ticker.shutdown();
+        ticker.awaitTermination(1, TimeUnit.SECONDS);
+
+        if (name.equals("warmup"))
+            return;
+
+        long[] sortedDelays = Arrays.copyOf(loopDelays, Math.min(loopDelayCount.get(), loopDelays.length));
+        Arrays.sort(sortedDelays);
+        Arrays.sort(latencies);
+        System.out.printf("%s  %,6d invoices  latency p50 %7.2f ms  p99 %7.2f ms  |  event loop delay p50 %6.2f ms  p99 %6.2f ms  max %6.2f ms  failed %d%n",
+            name, count, millis(latencies, 0.50), millis(latencies, 0.99),
+            millis(sortedDelays, 0.50), millis(sortedDelays, 0.99), millis(sortedDelays, 1.0), failed);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.FursEnv;
+import com.github.mslenc.fursinvoices.dto.FursHeader;
+import com.github.mslenc.fursinvoices.dto.FursHeaderFactory;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measures how many message headers can be created per second by many threads at once, with
+ * <tt>UUID.randomUUID()</tt> and the zone rules (as <tt>new FursHeader()</tt> used to), and
+ * with {@link FursHeaderFactory}.
+ * <p>
+ * Usage: <tt>HeaderBenchmark [threads (64)] [seconds per round (5)]</tt>
+ */
+public class HeaderBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        FursHeaderFactory factory = FursHeaderFactory.getDefault();
+        Supplier<FursHeader> shared = () -> new FursHeader(UUID.randomUUID(), LocalDateTime.ofInstant(Instant.now(), FursEnv.EUROPE_LJUBLJANA));
+        Supplier<FursHeader> striped = factory::create;
+
+        // warm up both, then alternate, so that neither benefits from running later
+        run("warmup", shared, threads, 1);
+        run("warmup", striped, threads, 1);
+        for (int round = 0; round < 2; round++) {
+            run("UUID.randomUUID + zone rules", shared, threads, seconds);
+            run("FursHeaderFactory           ", striped, threads, seconds);
+        }
+    }
+
+    private static void run(String name, Supplier<FursHeader> supplier, int threads, int seconds) throws InterruptedException {
+        LongAdder count = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] sink = new long[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long n = 0, acc = 0;
+                    while (!stop.get()) {
+                        acc += supplier.get().getMessageId().getLeastSignificantBits();
+                        if (++n % 256 == 0) {
+                            count.add(256);
+                        }
+                    }
+                    sink[index] = acc;
+                } catch (InterruptedException e) {
+                    // exit
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        TimeUnit.SECONDS.sleep(seconds);
+        stop.set(true);
+        done.await();
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+
+        if (!name.equals("warmup"))
+            System.out.printf("%s  %2d threads  %,12.0f headers/s%n", name, threads, count.sum() / elapsed);
+    }
+}
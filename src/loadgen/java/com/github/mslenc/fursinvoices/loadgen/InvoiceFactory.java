@@ -0,0 +1,90 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.dto.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds invoices that resemble real retail traffic: one or more VAT rates, occasionally
+ * a second seller (e.g. for commission sales), non-taxable amounts and references to
+ * earlier invoices (for corrections). All amounts add up.
+ */
+class InvoiceFactory {
+    private static final long[] VAT_RATES = { 2200, 950, 500 }; // in hundredths of a percent
+
+    private final int taxNumber;
+    private final int secondSellerTaxNumber;
+    private final String businessPremiseId;
+    private final String electronicDeviceId;
+    private final String numberPrefix;
+    private final AtomicLong nextNumber = new AtomicLong(1);
+
+    InvoiceFactory(int taxNumber, int secondSellerTaxNumber, String businessPremiseId, String electronicDeviceId) {
+        this.taxNumber = taxNumber;
+        this.secondSellerTaxNumber = secondSellerTaxNumber;
+        this.businessPremiseId = businessPremiseId;
+        this.electronicDeviceId = electronicDeviceId;
+
+        // invoice numbers must not repeat between runs
+        this.numberPrefix = String.valueOf(System.currentTimeMillis() / 1000 % 1_000_000);
+    }
+
+    InvoiceRequest next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long number = nextNumber.getAndIncrement();
+
+        Invoice invoice = new Invoice().
+            setTaxNumber(taxNumber).
+            setIssueDateTime(Instant.now()).
+            setNumberingStructure(NumberingStructure.PER_REGISTER).
+            setInvoiceIdentifier(new InvoiceIdentifier(businessPremiseId, electronicDeviceId, numberPrefix + number)).
+            setForeignOperator(true);
+
+        long total = 0;
+
+        int sellers = random.nextInt(10) == 0 ? 2 : 1;
+        for (int s = 0; s < sellers; s++) {
+            TaxPerSeller taxPerSeller = new TaxPerSeller();
+            if (s > 0)
+                taxPerSeller.setSellerTaxNumber(secondSellerTaxNumber);
+
+            int vatLines = 1 + random.nextInt(VAT_RATES.length);
+            for (int v = 0; v < vatLines; v++) {
+                long rate = VAT_RATES[v];
+                long taxable = 100 + random.nextLong(50_000);
+                long tax = (taxable * rate + 5000) / 10000;
+
+                taxPerSeller.addVat(new VAT(cents(rate), cents(taxable), cents(tax)));
+                total += taxable + tax;
+            }
+
+            if (random.nextInt(20) == 0) {
+                long nonTaxable = 100 + random.nextLong(2_000);
+                taxPerSeller.setNonTaxableAmount(cents(nonTaxable));
+                total += nonTaxable;
+            }
+
+            invoice.addTaxPerSeller(taxPerSeller);
+        }
+
+        if (number > 1 && random.nextInt(20) == 0) {
+            long referenced = 1 + random.nextLong(number - 1);
+            invoice.addReferenceInvoice(new ReferenceInvoice().
+                setReferenceInvoiceIdentifier(new InvoiceIdentifier(businessPremiseId, electronicDeviceId, numberPrefix + referenced)).
+                setReferenceInvoiceIssueDateTime(Instant.now().minus(1 + random.nextInt(60), ChronoUnit.MINUTES)));
+        }
+
+        invoice.setInvoiceAmount(cents(total));
+        invoice.setPaymentAmount(cents(total));
+
+        return new InvoiceRequest(new FursHeader(), invoice);
+    }
+
+    private static BigDecimal cents(long unscaled) {
+        return BigDecimal.valueOf(unscaled, 2);
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.*;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpClientJavaNet;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fiscalises synthetic invoices at a target rate or concurrency and reports throughput,
+ * latency percentiles, allocation rate and error codes. For example:
+ * <pre>
+ * gradle loadgen -Pargs="--env local --mode async --rate 2000 --duration 30"
+ * gradle loadgen -Pargs="--env test --pem my.pem --password secret --tax-number 12345678 --premise P1 --device D1 --rate 5"
+ * </pre>
+ * With a rate, request <i>i</i> is scheduled to start at <tt>t0 + i / rate</tt>, regardless of
+ * how the previous ones went, and its latency is measured from that time. A saturated client
+ * therefore shows up as growing latency (and a backlog that is still issued in full) rather
+ * than as a lower rate, i.e. without coordinated omission.
+ */
+public class LoadGenerator {
+    private static final String USAGE =
+        "Options:\n" +
+        "  --env local|test|production  where to send the invoices (default local)\n" +
+        "  --pem FILE --password PW     the certificate (for test and production)\n" +
+        "  --tax-number N --premise ID --device ID\n" +
+        "                               a registered premise and device (for test and production)\n" +
+        "  --second-seller N            tax number of the second seller on some invoices\n" +
+        "                               (for test and production, default: --tax-number)\n" +
+        "  --mode sync|async            which client to use (default async)\n" +
+        "  --rate N                     target invoices per second (default: as fast as possible)\n" +
+        "  --concurrency N              threads (sync) or invoices in flight (async) (default 64)\n" +
+        "  --cpu-threads N              CPU executor threads for the async client (default: none)\n" +
+        "  --duration S --warmup S      measured and warm-up seconds (default 30 and 5)\n" +
+        "  --latency MS --error-rate F  latency and error rate of the local stand-in (default 20 and 0)\n";
+
+    private final Map<String, String> options;
+    private final int concurrency;
+    private final double intervalNanos;
+    private final long durationNanos;
+    private final long warmupNanos;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "30")));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "5")));
+
+        String rate = options.get("rate");
+        this.intervalNanos = rate != null ? TimeUnit.SECONDS.toNanos(1) / Double.parseDouble(rate) : 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.print(USAGE);
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        String env = options.getOrDefault("env", "local");
+        boolean async = !"sync".equals(options.getOrDefault("mode", "async"));
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), daemonThreads("loadgen-io"));
+        ExecutorService cpuExecutor = options.containsKey("cpu-threads") ? Executors.newFixedThreadPool(Integer.parseInt(options.get("cpu-threads")), daemonThreads("loadgen-cpu")) : null;
+        FursClientOptions clientOptions = new FursClientOptions().setCpuExecutor(cpuExecutor);
+
+        FursConfig config;
+        HttpClient httpClient;
+        InvoiceFactory invoices;
+        FursClientAsync asyncClient;
+
+        if (env.equals("local")) {
+            LocalFurs localFurs = new LocalFurs(Long.parseLong(options.getOrDefault("latency", "20")), Double.parseDouble(options.getOrDefault("error-rate", "0")));
+            config = localFurs.createConfig();
+            httpClient = localFurs.httpClient();
+            asyncClient = FursClientAsync.create(config, localFurs.httpClientAsync(scheduler), clientOptions);
+            invoices = new InvoiceFactory(12345678, 87654321, "P1", "D1");
+        } else {
+            FursEnv fursEnv = env.equals("production") ? FursEnv.PRODUCTION : FursEnv.TEST;
+            config = FursConfig.createFromPem(Files.readAllBytes(Paths.get(required("pem"))), required("password").toCharArray(), fursEnv);
+            httpClient = new HttpClientJavaNet();
+            // the JDK client blocks, so the asynchronous client runs it on a pool
+            asyncClient = FursClientAsync.fromBlocking(FursClient.create(config, httpClient, clientOptions), Executors.newFixedThreadPool(concurrency, daemonThreads("loadgen-http")));
+            invoices = new InvoiceFactory(Integer.parseInt(required("tax-number")), Integer.parseInt(options.getOrDefault("second-seller", required("tax-number"))), required("premise"), required("device"));
+        }
+
+        FursClient syncClient = FursClient.create(config, httpClient, clientOptions);
+
+        // one pool for the warm-up and the run, so that no worker ends before the stats are stopped
+        ExecutorService workers = async ? null : Executors.newFixedThreadPool(concurrency, daemonThreads("loadgen-worker"));
+
+        int maxSamples = (int) Math.min(20_000_000, TimeUnit.NANOSECONDS.toSeconds(durationNanos) * 100_000 + 1000);
+
+        System.out.printf("Warming up for %d s...%n", TimeUnit.NANOSECONDS.toSeconds(warmupNanos));
+        drive(async ? null : syncClient, asyncClient, workers, invoices, new LoadStats(maxSamples), warmupNanos);
+
+        System.out.printf("Running %s against %s for %d s...%n", async ? "async" : "sync", env, TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+        LoadStats stats = new LoadStats(maxSamples);
+        drive(async ? null : syncClient, asyncClient, workers, invoices, stats, durationNanos);
+        stats.print(System.out);
+
+        if (workers != null) {
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        scheduler.shutdownNow();
+        if (cpuExecutor != null)
+            cpuExecutor.shutdownNow();
+    }
+
+    private String required(String name) {
+        String value = options.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("Missing --" + name + "\n" + USAGE);
+        return value;
+    }
+
+    private void drive(FursClient syncClient, FursClientAsync asyncClient, ExecutorService workers, InvoiceFactory invoices, LoadStats stats, long runNanos) throws Exception {
+        stats.start();
+        Schedule schedule = new Schedule(System.nanoTime(), intervalNanos);
+        long deadline = schedule.t0 + runNanos;
+
+        if (syncClient != null) {
+            driveSync(syncClient, workers, invoices, stats, schedule, deadline);
+        } else {
+            driveAsync(asyncClient, invoices, stats, schedule, deadline);
+        }
+
+        stats.stop();
+    }
+
+    private void driveSync(FursClient client, ExecutorService workers, InvoiceFactory invoices, LoadStats stats, Schedule schedule, long deadline) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                try {
+                    while (true) {
+                        InvoiceRequest request = invoices.next();
+                        long start = schedule.awaitNext();
+                        if (start - deadline >= 0)
+                            break;
+
+                        Throwable error = null;
+                        try {
+                            client.invoice(request);
+                        } catch (Throwable t) {
+                            error = t;
+                        }
+                        stats.record(System.nanoTime() - start, error);
+                    }
+                } catch (InterruptedException e) {
+                    // stop
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+    }
+
+    private void driveAsync(FursClientAsync client, InvoiceFactory invoices, LoadStats stats, Schedule schedule, long deadline) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        while (true) {
+            InvoiceRequest request = invoices.next();
+            long start = schedule.awaitNext();
+            if (start - deadline >= 0)
+                break;
+
+            inFlight.acquire();
+            client.invoice(request).whenComplete((uniqueInvoiceId, error) -> {
+                stats.record(System.nanoTime() - start, error);
+                inFlight.release();
+            });
+        }
+
+        inFlight.acquire(concurrency);
+    }
+
+    /**
+     * The intended start times of requests: <tt>t0 + i * interval</tt> for the <i>i</i>-th
+     * request, fixed in advance, so that slots missed while the client (or the workers, or the
+     * in-flight limit) was saturated are neither skipped nor pushed back. Without a rate, each
+     * request is intended to start when it's taken.
+     */
+    private static class Schedule {
+        final long t0;
+        final double intervalNanos;
+        final AtomicLong nextIndex = new AtomicLong();
+
+        Schedule(long t0, double intervalNanos) {
+            this.t0 = t0;
+            this.intervalNanos = intervalNanos;
+        }
+
+        /**
+         * Takes the next slot, waits until its time (if it's still in the future) and returns it.
+         */
+        long awaitNext() throws InterruptedException {
+            if (intervalNanos <= 0)
+                return System.nanoTime();
+
+            long intended = t0 + (long) (nextIndex.getAndIncrement() * intervalNanos);
+            long waitNanos = intended - System.nanoTime();
+            if (waitNanos > 0)
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            return intended;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.github.mslenc.fursinvoices.FursException;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the results of a load test: latencies (exactly, up to a fixed number of samples),
+ * error codes, and the number of bytes allocated in the meantime. Allocation is the sum of the
+ * per-thread differences between {@link #start()} and {@link #stop()}, so threads that end in
+ * between aren't counted (and threads that end don't make the total too low); the load
+ * generator therefore keeps its threads alive until the stats are stopped.
+ */
+class LoadStats {
+    private final long[] latencies;
+    private final AtomicInteger latencyCount = new AtomicInteger();
+    private final LongAdder succeeded = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private long startNanos;
+    private long endNanos;
+    private Map<Long, Long> startAllocatedBytes;
+    private long allocatedBytes = -1;
+
+    LoadStats(int maxSamples) {
+        this.latencies = new long[maxSamples];
+    }
+
+    void start() {
+        startAllocatedBytes = allocatedBytesPerThread();
+        startNanos = System.nanoTime();
+    }
+
+    void stop() {
+        endNanos = System.nanoTime();
+        Map<Long, Long> endAllocatedBytes = allocatedBytesPerThread();
+        if (startAllocatedBytes == null || endAllocatedBytes == null)
+            return;
+
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : endAllocatedBytes.entrySet())
+            total += entry.getValue() - startAllocatedBytes.getOrDefault(entry.getKey(), 0L);
+        allocatedBytes = total;
+    }
+
+    void record(long latencyNanos, Throwable error) {
+        if (error == null) {
+            succeeded.increment();
+        } else {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+
+            String key = error instanceof FursException ? ((FursException) error).getErrorCode() : error.getClass().getSimpleName();
+            errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+
+        int index = latencyCount.getAndIncrement();
+        if (index < latencies.length)
+            latencies[index] = latencyNanos;
+    }
+
+    /**
+     * The number of bytes allocated by each live thread, by thread ID, or null if the JVM can't tell.
+     */
+    private static Map<Long, Long> allocatedBytesPerThread() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled())
+            return null;
+
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = sunThreads.getThreadAllocatedBytes(ids);
+        HashMap<Long, Long> result = new HashMap<>();
+        for (int i = 0; i < ids.length; i++)
+            if (allocated[i] >= 0) // -1 if the thread has ended meanwhile
+                result.put(ids[i], allocated[i]);
+        return result;
+    }
+
+    void print(PrintStream out) {
+        double seconds = (endNanos - startNanos) / 1e9;
+        long ok = succeeded.sum();
+        long failed = 0;
+        for (LongAdder count : errors.values())
+            failed += count.sum();
+
+        out.printf("Duration:   %.1f s%n", seconds);
+        out.printf("Completed:  %d (%.1f/s), failed: %d%n", ok + failed, (ok + failed) / seconds, failed);
+
+        int samples = Math.min(latencyCount.get(), latencies.length);
+        if (samples > 0) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            out.printf("Latency:    p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n",
+                millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999), millis(sorted, 1.0));
+        }
+
+        if (allocatedBytes >= 0 && ok + failed > 0) {
+            long allocated = allocatedBytes;
+            out.printf("Allocation: %.1f MB/s, %.1f KB per invoice%n", allocated / seconds / 1e6, allocated / 1024.0 / (ok + failed));
+        }
+
+        if (!errors.isEmpty()) {
+            out.println("Errors:");
+            Map<String, LongAdder> sortedErrors = new TreeMap<>(errors);
+            for (Map.Entry<String, LongAdder> entry : sortedErrors.entrySet())
+                out.printf("  %-24s %d%n", entry.getKey(), entry.getValue().sum());
+        }
+    }
+
+    private static String millis(long[] sorted, double percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return String.format("%.2f ms", sorted[Math.max(0, index)] / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
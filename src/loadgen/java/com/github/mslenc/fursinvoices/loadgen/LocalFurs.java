@@ -0,0 +1,200 @@
+package com.github.mslenc.fursinvoices.loadgen;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.mslenc.fursinvoices.FursConfig;
+import com.github.mslenc.fursinvoices.FursEnv;
+import com.github.mslenc.fursinvoices.dto.*;
+import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.security.*;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An in-process stand-in for FURS, which answers requests with properly signed responses
+ * after a fixed latency, without any network. It has its own server and client
+ * certificates, so the clients go through exactly the same signing and verification as
+ * with the real service.
+ */
+class LocalFurs {
+    private static final String PREFIX = "https://localhost/v1/cash_registers";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PrivateKey serverKey;
+    private final PrivateKey clientKey;
+    private final X509Certificate clientCert;
+    private final FursEnv env;
+    private final long latencyNanos;
+    private final double errorRate;
+
+    LocalFurs(long latencyMillis, double errorRate) throws GeneralSecurityException, IOException {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.errorRate = errorRate;
+
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+
+        KeyPair serverKeys = generator.generateKeyPair();
+        KeyPair clientKeys = generator.generateKeyPair();
+
+        this.serverKey = serverKeys.getPrivate();
+        this.clientKey = clientKeys.getPrivate();
+        X509Certificate serverCert = selfSigned("CN=Local FURS stand-in", serverKeys);
+        this.clientCert = selfSigned("CN=Load generator, OU=12345678", clientKeys);
+
+        this.env = new FursEnv(
+            new URL(PREFIX + "/invoices"),
+            new URL(PREFIX + "/batch_invoices"),
+            new URL(PREFIX + "/invoices/register"),
+            new URL(PREFIX + "/echo"),
+            Collections.singletonList(serverCert),
+            cert -> cert.equals(clientCert)
+        );
+    }
+
+    private static X509Certificate selfSigned(String name, KeyPair keys) throws GeneralSecurityException, IOException {
+        X500Name x500Name = new X500Name(name);
+        Instant now = Instant.now();
+
+        try {
+            return new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(x500Name, BigInteger.valueOf(now.toEpochMilli()),
+                    Date.from(now.minus(1, ChronoUnit.DAYS)), Date.from(now.plus(365, ChronoUnit.DAYS)),
+                    x500Name, keys.getPublic()).
+                build(new JcaContentSignerBuilder("SHA256withRSA").build(keys.getPrivate())));
+        } catch (org.bouncycastle.operator.OperatorCreationException e) {
+            throw new GeneralSecurityException(e);
+        }
+    }
+
+    FursEnv getEnv() {
+        return env;
+    }
+
+    FursConfig createConfig() throws NoSuchAlgorithmException {
+        return new FursConfig(env, SSLContext.getDefault(), clientKey, clientCert);
+    }
+
+    HttpClient httpClient() {
+        return request -> {
+            if (latencyNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(latencyNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            return handle(request);
+        };
+    }
+
+    HttpClientAsync httpClientAsync(ScheduledExecutorService scheduler) {
+        return request -> {
+            CompletableFuture<byte[]> promise = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                try {
+                    promise.complete(handle(request));
+                } catch (Throwable t) {
+                    promise.completeExceptionally(t);
+                }
+            }, latencyNanos, TimeUnit.NANOSECONDS);
+            return promise;
+        };
+    }
+
+    byte[] handle(HttpRequest request) throws IOException {
+        String path = request.getUrl().getPath();
+
+        if (path.endsWith("/echo")) {
+            FursRequest fursRequest = objectMapper.readValue(request.getContent(), FursRequest.class);
+            FursResponse response = new FursResponse();
+            response.setEchoResponse(fursRequest.getEchoRequest());
+            return objectMapper.writeValueAsBytes(response);
+        }
+
+        TokenEnvelope envelope = objectMapper.readValue(request.getContent(), TokenEnvelope.class);
+        String[] parts = envelope.getToken().split("\\.");
+        if (parts.length != 3)
+            throw new IOException("Response had status 400:\nInvalid token");
+
+        FursRequest fursRequest = objectMapper.readValue(Base64.getUrlDecoder().decode(parts[1]), FursRequest.class);
+        FursResponse response = new FursResponse();
+        FursError error = null;
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            error = new FursError();
+            error.setErrorCode("S100");
+            error.setErrorMessage("Simulated error");
+        }
+
+        if (fursRequest.getInvoiceRequest() != null) {
+            InvoiceResponse invoiceResponse = new InvoiceResponse();
+            invoiceResponse.setHeader(responseHeader(fursRequest.getInvoiceRequest().getHeader()));
+            if (error != null) {
+                invoiceResponse.setError(error);
+            } else if (fursRequest.getInvoiceRequest().getInvoice() != null) {
+                // sales book invoices don't get one
+                invoiceResponse.setUniqueInvoiceId(UUID.randomUUID());
+            }
+            response.setInvoiceResponse(invoiceResponse);
+        } else if (fursRequest.getBusinessPremiseRequest() != null) {
+            BusinessPremiseResponse premiseResponse = new BusinessPremiseResponse();
+            premiseResponse.setHeader(responseHeader(fursRequest.getBusinessPremiseRequest().getHeader()));
+            premiseResponse.setError(error);
+            response.setBusinessPremiseResponse(premiseResponse);
+        } else {
+            throw new IOException("Response had status 400:\nUnknown request");
+        }
+
+        return objectMapper.writeValueAsBytes(new TokenEnvelope(sign(objectMapper.writeValueAsBytes(response))));
+    }
+
+    private static FursHeader responseHeader(FursHeader requestHeader) {
+        return new FursHeader(requestHeader != null ? requestHeader.getMessageId() : UUID.randomUUID(), Instant.now());
+    }
+
+    private String sign(byte[] payload) throws IOException {
+        Base64.Encoder encoder = Base64.getUrlEncoder();
+        String signedPart = encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(UTF_8)) + "." + encoder.encodeToString(payload);
+
+        try {
+            Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initSign(serverKey);
+            signature.update(signedPart.getBytes(UTF_8));
+            return signedPart + "." + encoder.encodeToString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+}
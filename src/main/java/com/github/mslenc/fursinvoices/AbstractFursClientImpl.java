@@ -1,21 +1,191 @@
 package com.github.mslenc.fursinvoices;
 
+import com.github.mslenc.fursinvoices.capture.WireCapture;
 import com.github.mslenc.fursinvoices.dto.*;
+import com.github.mslenc.fursinvoices.health.TimeoutPolicy;
+import com.github.mslenc.fursinvoices.http.HttpBody;
+import com.github.mslenc.fursinvoices.tracing.FursSpan;
+import com.github.mslenc.fursinvoices.tracing.FursTracer;
+import com.github.mslenc.fursinvoices.validation.InvoiceConsistencyCheck;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.Signature;
+import java.time.Instant;
 import java.util.Base64;
+import java.util.EnumMap;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
 import static com.github.mslenc.fursinvoices.Utils.computeRS256;
+import static com.github.mslenc.fursinvoices.tracing.FursSpanNames.*;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class AbstractFursClientImpl {
-    protected final FursConfig config;
+    private static final Logger log = Logger.getLogger(AbstractFursClientImpl.class.getName());
 
-    protected AbstractFursClientImpl(FursConfig config) {
-        this.config = checkIfNull(config, "config");
+    protected final FursConfigHolder configHolder;
+    protected final PremiseRegistrationCache premiseCache;
+    protected final FursTracer tracer;
+    protected final WireCapture wireCapture;
+    protected final InvoiceConsistencyCheck consistencyCheck;
+    protected final TimeoutPolicy timeoutPolicy;
+
+    protected AbstractFursClientImpl(FursConfigHolder configHolder, FursClientOptions options) {
+        this.configHolder = checkIfNull(configHolder, "configHolder");
+
+        checkIfNull(options, "options");
+        this.premiseCache = options.getPremiseCache();
+        this.tracer = options.getTracer();
+        this.wireCapture = options.getWireCapture();
+        this.consistencyCheck = options.getConsistencyCheck();
+        this.timeoutPolicy = options.getTimeoutPolicy();
+    }
+
+    protected long timeoutMillis() {
+        return timeoutPolicy != null ? Math.max(0, timeoutPolicy.getTimeoutMillis()) : 0;
+    }
+
+    protected long hedgeDelayMillis() {
+        return timeoutPolicy != null ? Math.max(0, timeoutPolicy.getHedgeDelayMillis()) : 0;
+    }
+
+    protected long captureStart() {
+        return wireCapture != null ? System.nanoTime() : 0L;
+    }
+
+    protected void captureExchange(URL url, FursRequest request, long startNanos, byte[] requestBytes, HttpBody responseBody, FursResponse response, Throwable error) {
+        if (wireCapture == null)
+            return;
+
+        String errorText;
+        if (error != null) {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+            errorText = error.toString();
+        } else {
+            errorText = describeResponseError(response);
+        }
+
+        ByteBuffer responseBuffer = responseBody != null ? responseBody.getBuffer() : null;
+        wireCapture.offer(url, messageIdOf(request), startNanos, requestBytes, responseBuffer, errorText);
+    }
+
+    private static String describeResponseError(FursResponse response) {
+        if (response == null)
+            return null;
+
+        FursError error = null;
+        if (response.getInvoiceResponse() != null)
+            error = response.getInvoiceResponse().getError();
+        if (error == null && response.getBusinessPremiseResponse() != null)
+            error = response.getBusinessPremiseResponse().getError();
+
+        return error != null ? error.getErrorCode() + ": " + error.getErrorMessage() : null;
+    }
+
+    private static UUID messageIdOf(FursRequest request) {
+        FursHeader header = null;
+        if (request.getInvoiceRequest() != null)
+            header = request.getInvoiceRequest().getHeader();
+        else if (request.getBusinessPremiseRequest() != null)
+            header = request.getBusinessPremiseRequest().getHeader();
+
+        return header != null ? header.getMessageId() : null;
+    }
+
+    /**
+     * Starts a span; with a null parent, the span of a whole call is started, as a child of
+     * the tracer's current span on the calling thread (if any).
+     */
+    protected FursSpan startSpan(String name, FursSpan parent) {
+        if (tracer == null)
+            return FursSpan.NOOP;
+
+        return tracer.startSpan(name, parent != null ? parent : tracer.currentSpan());
+    }
+
+    protected static void endSpan(FursSpan span, Throwable error) {
+        if (error != null) {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+
+            span.recordError(error);
+            if (error instanceof FursException && span.isRecording())
+                span.setAttribute(ATTR_ERROR_CODE, ((FursException) error).getErrorCode());
+        }
+
+        span.end();
+    }
+
+    protected static void tagInvoice(FursSpan span, InvoiceRequest request) {
+        if (!span.isRecording() || request == null)
+            return;
+
+        if (request.getHeader() != null)
+            span.setAttribute(ATTR_MESSAGE_ID, request.getHeader().getMessageId().toString());
+
+        Invoice invoice = request.getInvoice();
+        if (invoice != null) {
+            if (invoice.getTaxNumber() != null)
+                span.setAttribute(ATTR_TAX_NUMBER, invoice.getTaxNumber());
+
+            InvoiceIdentifier id = invoice.getInvoiceIdentifier();
+            if (id != null) {
+                span.setAttribute(ATTR_PREMISE_ID, id.getBusinessPremiseId());
+                span.setAttribute(ATTR_DEVICE_ID, id.getElectronicDeviceId());
+            }
+        }
+    }
+
+    protected static void tagSalesBookInvoice(FursSpan span, InvoiceRequest request) {
+        if (!span.isRecording() || request == null)
+            return;
+
+        if (request.getHeader() != null)
+            span.setAttribute(ATTR_MESSAGE_ID, request.getHeader().getMessageId().toString());
+
+        SalesBookInvoice invoice = request.getSalesBookInvoice();
+        if (invoice != null) {
+            if (invoice.getTaxNumber() != null)
+                span.setAttribute(ATTR_TAX_NUMBER, invoice.getTaxNumber());
+            if (invoice.getBusinessPremiseId() != null)
+                span.setAttribute(ATTR_PREMISE_ID, invoice.getBusinessPremiseId());
+        }
+    }
+
+    protected static void tagPremise(FursSpan span, BusinessPremiseRequest request) {
+        if (!span.isRecording() || request == null)
+            return;
+
+        if (request.getHeader() != null)
+            span.setAttribute(ATTR_MESSAGE_ID, request.getHeader().getMessageId().toString());
+
+        BusinessPremise premise = request.getBusinessPremise();
+        if (premise != null) {
+            if (premise.getTaxNumber() != null)
+                span.setAttribute(ATTR_TAX_NUMBER, premise.getTaxNumber());
+            if (premise.getBusinessPremiseId() != null)
+                span.setAttribute(ATTR_PREMISE_ID, premise.getBusinessPremiseId());
+        }
+    }
+
+    protected byte[] verifySigAndExtractPayload(String token, FursSpan parent) throws FursException {
+        FursSpan span = startSpan(VERIFY_SIGNATURE, parent);
+        try {
+            byte[] payload = verifySigAndExtractPayload(token);
+            endSpan(span, null);
+            return payload;
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
     }
 
     protected byte[] verifySigAndExtractPayload(String token) throws FursException {
@@ -39,7 +209,7 @@ public class AbstractFursClientImpl {
 
         try {
             Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initVerify(config.getEnv().getServerSignatureCert());
+            signature.initVerify(configHolder.getEnv().getServerSignatureCert());
             signature.update(signedPart.getBytes(UTF_8));
             if (signature.verify(sigBytes)) {
                 // TODO - check that jwsHeader contents match the certificate?
@@ -57,11 +227,24 @@ public class AbstractFursClientImpl {
         }
     }
 
-    protected TokenEnvelope wrapInTokenForm(FursRequest payload) {
+    protected TokenEnvelope wrapInTokenForm(FursRequest payload, FursConfig config, FursSpan parent) {
+        FursSpan span = startSpan(WRAP_IN_TOKEN, parent);
+        try {
+            TokenEnvelope result = buildTokenEnvelope(payload, config, span);
+            endSpan(span, null);
+            return result;
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
+    }
+
+    private TokenEnvelope buildTokenEnvelope(FursRequest payload, FursConfig config, FursSpan span) {
         JwsHeader jwsHeader = config.makeJwsHeader("RS256");
         String jwsHeaderBase64 = Base64.getUrlEncoder().encodeToString(JSON.byteify(jwsHeader));
 
         byte[] payloadBytes = JSON.byteify(payload);
+        span.setAttribute(ATTR_PAYLOAD_BYTES, payloadBytes.length);
         String payloadBase64 = Base64.getUrlEncoder().encodeToString(payloadBytes);
 
         StringBuilder sb = new StringBuilder(jwsHeaderBase64.length() + payloadBase64.length() + 350); // the encoded sig is 339 bytes
@@ -77,6 +260,81 @@ public class AbstractFursClientImpl {
         return new TokenEnvelope(sb.toString());
     }
 
+    /**
+     * Runs synthetic invoices through everything a real invoice call does locally, without
+     * sending anything, so that the JIT, the crypto providers and Jackson are warmed up. The
+     * signatures are verified against the server certificate like responses are; as the tokens
+     * are signed with our own key, verification fails, but only after doing the same work.
+     *
+     * @return the total time spent in each step, in nanoseconds
+     */
+    protected EnumMap<WarmUpReport.Step, Long> warmUpLocally(int iterations) {
+        FursConfig config = configHolder.get();
+        EnumMap<WarmUpReport.Step, Long> nanos = new EnumMap<>(WarmUpReport.Step.class);
+
+        for (int i = 0; i < iterations; i++) {
+            Invoice invoice = new Invoice().
+                setTaxNumber(12345678).
+                setIssueDateTime(Instant.now()).
+                setNumberingStructure(NumberingStructure.PER_REGISTER).
+                setInvoiceIdentifier(new InvoiceIdentifier("WARMUP", "W1", String.valueOf(i + 1))).
+                setForeignOperator(true).
+                addTaxPerSeller(new TaxPerSeller().addVat(new VAT(22.00, 100.00, 22.00))).
+                setInvoiceAmount(122.00).
+                setPaymentAmount(122.00);
+            InvoiceRequest request = new InvoiceRequest(new FursHeader(), invoice);
+
+            long start = System.nanoTime();
+            if (consistencyCheck != null) {
+                consistencyCheck.check(invoice).throwIfAny();
+                start = lap(nanos, WarmUpReport.Step.CONSISTENCY_CHECK, start);
+            }
+
+            invoice.computeProtectedId(config);
+            start = lap(nanos, WarmUpReport.Step.PROTECTED_ID, start);
+
+            FursRequest payload = new FursRequest(request);
+            byte[] requestBytes = JSON.byteify(payload);
+            start = lap(nanos, WarmUpReport.Step.SERIALIZATION, start);
+
+            String token = buildTokenEnvelope(payload, config, FursSpan.NOOP).getToken();
+            start = lap(nanos, WarmUpReport.Step.TOKEN_WRAP, start);
+
+            try {
+                verifySigAndExtractPayload(token);
+            } catch (FursException expected) {
+                // the signature is ours, not the server's
+            }
+            start = lap(nanos, WarmUpReport.Step.VERIFICATION, start);
+
+            InvoiceResponse invoiceResponse = new InvoiceResponse();
+            invoiceResponse.setHeader(new FursHeader());
+            invoiceResponse.setUniqueInvoiceId(UUID.randomUUID());
+            FursResponse response = new FursResponse();
+            response.setInvoiceResponse(invoiceResponse);
+            byte[] responseBytes = JSON.byteify(response);
+            start = lap(nanos, WarmUpReport.Step.SERIALIZATION, start);
+
+            int firstDot = token.indexOf('.');
+            try {
+                JSON.parse(Base64.getUrlDecoder().decode(token.substring(firstDot + 1, token.indexOf('.', firstDot + 1))), FursRequest.class);
+                JSON.parse(requestBytes, FursRequest.class);
+                JSON.parse(responseBytes, FursResponse.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            lap(nanos, WarmUpReport.Step.PARSING, start);
+        }
+
+        return nanos;
+    }
+
+    private static long lap(EnumMap<WarmUpReport.Step, Long> nanos, WarmUpReport.Step step, long start) {
+        long now = System.nanoTime();
+        nanos.merge(step, now - start, Long::sum);
+        return now;
+    }
+
     protected String extractEchoResponse(FursResponse response) throws FursException {
         String echoResponse = response.getEchoResponse();
         if (echoResponse == null)
@@ -84,15 +342,71 @@ public class AbstractFursClientImpl {
         return echoResponse;
     }
 
-    protected void checkInvoiceRequest(InvoiceRequest request) {
+    protected void checkInvoiceRequest(InvoiceRequest request, FursConfig config, FursSpan parent) {
         checkIfNull(request, "request");
         checkIfNull(request.getInvoice(), "invoice");
+        if (request.getSalesBookInvoice() != null)
+            throw new IllegalArgumentException("The request has both an invoice and a salesBookInvoice");
 
         if (request.getHeader() == null)
             request.setHeader(new FursHeader());
 
-        if (request.getInvoice().getProtectedId() == null)
-            request.getInvoice().computeProtectedId(config);
+        if (consistencyCheck != null) {
+            FursSpan span = startSpan(CHECK_CONSISTENCY, parent);
+            try {
+                consistencyCheck.check(request.getInvoice()).throwIfAny();
+                endSpan(span, null);
+            } catch (Throwable t) {
+                endSpan(span, t);
+                throw t;
+            }
+        }
+
+        if (request.getInvoice().getProtectedId() == null) {
+            FursSpan span = startSpan(COMPUTE_PROTECTED_ID, parent);
+            try {
+                request.getInvoice().computeProtectedId(config);
+                endSpan(span, null);
+            } catch (Throwable t) {
+                endSpan(span, t);
+                throw t;
+            }
+        }
+    }
+
+    protected static URL invoicesUrl(FursConfig config, boolean batch) {
+        return batch ? config.getEnv().getBatchInvoicesUrl() : config.getEnv().getInvoicesUrl();
+    }
+
+    protected void checkSalesBookRequest(InvoiceRequest request, FursSpan parent) {
+        checkIfNull(request, "request");
+        checkIfNull(request.getSalesBookInvoice(), "salesBookInvoice");
+        if (request.getInvoice() != null)
+            throw new IllegalArgumentException("The request has both an invoice and a salesBookInvoice");
+
+        if (request.getHeader() == null)
+            request.setHeader(new FursHeader());
+
+        if (consistencyCheck != null) {
+            FursSpan span = startSpan(CHECK_CONSISTENCY, parent);
+            try {
+                consistencyCheck.check(request.getSalesBookInvoice()).throwIfAny();
+                endSpan(span, null);
+            } catch (Throwable t) {
+                endSpan(span, t);
+                throw t;
+            }
+        }
+    }
+
+    protected void checkSalesBookResponse(FursResponse response) throws FursException {
+        InvoiceResponse invoiceResponse = response.getInvoiceResponse();
+
+        if (invoiceResponse == null)
+            throw new FursException("C002", "Missing invoiceResponse in response");
+
+        if (invoiceResponse.getError() != null)
+            throw invoiceResponse.getError().toException("Unknown error");
     }
 
     protected UUID extractInvoiceResponse(FursResponse response) throws FursException {
@@ -107,6 +421,26 @@ public class AbstractFursClientImpl {
         throw new FursException("C002", "Missing both uniqueInvoiceId and error in response");
     }
 
+    protected String premiseCacheHash(BusinessPremise premise, FursConfig config) {
+        return premiseCache != null ? PremiseRegistrationCache.hashOf(checkIfNull(premise, "request"), config) : null;
+    }
+
+    /**
+     * Records an accepted registration in the premise cache. As FURS has already accepted the
+     * premise, a failure of the cache doesn't fail the call; it is only logged, and the premise
+     * will simply be registered again next time.
+     */
+    protected void rememberPremise(String cacheHash) {
+        if (cacheHash == null)
+            return;
+
+        try {
+            premiseCache.put(cacheHash);
+        } catch (Throwable t) {
+            log.log(Level.WARNING, "Failed to record a premise registration in the cache", t);
+        }
+    }
+
     protected void checkBusinessPremiseResponse(FursResponse response) throws FursException {
         BusinessPremiseResponse bpResponse = response.getBusinessPremiseResponse();
 
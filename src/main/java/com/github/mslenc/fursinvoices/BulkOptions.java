@@ -0,0 +1,96 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.concurrent.RateLimiter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Settings for bulk operations, such as {@link FursClient#businessPremises(java.util.Collection, BulkOptions)}.
+ */
+public class BulkOptions {
+    private int parallelism = 4;
+    private RateLimiter rateLimiter;
+    private ScheduledExecutorService scheduler;
+    private Executor executor;
+
+    /**
+     * @see #setParallelism(int)
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight at the same time (default 4).
+     * @return this, for fluent interface
+     */
+    public BulkOptions setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") must be at least 1");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @see #setRateLimit(double, int)
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Limits the rate of requests (by default, there is no limit). The same limiter may be
+     * shared between several bulk operations, to limit their combined rate.
+     * @return this, for fluent interface
+     */
+    public BulkOptions setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Limits the rate of requests to <tt>permitsPerSecond</tt> on average, with bursts of up to <tt>burst</tt>.
+     * @return this, for fluent interface
+     */
+    public BulkOptions setRateLimit(double permitsPerSecond, int burst) {
+        return setRateLimiter(new RateLimiter(permitsPerSecond, burst));
+    }
+
+    /**
+     * @see #setScheduler(ScheduledExecutorService)
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Sets the scheduler that asynchronous bulk operations use to delay requests when rate
+     * limited. If not set, a shared daemon thread is used. The scheduler only hands the delayed
+     * requests over to the {@link #setExecutor(Executor) executor}, so a single thread is enough.
+     * @return this, for fluent interface
+     */
+    public BulkOptions setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * @see #setExecutor(Executor)
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor on which asynchronous bulk operations start requests that were delayed
+     * by the rate limit (which, without a CPU executor on the client, includes computing ZOI and
+     * signing). If not set, {@link java.util.concurrent.ForkJoinPool#commonPool()} is used.
+     * @return this, for fluent interface
+     */
+    public BulkOptions setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+}
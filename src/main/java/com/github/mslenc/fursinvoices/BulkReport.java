@@ -0,0 +1,61 @@
+package com.github.mslenc.fursinvoices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk operation. Items that failed, and items that were not attempted
+ * at all (because the operation was interrupted), can be passed to the same operation
+ * again to resume it; see {@link #getItemsToRetry()}.
+ */
+public class BulkReport<T> {
+    private final List<BulkResult<T>> results;
+    private final List<T> unattempted;
+
+    public BulkReport(List<BulkResult<T>> results, List<T> unattempted) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.unattempted = Collections.unmodifiableList(new ArrayList<>(unattempted));
+    }
+
+    /**
+     * The results of all attempted items, in the original order.
+     */
+    public List<BulkResult<T>> getResults() {
+        return results;
+    }
+
+    /**
+     * The items that were not attempted.
+     */
+    public List<T> getUnattempted() {
+        return unattempted;
+    }
+
+    public List<BulkResult<T>> getFailures() {
+        ArrayList<BulkResult<T>> failures = new ArrayList<>();
+        for (BulkResult<T> result : results)
+            if (!result.isSuccess())
+                failures.add(result);
+        return failures;
+    }
+
+    public int getSuccessCount() {
+        return results.size() - getFailures().size();
+    }
+
+    /**
+     * @return the failed and unattempted items, to resume the operation with
+     */
+    public List<T> getItemsToRetry() {
+        ArrayList<T> result = new ArrayList<>();
+        for (BulkResult<T> failure : getFailures())
+            result.add(failure.getItem());
+        result.addAll(unattempted);
+        return result;
+    }
+
+    public boolean isComplete() {
+        return unattempted.isEmpty() && getFailures().isEmpty();
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mslenc.fursinvoices;
+
+/**
+ * The outcome of a single item in a bulk operation.
+ */
+public class BulkResult<T> {
+    private final T item;
+    private final Throwable error;
+
+    public BulkResult(T item, Throwable error) {
+        this.item = item;
+        this.error = error;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * The error that occurred (typically a {@link FursException} or an <tt>IOException</tt>),
+     * or null if the item was processed successfully.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.concurrent.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Runs bulk operations with bounded parallelism and an optional rate limit.
+ */
+class BulkRunner {
+    private BulkRunner() {}
+
+    interface BlockingCall<T> {
+        void call(T item) throws Exception;
+    }
+
+    interface AsyncCall<T> {
+        CompletableFuture<?> call(T item);
+    }
+
+    static <T> BulkReport<T> runBlocking(Collection<T> items, BulkOptions options, BlockingCall<T> call) {
+        List<T> list = copyItems(items);
+        checkIfNull(options, "options");
+
+        int n = list.size();
+        AtomicReferenceArray<BulkResult<T>> results = new AtomicReferenceArray<>(n);
+        AtomicInteger next = new AtomicInteger();
+        RateLimiter rateLimiter = options.getRateLimiter();
+        int numThreads = Math.min(options.getParallelism(), n);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, numThreads), runnable -> {
+            Thread thread = new Thread(runnable, "furs-bulk");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            ArrayList<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                workers.add(pool.submit(() -> {
+                    int i;
+                    while (!Thread.currentThread().isInterrupted() && (i = next.getAndIncrement()) < n) {
+                        T item = list.get(i);
+                        try {
+                            if (rateLimiter != null)
+                                rateLimiter.acquire();
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+
+                        Throwable error = null;
+                        try {
+                            call.call(item);
+                        } catch (Throwable e) {
+                            error = e;
+                        }
+                        results.set(i, new BulkResult<>(item, error));
+                    }
+                }));
+            }
+
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop the workers, let the calls in progress finish, and report the rest as unattempted
+            pool.shutdownNow();
+            awaitTerminationUninterruptibly(pool);
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return makeReport(list, results);
+    }
+
+    static <T> CompletableFuture<BulkReport<T>> runAsync(Collection<T> items, BulkOptions options, AsyncCall<T> call) {
+        List<T> list;
+        try {
+            list = copyItems(items);
+            checkIfNull(options, "options");
+        } catch (Throwable t) {
+            CompletableFuture<BulkReport<T>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(t);
+            return failure;
+        }
+
+        return new AsyncRun<>(list, options, call).start();
+    }
+
+    private static class AsyncRun<T> {
+        final List<T> list;
+        final AsyncCall<T> call;
+        final RateLimiter rateLimiter;
+        final ScheduledExecutorService scheduler;
+        final Executor executor;
+        final int numChains;
+        final AtomicReferenceArray<BulkResult<T>> results;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger chainsRunning;
+        final CompletableFuture<BulkReport<T>> promise = new CompletableFuture<>();
+
+        AsyncRun(List<T> list, BulkOptions options, AsyncCall<T> call) {
+            this.list = list;
+            this.call = call;
+            this.rateLimiter = options.getRateLimiter();
+            this.scheduler = options.getScheduler() != null ? options.getScheduler() : DefaultScheduler.INSTANCE;
+            this.executor = options.getExecutor() != null ? options.getExecutor() : ForkJoinPool.commonPool();
+            this.numChains = Math.min(options.getParallelism(), list.size());
+            this.results = new AtomicReferenceArray<>(list.size());
+            this.chainsRunning = new AtomicInteger(numChains);
+        }
+
+        CompletableFuture<BulkReport<T>> start() {
+            if (numChains == 0) {
+                promise.complete(makeReport(list, results));
+                return promise;
+            }
+
+            for (int i = 0; i < numChains; i++)
+                runChain();
+
+            return promise;
+        }
+
+        // each chain processes one item at a time; the loop avoids deep recursion when calls complete synchronously
+        void runChain() {
+            while (true) {
+                int i = next.getAndIncrement();
+                if (i >= list.size()) {
+                    if (chainsRunning.decrementAndGet() == 0)
+                        promise.complete(makeReport(list, results));
+                    return;
+                }
+
+                long waitNanos = rateLimiter != null ? rateLimiter.reserve() : 0;
+                if (waitNanos > 0) {
+                    try {
+                        // the scheduler only hands the item over, so that its thread never does the work itself
+                        scheduler.schedule(() -> handOff(i), waitNanos, TimeUnit.NANOSECONDS);
+                    } catch (Throwable t) {
+                        finishItem(i, t);
+                        continue;
+                    }
+                    return;
+                }
+
+                CompletableFuture<?> future = safeCall(i);
+                if (!future.isDone()) {
+                    future.whenComplete((result, error) -> {
+                        finishItem(i, error);
+                        runChain();
+                    });
+                    return;
+                }
+
+                finishItem(i, errorOf(future));
+            }
+        }
+
+        void handOff(int i) {
+            try {
+                executor.execute(() -> startItem(i));
+            } catch (Throwable t) {
+                // the executor is shut down or saturated; fail the item and keep the chain going, so the report completes
+                finishItem(i, t);
+                runChain();
+            }
+        }
+
+        void startItem(int i) {
+            safeCall(i).whenComplete((result, error) -> {
+                finishItem(i, error);
+                runChain();
+            });
+        }
+
+        CompletableFuture<?> safeCall(int i) {
+            try {
+                CompletableFuture<?> future = call.call(list.get(i));
+                if (future == null)
+                    throw new NullPointerException("null future returned");
+                return future;
+            } catch (Throwable t) {
+                CompletableFuture<?> failure = new CompletableFuture<>();
+                failure.completeExceptionally(t);
+                return failure;
+            }
+        }
+
+        void finishItem(int i, Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+
+            results.set(i, new BulkResult<>(list.get(i), error));
+        }
+
+        static Throwable errorOf(CompletableFuture<?> future) {
+            try {
+                future.join();
+                return null;
+            } catch (CompletionException | CancellationException e) {
+                return e;
+            }
+        }
+    }
+
+    private static void awaitTerminationUninterruptibly(ExecutorService pool) {
+        while (true) {
+            try {
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                return;
+            } catch (InterruptedException e) {
+                // keep waiting; the caller restores the interrupt flag
+            }
+        }
+    }
+
+    private static <T> List<T> copyItems(Collection<T> items) {
+        checkIfNull(items, "items");
+
+        ArrayList<T> list = new ArrayList<>(items);
+        for (T item : list)
+            checkIfNull(item, "items element");
+
+        return list;
+    }
+
+    private static <T> BulkReport<T> makeReport(List<T> list, AtomicReferenceArray<BulkResult<T>> results) {
+        ArrayList<BulkResult<T>> attempted = new ArrayList<>();
+        ArrayList<T> unattempted = new ArrayList<>();
+
+        for (int i = 0; i < list.size(); i++) {
+            BulkResult<T> result = results.get(i);
+            if (result != null) {
+                attempted.add(result);
+            } else {
+                unattempted.add(list.get(i));
+            }
+        }
+
+        return new BulkReport<>(attempted, unattempted);
+    }
+
+    static class DefaultScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "furs-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
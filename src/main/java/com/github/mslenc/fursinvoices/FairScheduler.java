@@ -0,0 +1,327 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Shares a {@link FursClientAsync} between tenants (tax numbers) fairly, so that one tenant
+ * with a large backlog (e.g. a replay of offline invoices) can't starve the live traffic of
+ * the others. At most <tt>maxInFlight</tt> calls are passed to the client at a time; the rest
+ * wait in a queue per tenant, from which they are dispatched with weighted deficit round-robin:
+ * each tenant with waiting calls gets, in turn, as many dispatches as its weight, so under load
+ * tenants share the budget in proportion to their weights, whatever their queue lengths.
+ * <p>
+ * Calls are assigned to the tenant by the tax number of the invoice or premise; echo calls
+ * form a tenant of their own, with the tax number null. Per-tenant queue depths and waiting
+ * times are available from {@link #getStats(Integer)} and {@link #getAllStats()}.
+ */
+public class FairScheduler implements FursClientAsync {
+    private final FursClientAsync client;
+    private final int maxInFlight;
+
+    private final Object lock = new Object();
+    private final HashMap<Integer, Tenant> tenants = new HashMap<>();
+    private final HashMap<Integer, Integer> weights = new HashMap<>();
+    private final ArrayDeque<Tenant> active = new ArrayDeque<>();
+    private int defaultWeight = 1;
+    private int maxQueueDepth = Integer.MAX_VALUE;
+    private int inFlight;
+    private boolean dispatching;
+
+    /**
+     * @param client the client to pass calls to
+     * @param maxInFlight the maximum number of calls in flight at the same time, across all tenants
+     */
+    public FairScheduler(FursClientAsync client, int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight (" + maxInFlight + ") must be at least 1");
+
+        this.client = checkIfNull(client, "client");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sets the weight of a tenant, i.e. the number of its calls dispatched in each round
+     * (default {@link #setDefaultWeight(int)}).
+     * @return this, for fluent interface
+     */
+    public FairScheduler setWeight(Integer taxNumber, int weight) {
+        checkWeight(weight);
+
+        synchronized (lock) {
+            weights.put(taxNumber, weight);
+            Tenant tenant = tenants.get(taxNumber);
+            if (tenant != null)
+                tenant.weight = weight;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the weight of tenants without their own weight (default 1).
+     * @return this, for fluent interface
+     */
+    public FairScheduler setDefaultWeight(int defaultWeight) {
+        checkWeight(defaultWeight);
+
+        synchronized (lock) {
+            this.defaultWeight = defaultWeight;
+            for (Tenant tenant : tenants.values())
+                if (!weights.containsKey(tenant.taxNumber))
+                    tenant.weight = defaultWeight;
+        }
+        return this;
+    }
+
+    /**
+     * Limits the number of waiting calls per tenant (by default, there is no limit). Calls
+     * beyond the limit fail immediately with a <tt>RejectedExecutionException</tt>.
+     * @return this, for fluent interface
+     */
+    public FairScheduler setMaxQueueDepth(int maxQueueDepth) {
+        if (maxQueueDepth < 0)
+            throw new IllegalArgumentException("maxQueueDepth (" + maxQueueDepth + ") must not be negative");
+
+        synchronized (lock) {
+            this.maxQueueDepth = maxQueueDepth;
+        }
+        return this;
+    }
+
+    private static void checkWeight(int weight) {
+        if (weight < 1)
+            throw new IllegalArgumentException("weight (" + weight + ") must be at least 1");
+    }
+
+    /**
+     * Returns the stats of a tenant, or null if it hasn't made any calls.
+     */
+    public TenantStats getStats(Integer taxNumber) {
+        synchronized (lock) {
+            Tenant tenant = tenants.get(taxNumber);
+            return tenant != null ? tenant.stats() : null;
+        }
+    }
+
+    public List<TenantStats> getAllStats() {
+        synchronized (lock) {
+            ArrayList<TenantStats> result = new ArrayList<>(tenants.size());
+            for (Tenant tenant : tenants.values())
+                result.add(tenant.stats());
+            return result;
+        }
+    }
+
+    public int getInFlight() {
+        synchronized (lock) {
+            return inFlight;
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> echo(String message) {
+        return schedule(null, () -> client.echo(message));
+    }
+
+    /**
+     * Warms up the wrapped client directly, without waiting for a turn.
+     */
+    @Override
+    public CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        return client.warmUp(iterations, connections);
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request) {
+        return schedule(taxNumberOf(request), () -> client.invoice(request));
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        return schedule(taxNumberOf(request), () -> client.invoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request) {
+        return schedule(taxNumberOf(request), () -> client.salesBookInvoice(request));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        return schedule(taxNumberOf(request), () -> client.salesBookInvoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
+        return schedule(request != null ? request.getTaxNumber() : null, () -> client.businessPremise(request));
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return schedule(request != null ? request.getTaxNumber() : null, () -> client.businessPremise(request, force));
+    }
+
+    private static Integer taxNumberOf(InvoiceRequest request) {
+        if (request == null)
+            return null;
+        if (request.getInvoice() != null)
+            return request.getInvoice().getTaxNumber();
+        if (request.getSalesBookInvoice() != null)
+            return request.getSalesBookInvoice().getTaxNumber();
+        return null;
+    }
+
+    private <T> CompletableFuture<T> schedule(Integer taxNumber, Supplier<CompletableFuture<T>> call) {
+        Task<T> task = new Task<>(call);
+
+        synchronized (lock) {
+            Tenant tenant = tenants.get(taxNumber);
+            if (tenant == null) {
+                tenant = new Tenant(taxNumber, weights.getOrDefault(taxNumber, defaultWeight));
+                tenants.put(taxNumber, tenant);
+            }
+
+            if (tenant.queue.size() >= maxQueueDepth) {
+                tenant.rejected++;
+                task.promise.completeExceptionally(new RejectedExecutionException("Too many calls waiting for tax number " + taxNumber));
+                return task.promise;
+            }
+
+            task.tenant = tenant;
+            tenant.queue.add(task);
+            if (tenant.queue.size() == 1)
+                active.add(tenant);
+        }
+
+        dispatch();
+        return task.promise;
+    }
+
+    /**
+     * Starts waiting calls while there is budget. Only one thread dispatches at a time, so that
+     * calls completing synchronously don't recurse; the others just leave the work to it.
+     */
+    private void dispatch() {
+        synchronized (lock) {
+            if (dispatching)
+                return;
+            dispatching = true;
+        }
+
+        while (true) {
+            Task<?> task;
+            synchronized (lock) {
+                task = next();
+                if (task == null) {
+                    dispatching = false;
+                    return;
+                }
+            }
+
+            task.start();
+        }
+    }
+
+    // called with the lock held
+    private Task<?> next() {
+        if (inFlight >= maxInFlight || active.isEmpty())
+            return null;
+
+        Tenant tenant = active.peekFirst();
+        if (tenant.deficit < 1)
+            tenant.deficit += tenant.weight;
+
+        Task<?> task = tenant.queue.poll();
+        tenant.deficit--;
+
+        if (tenant.queue.isEmpty()) {
+            // an idle tenant doesn't keep its credit
+            active.pollFirst();
+            tenant.deficit = 0;
+        } else if (tenant.deficit < 1) {
+            active.addLast(active.pollFirst());
+        }
+
+        long waitNanos = System.nanoTime() - task.enqueuedNanos;
+        tenant.totalWaitNanos += waitNanos;
+        tenant.maxWaitNanos = Math.max(tenant.maxWaitNanos, waitNanos);
+        tenant.dispatched++;
+        tenant.inFlight++;
+        inFlight++;
+
+        return task;
+    }
+
+    private void onCompleted(Tenant tenant, boolean failed) {
+        synchronized (lock) {
+            tenant.inFlight--;
+            if (failed)
+                tenant.failed++;
+            inFlight--;
+        }
+
+        dispatch();
+    }
+
+    private class Task<T> {
+        final Supplier<CompletableFuture<T>> call;
+        final CompletableFuture<T> promise = new CompletableFuture<>();
+        final long enqueuedNanos = System.nanoTime();
+        Tenant tenant;
+
+        Task(Supplier<CompletableFuture<T>> call) {
+            this.call = call;
+        }
+
+        void start() {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+                if (future == null)
+                    throw new NullPointerException("null future returned from client");
+            } catch (Throwable t) {
+                onCompleted(tenant, true);
+                promise.completeExceptionally(t);
+                return;
+            }
+
+            future.whenComplete((result, error) -> {
+                onCompleted(tenant, error != null);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(result);
+                }
+            });
+        }
+    }
+
+    private static class Tenant {
+        final Integer taxNumber;
+        final ArrayDeque<Task<?>> queue = new ArrayDeque<>();
+        int weight;
+        int deficit;
+        int inFlight;
+        long dispatched;
+        long failed;
+        long rejected;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        Tenant(Integer taxNumber, int weight) {
+            this.taxNumber = taxNumber;
+            this.weight = weight;
+        }
+
+        TenantStats stats() {
+            return new TenantStats(taxNumber, weight, queue.size(), inFlight, dispatched, failed, rejected, totalWaitNanos, maxWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.mslenc.fursinvoices;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+/**
+ * A {@link PremiseRegistrationCache} that keeps the hashes in memory and in a text file
+ * (one hash per line), so that it survives restarts and redeployments.
+ * <p>
+ * Lookups only read the in-memory set. Changes are written to the file first, under a
+ * {@link ReentrantLock} (so a virtual thread waiting for the file doesn't pin its carrier), and
+ * only applied to the set once the write succeeded, so the two never disagree.
+ */
+public class FilePremiseRegistrationCache implements PremiseRegistrationCache {
+    private final Path file;
+    private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param file the file to use; it is created if it doesn't exist
+     * @throws IOException if the existing file can't be read
+     */
+    public FilePremiseRegistrationCache(Path file) throws IOException {
+        this.file = checkIfNull(file, "file");
+
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty())
+                    hashes.add(line);
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(String premiseHash) {
+        return premiseHash != null && hashes.contains(premiseHash);
+    }
+
+    @Override
+    public void put(String premiseHash) {
+        checkIfNull(premiseHash, "premiseHash");
+
+        lock.lock();
+        try {
+            if (hashes.contains(premiseHash))
+                return;
+
+            try (BufferedWriter writer = Files.newBufferedWriter(file, UTF_8, CREATE, APPEND)) {
+                writer.write(premiseHash);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            hashes.add(premiseHash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(String premiseHash) {
+        lock.lock();
+        try {
+            if (premiseHash == null || !hashes.contains(premiseHash))
+                return;
+
+            HashSet<String> remaining = new HashSet<>(hashes);
+            remaining.remove(premiseHash);
+            rewrite(remaining);
+
+            hashes.remove(premiseHash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            rewrite(Collections.emptySet());
+
+            hashes.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rewrite(Collection<String> contents) {
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, contents, UTF_8);
+            Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -4,9 +4,12 @@ import com.github.mslenc.fursinvoices.dto.BusinessPremise;
 import com.github.mslenc.fursinvoices.dto.FursHeader;
 import com.github.mslenc.fursinvoices.dto.Invoice;
 import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+import com.github.mslenc.fursinvoices.dto.SalesBookInvoice;
 import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpClientBuffered;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.UUID;
 
 public interface FursClient {
@@ -14,11 +17,113 @@ public interface FursClient {
     UUID invoice(InvoiceRequest request) throws IOException, FursException;
     void businessPremise(BusinessPremise request) throws IOException, FursException;
 
+    /**
+     * Submits an invoice issued from a sales book (see {@link InvoiceRequest#getSalesBookInvoice()}).
+     * FURS doesn't return a unique invoice ID for these.
+     */
+    void salesBookInvoice(InvoiceRequest request) throws IOException, FursException;
+
+    /**
+     * Submits an invoice to the batch endpoint ({@link FursEnv#getBatchInvoicesUrl()}) if
+     * <tt>batch</tt> is true, or to the regular one otherwise. The batch endpoint takes the same
+     * signed message per invoice, but is meant for bulk submissions (e.g. of invoices issued
+     * while offline), so they don't compete with the real-time ones. Clients without a batch
+     * endpoint ignore the flag, like the default implementation does.
+     */
+    default UUID invoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        return invoice(request);
+    }
+
+    /**
+     * Submits a sales book invoice to the batch endpoint if <tt>batch</tt> is true, see
+     * {@link #invoice(InvoiceRequest, boolean)}.
+     */
+    default void salesBookInvoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        salesBookInvoice(request);
+    }
+
+    /**
+     * Registers a business premise. If the client has a {@link PremiseRegistrationCache} and
+     * <tt>force</tt> is false, the registration is skipped when exactly the same premise was
+     * already registered; with <tt>force</tt>, it is always sent. Without a cache, this is the
+     * same as {@link #businessPremise(BusinessPremise)}.
+     */
+    default void businessPremise(BusinessPremise request, boolean force) throws IOException, FursException {
+        businessPremise(request);
+    }
+
     default UUID invoice(Invoice invoice) throws IOException, FursException {
         return invoice(new InvoiceRequest(new FursHeader(), invoice));
     }
 
+    default void salesBookInvoice(SalesBookInvoice invoice) throws IOException, FursException {
+        salesBookInvoice(new InvoiceRequest(new FursHeader(), invoice));
+    }
+
+    /**
+     * Submits many sales book invoices (e.g. a monthly bundle of a premise) to the batch endpoint,
+     * with bounded parallelism and an optional rate limit, like {@link #businessPremises(Collection, BulkOptions)}.
+     * Each invoice is still its own signed message, so each gets its own result in the report.
+     */
+    default BulkReport<SalesBookInvoice> salesBookInvoices(Collection<SalesBookInvoice> invoices, BulkOptions options) {
+        return BulkRunner.runBlocking(invoices, options, invoice -> salesBookInvoice(new InvoiceRequest(new FursHeader(), invoice), true));
+    }
+
+    /**
+     * Registers many business premises, with bounded parallelism and an optional rate limit
+     * (see {@link BulkOptions}). A failure of one premise doesn't stop the others. If the calling
+     * thread is interrupted, the premises not yet started are skipped (and the interrupt flag is
+     * kept set). To resume, call this again with {@link BulkReport#getItemsToRetry()}.
+     */
+    default BulkReport<BusinessPremise> businessPremises(Collection<BusinessPremise> premises, BulkOptions options) {
+        return BulkRunner.runBlocking(premises, options, this::businessPremise);
+    }
+
+    /**
+     * Prepares the client for traffic, so that the first real calls aren't much slower than the
+     * rest: runs <tt>iterations</tt> synthetic invoices through everything an invoice call does
+     * locally (computing the protected ID, serialization, signing, signature verification and
+     * parsing), without sending them, and then makes <tt>connections</tt> concurrent echo calls,
+     * which open the connections to FURS. Wrappers pass this on to the client they wrap; clients
+     * without local processing only make the echo calls.
+     * <p>
+     * Failed echo calls are reported in {@link WarmUpReport#isSuccessful()} rather than thrown,
+     * so the report can gate a readiness probe directly.
+     */
+    default WarmUpReport warmUp(int iterations, int connections) {
+        WarmUp.checkArgs(iterations, connections);
+        return WarmUp.echoBlocking(this, iterations, connections, null);
+    }
+
+    /**
+     * Same as {@link #warmUp(int, int)} with 200 iterations and one connection.
+     */
+    default WarmUpReport warmUp() {
+        return warmUp(200, 1);
+    }
+
     static FursClient create(FursConfig config, HttpClient httpClient) {
-        return new FursClientImpl(config, httpClient);
+        return create(config, httpClient, new FursClientOptions());
+    }
+
+    static FursClient create(FursConfig config, HttpClient httpClient, FursClientOptions options) {
+        return create(new FursConfigHolder(config), httpClient, options);
+    }
+
+    /**
+     * Creates a client that uses whichever config the holder has at the start of each call,
+     * so that certificates can be replaced without creating new clients.
+     */
+    static FursClient create(FursConfigHolder configHolder, HttpClient httpClient, FursClientOptions options) {
+        return createBuffered(configHolder, HttpClientBuffered.of(httpClient), options);
+    }
+
+    /**
+     * Creates a client that reads responses from buffers provided by the HTTP client, which
+     * are released as soon as they are parsed, so that pooled buffers can be used without
+     * copying them into byte arrays.
+     */
+    static FursClient createBuffered(FursConfigHolder configHolder, HttpClientBuffered httpClient, FursClientOptions options) {
+        return new FursClientImpl(configHolder, httpClient, options);
     }
 }
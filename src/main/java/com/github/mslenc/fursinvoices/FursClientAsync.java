@@ -4,21 +4,121 @@ import com.github.mslenc.fursinvoices.dto.BusinessPremise;
 import com.github.mslenc.fursinvoices.dto.FursHeader;
 import com.github.mslenc.fursinvoices.dto.Invoice;
 import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+import com.github.mslenc.fursinvoices.dto.SalesBookInvoice;
 import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+import com.github.mslenc.fursinvoices.http.HttpClientAsyncBuffered;
 
+import java.util.Collection;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface FursClientAsync {
     CompletableFuture<String> echo(String message);
     CompletableFuture<UUID> invoice(InvoiceRequest request);
     CompletableFuture<Void> businessPremise(BusinessPremise request);
 
+    /**
+     * @see FursClient#salesBookInvoice(InvoiceRequest)
+     */
+    CompletableFuture<Void> salesBookInvoice(InvoiceRequest request);
+
+    /**
+     * @see FursClient#invoice(InvoiceRequest, boolean)
+     */
+    default CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        return invoice(request);
+    }
+
+    /**
+     * @see FursClient#salesBookInvoice(InvoiceRequest, boolean)
+     */
+    default CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        return salesBookInvoice(request);
+    }
+
+    /**
+     * @see FursClient#businessPremise(BusinessPremise, boolean)
+     */
+    default CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return businessPremise(request);
+    }
+
     default CompletableFuture<UUID> invoice(Invoice invoice) {
         return invoice(new InvoiceRequest(new FursHeader(), invoice));
     }
 
+    default CompletableFuture<Void> salesBookInvoice(SalesBookInvoice invoice) {
+        return salesBookInvoice(new InvoiceRequest(new FursHeader(), invoice));
+    }
+
+    /**
+     * @see FursClient#salesBookInvoices(Collection, BulkOptions)
+     */
+    default CompletableFuture<BulkReport<SalesBookInvoice>> salesBookInvoices(Collection<SalesBookInvoice> invoices, BulkOptions options) {
+        return BulkRunner.runAsync(invoices, options, invoice -> salesBookInvoice(new InvoiceRequest(new FursHeader(), invoice), true));
+    }
+
+    /**
+     * Registers many business premises, with bounded parallelism and an optional rate limit
+     * (see {@link BulkOptions}). A failure of one premise doesn't stop the others; to resume
+     * after failures, call this again with {@link BulkReport#getItemsToRetry()}.
+     */
+    default CompletableFuture<BulkReport<BusinessPremise>> businessPremises(Collection<BusinessPremise> premises, BulkOptions options) {
+        return BulkRunner.runAsync(premises, options, this::businessPremise);
+    }
+
+    /**
+     * @see FursClient#warmUp(int, int)
+     */
+    default CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        WarmUp.checkArgs(iterations, connections);
+        return WarmUp.echoAsync(this, iterations, connections, null);
+    }
+
+    /**
+     * Same as {@link #warmUp(int, int)} with 200 iterations and one connection.
+     */
+    default CompletableFuture<WarmUpReport> warmUp() {
+        return warmUp(200, 1);
+    }
+
     static FursClientAsync create(FursConfig config, HttpClientAsync httpClient) {
-        return new FursClientAsyncImpl(config, httpClient);
+        return create(config, httpClient, new FursClientOptions());
+    }
+
+    static FursClientAsync create(FursConfig config, HttpClientAsync httpClient, FursClientOptions options) {
+        return create(new FursConfigHolder(config), httpClient, options);
+    }
+
+    /**
+     * Creates a client that uses whichever config the holder has at the start of each call,
+     * so that certificates can be replaced without creating new clients.
+     */
+    static FursClientAsync create(FursConfigHolder configHolder, HttpClientAsync httpClient, FursClientOptions options) {
+        return createBuffered(configHolder, HttpClientAsyncBuffered.of(httpClient), options);
+    }
+
+    /**
+     * Creates a client that reads responses from buffers provided by the HTTP client, which
+     * are released as soon as they are parsed, so that pooled buffers can be used without
+     * copying them into byte arrays.
+     */
+    static FursClientAsync createBuffered(FursConfigHolder configHolder, HttpClientAsyncBuffered httpClient, FursClientOptions options) {
+        return new FursClientAsyncImpl(configHolder, httpClient, options);
+    }
+
+    /**
+     * Wraps a blocking client, so that each call runs as a separate task on <tt>executor</tt>.
+     * On Java 21 and later, passing <tt>Executors.newVirtualThreadPerTaskExecutor()</tt> gives
+     * an asynchronous client that uses one cheap virtual thread per request, without needing
+     * a non-blocking HTTP implementation.
+     *
+     * @param client the blocking client to delegate to
+     * @param executor the executor to run calls on
+     * @return the asynchronous view of <tt>client</tt>
+     */
+    static FursClientAsync fromBlocking(FursClient client, Executor executor) {
+        return new FursClientAsyncAdapter(client, executor);
     }
 }
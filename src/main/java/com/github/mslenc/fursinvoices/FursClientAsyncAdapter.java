@@ -0,0 +1,114 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Exposes a blocking {@link FursClient} as a {@link FursClientAsync}, by running each call
+ * as a separate task on the provided executor. This is intended primarily for
+ * virtual-thread-per-task executors (Java 21+), where blocking in {@link com.github.mslenc.fursinvoices.http.HttpClientJavaNet}
+ * is cheap, but works with any executor.
+ * <p>
+ * Virtual threads only pay off if nothing on the path of a call blocks while holding a monitor:
+ * up to Java 23, a virtual thread that blocks (e.g. in file or socket I/O) inside a
+ * <tt>synchronized</tt> block pins its carrier thread, so a few such calls can stall all the
+ * others. Code on that path (signing, the HTTP clients, {@link PremiseRegistrationCache}
+ * implementations, the recording transports, ...) must therefore only hold monitors for short,
+ * non-blocking sections, and use a {@link java.util.concurrent.locks.ReentrantLock} (or no lock)
+ * around I/O. {@code AdapterBenchmark} in the <tt>loadgen</tt> source set compares a fixed pool
+ * with virtual threads.
+ */
+class FursClientAsyncAdapter implements FursClientAsync {
+    private final FursClient client;
+    private final Executor executor;
+
+    FursClientAsyncAdapter(FursClient client, Executor executor) {
+        this.client = checkIfNull(client, "client");
+        this.executor = checkIfNull(executor, "executor");
+    }
+
+    interface BlockingCall<T> {
+        T call() throws Exception;
+    }
+
+    private <T> CompletableFuture<T> submit(BlockingCall<T> call) {
+        CompletableFuture<T> promise = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    result = call.call();
+                } catch (Throwable t) {
+                    promise.completeExceptionally(t);
+                    return;
+                }
+
+                promise.complete(result);
+            });
+        } catch (Throwable t) {
+            promise.completeExceptionally(t);
+        }
+
+        return promise;
+    }
+
+    @Override
+    public CompletableFuture<String> echo(String message) {
+        return submit(() -> client.echo(message));
+    }
+
+    @Override
+    public CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        WarmUp.checkArgs(iterations, connections);
+        return submit(() -> client.warmUp(iterations, connections));
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request) {
+        return submit(() -> client.invoice(request));
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        return submit(() -> client.invoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request) {
+        return submit(() -> {
+            client.salesBookInvoice(request);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        return submit(() -> {
+            client.salesBookInvoice(request, batch);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
+        return submit(() -> {
+            client.businessPremise(request);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return submit(() -> {
+            client.businessPremise(request, force);
+            return null;
+        });
+    }
+}
@@ -1,211 +1,483 @@
 package com.github.mslenc.fursinvoices;
 
 import com.github.mslenc.fursinvoices.dto.*;
-import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+import com.github.mslenc.fursinvoices.http.HttpBody;
+import com.github.mslenc.fursinvoices.http.HttpClientAsyncBuffered;
 import com.github.mslenc.fursinvoices.http.HttpRequest;
+import com.github.mslenc.fursinvoices.tracing.FursScope;
+import com.github.mslenc.fursinvoices.tracing.FursSpan;
 
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static com.github.mslenc.fursinvoices.tracing.FursSpanNames.*;
 import static java.util.Collections.singletonMap;
 
 class FursClientAsyncImpl extends AbstractFursClientImpl implements FursClientAsync {
-    private final HttpClientAsync httpClient;
+    private final HttpClientAsyncBuffered httpClient;
+    private final Executor cpuExecutor;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService timerScheduler;
 
-    FursClientAsyncImpl(FursConfig config, HttpClientAsync httpClient) {
-        super(config);
+    FursClientAsyncImpl(FursConfigHolder configHolder, HttpClientAsyncBuffered httpClient, FursClientOptions options) {
+        super(configHolder, options);
 
         this.httpClient = checkIfNull(httpClient, "httpClient");
+        this.cpuExecutor = options.getCpuExecutor();
+        this.callbackExecutor = options.getCallbackExecutor();
+        this.timerScheduler = options.getTimerScheduler();
     }
 
-    private CompletableFuture<byte[]> safelyHttpExec(HttpRequest request) {
-        CompletableFuture<byte[]> httpPromise;
-
-        try {
-            httpPromise = httpClient.execute(request);
-            if (httpPromise == null)
-                throw new NullPointerException("null future returned from httpClient");
-            return httpPromise;
-        } catch (Throwable t) {
-            CompletableFuture<byte[]> failure = new CompletableFuture<>();
-            failure.completeExceptionally(t);
-            return failure;
-        }
+    private ScheduledExecutorService timerScheduler() {
+        return timerScheduler != null ? timerScheduler : DefaultTimerScheduler.INSTANCE;
     }
 
-    private CompletableFuture<FursResponse> exchangeJson(URL url, FursRequest request) {
-        CompletableFuture<FursResponse> promise = new CompletableFuture<>();
+    /**
+     * The state of a single call, which moves through three stages: preparing and sending the
+     * request (on the CPU executor, if any), handling the response (again on the CPU executor,
+     * rather than on the thread that completed the HTTP future) and completing the promise (on
+     * the callback executor, if any). The same object is the task for each stage and the
+     * callback of the HTTP future, so that the only futures per call are the promise and the
+     * one from the HTTP client.
+     * <p>
+     * With a {@link com.github.mslenc.fursinvoices.health.TimeoutPolicy}, the HTTP stage can also
+     * end with a timeout, and an idempotent request (i.e. echo) can be sent a second time (hedged)
+     * if there is no response after the hedge delay. Whichever of these comes first wins; a later
+     * response is just released. Invoices and premises are never hedged, as FURS could record a
+     * duplicate of them.
+     */
+    private abstract class Exchange<T> implements Runnable, BiConsumer<HttpBody, Throwable> {
+        private static final int SEND = 0;
+        private static final int RECEIVE = 1;
+        private static final int COMPLETE = 2;
+
+        final CompletableFuture<T> promise = new CompletableFuture<>();
+        final FursConfig config = configHolder.get();
+        final FursSpan span;
+        private final boolean signed;
+        private final boolean idempotent;
+
+        private int stage = SEND;
+        private URL url;
+        private FursRequest request;
+        private byte[] content;
+        private FursSpan httpSpan;
+        private long captureStart;
+        private HttpBody responseBody;
+        private T result;
+        private Throwable error;
+
+        private HttpRequest httpRequest;
+        private final AtomicBoolean httpDone = new AtomicBoolean();
+        private final AtomicInteger httpAttempts = new AtomicInteger();
+        private volatile ScheduledFuture<?> timeoutTimer;
+        private volatile ScheduledFuture<?> hedgeTimer;
+        private volatile boolean hedged;
+
+        Exchange(FursSpan span, boolean signed, boolean idempotent) {
+            this.span = span;
+            this.signed = signed;
+            this.idempotent = idempotent;
+        }
+
+        /**
+         * Returns the URL to send the request to.
+         */
+        abstract URL url();
+
+        /**
+         * Builds the request, or returns null if the call is already done, with the result
+         * returned by {@link #skippedResult()}.
+         */
+        abstract FursRequest prepare() throws Exception;
+
+        T skippedResult() {
+            return null;
+        }
+
+        abstract T extract(FursResponse response) throws Exception;
 
-        HttpRequest httpRequest;
-        try {
-            byte[] content = JSON.byteify(request);
-            httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content);
-        } catch (Throwable t) {
-            promise.completeExceptionally(t);
+        CompletableFuture<T> start() {
+            dispatch(cpuExecutor);
             return promise;
         }
 
-        safelyHttpExec(httpRequest).whenComplete((responseBytes, error) -> {
-            if (error != null) {
-                promise.completeExceptionally(error);
+        private void dispatch(Executor executor) {
+            if (executor == null) {
+                run();
                 return;
             }
 
-            FursResponse result;
             try {
-                result = JSON.parse(responseBytes, FursResponse.class);
+                executor.execute(this);
             } catch (Throwable t) {
-                promise.completeExceptionally(t);
-                return;
+                if (stage == COMPLETE) {
+                    // the callback executor refused, so complete where we are
+                    run();
+                } else {
+                    if (responseBody != null) {
+                        responseBody.release();
+                        responseBody = null;
+                    }
+                    fail(t);
+                }
             }
+        }
 
-            promise.complete(result);
-        });
+        @Override
+        public void run() {
+            switch (stage) {
+                case SEND:
+                    send();
+                    break;
+                case RECEIVE:
+                    receive();
+                    break;
+                default:
+                    if (error != null) {
+                        promise.completeExceptionally(error);
+                    } else {
+                        promise.complete(result);
+                    }
+            }
+        }
 
-        return promise;
-    }
+        private void send() {
+            CompletableFuture<HttpBody> httpFuture;
+            try {
+                url = url();
+                request = prepare();
+                if (request == null) {
+                    succeed(skippedResult());
+                    return;
+                }
+
+                content = signed ? JSON.byteify(wrapInTokenForm(request, config, span)) : JSON.byteify(request);
+                httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content, timeoutMillis());
+
+                httpSpan = startSpan(HTTP, span);
+                captureStart = captureStart();
+                FursScope scope = httpSpan.makeCurrent();
+                try {
+                    httpSpan.setAttribute(ATTR_REQUEST_BYTES, content.length);
+                    httpAttempts.set(1);
+                    httpFuture = httpClient.execute(httpRequest);
+                } finally {
+                    scope.close();
+                }
+                if (httpFuture == null)
+                    throw new NullPointerException("null future returned from httpClient");
+            } catch (Throwable t) {
+                if (httpSpan != null)
+                    endSpan(httpSpan, t);
+                fail(t);
+                return;
+            }
+
+            stage = RECEIVE;
+            try {
+                startTimers();
+            } catch (RejectedExecutionException e) {
+                // the timer scheduler was shut down; the HTTP client still has the timeout
+                cancelTimers();
+            }
+            httpFuture.whenComplete(this);
+        }
 
-    private CompletableFuture<FursResponse> exchangeJsonAsToken(URL url, FursRequest request) {
-        CompletableFuture<FursResponse> promise = new CompletableFuture<>();
+        private void startTimers() {
+            long timeout = httpRequest.getTimeoutMillis();
+            long hedgeDelay = idempotent ? hedgeDelayMillis() : 0;
+
+            if (timeout > 0) {
+                timeoutTimer = timerScheduler().schedule(() -> {
+                    if (httpDone.compareAndSet(false, true)) {
+                        cancelTimers();
+                        onHttpResult(null, new SocketTimeoutException("No response within " + timeout + " ms"));
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            }
 
-        HttpRequest httpRequest;
-        try {
-            TokenEnvelope tokenEnvelope = wrapInTokenForm(request);
-            byte[] content = JSON.byteify(tokenEnvelope);
-            httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content);
-        } catch (Throwable t) {
-            promise.completeExceptionally(t);
-            return promise;
+            if (hedgeDelay > 0 && (timeout == 0 || hedgeDelay < timeout))
+                hedgeTimer = timerScheduler().schedule(this::hedge, hedgeDelay, TimeUnit.MILLISECONDS);
         }
 
-        safelyHttpExec(httpRequest).whenComplete((responseBytes, error) -> {
-            if (error != null) {
-                promise.completeExceptionally(error);
+        private void hedge() {
+            // counted before checking, so that a failure of the first attempt waits for this one
+            httpAttempts.incrementAndGet();
+            if (httpDone.get()) {
+                httpAttempts.decrementAndGet();
                 return;
             }
 
-            FursResponse result;
-
+            CompletableFuture<HttpBody> hedgeFuture;
             try {
-                TokenEnvelope responseToken = JSON.parse(responseBytes, TokenEnvelope.class);
-                byte[] payload = verifySigAndExtractPayload(responseToken.getToken());
-                result = JSON.parse(payload, FursResponse.class);
+                hedgeFuture = httpClient.execute(httpRequest);
+                if (hedgeFuture == null)
+                    throw new NullPointerException("null future returned from httpClient");
             } catch (Throwable t) {
-                promise.completeExceptionally(t);
+                accept(null, t);
                 return;
             }
 
-            promise.complete(result);
-        });
+            hedged = true;
+            hedgeFuture.whenComplete(this);
+        }
 
-        return promise;
-    }
+        private void cancelTimers() {
+            ScheduledFuture<?> timer = timeoutTimer;
+            if (timer != null)
+                timer.cancel(false);
 
-    @Override
-    public CompletableFuture<String> echo(String message) {
-        CompletableFuture<String> promise = new CompletableFuture<>();
-
-        FursRequest req;
-        URL url;
-        try {
-            req = new FursRequest(message);
-            url = config.getEnv().getEchoUrl();
-        } catch (Throwable t) {
-            promise.completeExceptionally(t);
-            return promise;
+            timer = hedgeTimer;
+            if (timer != null)
+                timer.cancel(false);
         }
 
-        exchangeJson(url, req).whenComplete((response, error) -> {
-            if (error != null) {
-                promise.completeExceptionally(error);
+        @Override
+        public void accept(HttpBody body, Throwable httpError) {
+            int attemptsLeft = httpAttempts.decrementAndGet();
+            if (httpError != null && attemptsLeft > 0)
+                return; // the other attempt may still succeed
+
+            if (!httpDone.compareAndSet(false, true)) {
+                // timed out, or the other attempt was first
+                if (body != null)
+                    body.release();
                 return;
             }
 
-            String res;
+            cancelTimers();
+            onHttpResult(body, httpError);
+        }
+
+        private void onHttpResult(HttpBody body, Throwable httpError) {
+            if (hedged)
+                httpSpan.setAttribute(ATTR_HTTP_ATTEMPTS, 2);
+            if (body != null)
+                httpSpan.setAttribute(ATTR_RESPONSE_BYTES, body.getBuffer().remaining());
+            endSpan(httpSpan, httpError);
+
+            if (httpError != null) {
+                if (signed)
+                    captureExchange(url, request, captureStart, content, null, null, httpError);
+                fail(httpError);
+                return;
+            }
+
+            responseBody = body;
+            dispatch(cpuExecutor);
+        }
+
+        private void receive() {
+            HttpBody body = responseBody;
+            responseBody = null;
+
+            T value;
             try {
-                res = extractEchoResponse(response);
+                if (body == null)
+                    throw new NullPointerException("null body returned from httpClient");
+
+                FursResponse response;
+                if (signed) {
+                    try {
+                        TokenEnvelope responseToken = JSON.parse(body.getBuffer(), TokenEnvelope.class);
+                        byte[] payload = verifySigAndExtractPayload(responseToken.getToken(), span);
+                        response = JSON.parse(payload, FursResponse.class);
+                    } catch (Throwable t) {
+                        captureExchange(url, request, captureStart, content, body, null, t);
+                        throw t;
+                    }
+                    captureExchange(url, request, captureStart, content, body, response, null);
+                } else {
+                    response = JSON.parse(body.getBuffer(), FursResponse.class);
+                }
+
+                body.release();
+                body = null;
+
+                value = extract(response);
             } catch (Throwable t) {
-                promise.completeExceptionally(t);
+                if (body != null)
+                    body.release();
+                fail(t);
                 return;
             }
 
-            promise.complete(res);
-        });
+            succeed(value);
+        }
 
-        return promise;
+        private void succeed(T value) {
+            endSpan(span, null);
+            result = value;
+            stage = COMPLETE;
+            dispatch(callbackExecutor);
+        }
+
+        private void fail(Throwable t) {
+            endSpan(span, t);
+            error = t;
+            stage = COMPLETE;
+            dispatch(callbackExecutor);
+        }
     }
 
     @Override
-    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
-        CompletableFuture<Void> promise = new CompletableFuture<>();
-
-        FursRequest req;
-        URL url;
-        try {
-            BusinessPremiseRequest wrapper = new BusinessPremiseRequest(request);
-            req = new FursRequest(wrapper);
-            url = config.getEnv().getPremisesUrl();
-        } catch (Throwable t) {
-            promise.completeExceptionally(t);
-            return promise;
-        }
+    public CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        WarmUp.checkArgs(iterations, connections);
 
-        exchangeJsonAsToken(url, req).whenComplete((response, error) -> {
-            if (error != null) {
-                promise.completeExceptionally(error);
-                return;
+        CompletableFuture<EnumMap<WarmUpReport.Step, Long>> local = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                local.complete(warmUpLocally(iterations));
+            } catch (Throwable t) {
+                local.completeExceptionally(t);
             }
+        };
 
+        if (cpuExecutor != null) {
             try {
-                checkBusinessPremiseResponse(response);
+                cpuExecutor.execute(task);
             } catch (Throwable t) {
-                promise.completeExceptionally(t);
-                return;
+                local.completeExceptionally(t);
             }
+        } else {
+            task.run();
+        }
 
-            promise.complete(null);
-        });
+        return local.thenCompose(nanos -> WarmUp.echoAsync(this, iterations, connections, nanos));
+    }
+
+    @Override
+    public CompletableFuture<String> echo(String message) {
+        return new Exchange<String>(startSpan(ECHO, null), false, true) {
+            @Override
+            URL url() {
+                return config.getEnv().getEchoUrl();
+            }
+
+            @Override
+            FursRequest prepare() {
+                return new FursRequest(message);
+            }
+
+            @Override
+            String extract(FursResponse response) throws FursException {
+                return extractEchoResponse(response);
+            }
+        }.start();
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
+        return businessPremise(request, false);
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return new Exchange<Void>(startSpan(BUSINESS_PREMISE, null), true, false) {
+            private String cacheHash;
+
+            @Override
+            URL url() {
+                return config.getEnv().getPremisesUrl();
+            }
+
+            @Override
+            FursRequest prepare() {
+                cacheHash = premiseCacheHash(request, config);
+                if (cacheHash != null && !force && premiseCache.contains(cacheHash))
+                    return null;
+
+                BusinessPremiseRequest wrapper = new BusinessPremiseRequest(request);
+                tagPremise(span, wrapper);
+                return new FursRequest(wrapper);
+            }
 
-        return promise;
+            @Override
+            Void extract(FursResponse response) throws FursException {
+                checkBusinessPremiseResponse(response);
+                rememberPremise(cacheHash);
+                return null;
+            }
+        }.start();
     }
 
     @Override
     public CompletableFuture<UUID> invoice(InvoiceRequest request) {
-        CompletableFuture<UUID> promise = new CompletableFuture<>();
-
-        FursRequest req;
-        URL url;
-        try {
-            checkInvoiceRequest(request);
-            req = new FursRequest(request);
-            url = config.getEnv().getInvoicesUrl();
-        } catch (Throwable t) {
-            promise.completeExceptionally(t);
-            return promise;
-        }
+        return invoice(request, false);
+    }
 
-        exchangeJsonAsToken(url, req).whenComplete((response, error) -> {
-            if (error != null) {
-                promise.completeExceptionally(error);
-                return;
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        return new Exchange<UUID>(startSpan(INVOICE, null), true, false) {
+            @Override
+            URL url() {
+                return invoicesUrl(config, batch);
             }
 
-            UUID res;
-            try {
-                res = extractInvoiceResponse(response);
-            } catch (Throwable t) {
-                promise.completeExceptionally(t);
-                return;
+            @Override
+            FursRequest prepare() {
+                checkInvoiceRequest(request, config, span);
+                tagInvoice(span, request);
+                return new FursRequest(request);
             }
 
-            promise.complete(res);
-        });
+            @Override
+            UUID extract(FursResponse response) throws FursException {
+                return extractInvoiceResponse(response);
+            }
+        }.start();
+    }
 
-        return promise;
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request) {
+        return salesBookInvoice(request, false);
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        return new Exchange<Void>(startSpan(SALES_BOOK_INVOICE, null), true, false) {
+            @Override
+            URL url() {
+                return invoicesUrl(config, batch);
+            }
+
+            @Override
+            FursRequest prepare() {
+                checkSalesBookRequest(request, span);
+                tagSalesBookInvoice(span, request);
+                return new FursRequest(request);
+            }
+
+            @Override
+            Void extract(FursResponse response) throws FursException {
+                checkSalesBookResponse(response);
+                return null;
+            }
+        }.start();
     }
 
     private static final Map<String, String> jsonHeaders = singletonMap("content-type", "application/json; charset=UTF-8");
+
+    static class DefaultTimerScheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "furs-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
@@ -1,8 +1,11 @@
 package com.github.mslenc.fursinvoices;
 
 import com.github.mslenc.fursinvoices.dto.*;
-import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpBody;
+import com.github.mslenc.fursinvoices.http.HttpClientBuffered;
 import com.github.mslenc.fursinvoices.http.HttpRequest;
+import com.github.mslenc.fursinvoices.tracing.FursScope;
+import com.github.mslenc.fursinvoices.tracing.FursSpan;
 
 import java.io.IOException;
 import java.net.URL;
@@ -10,55 +13,167 @@ import java.util.Map;
 import java.util.UUID;
 
 import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static com.github.mslenc.fursinvoices.tracing.FursSpanNames.*;
 import static java.util.Collections.singletonMap;
 
 class FursClientImpl extends AbstractFursClientImpl implements FursClient {
-    private final HttpClient httpClient;
+    private final HttpClientBuffered httpClient;
 
-    FursClientImpl(FursConfig config, HttpClient httpClient) {
-        super(config);
+    FursClientImpl(FursConfigHolder configHolder, HttpClientBuffered httpClient, FursClientOptions options) {
+        super(configHolder, options);
 
         this.httpClient = checkIfNull(httpClient, "httpClient");
     }
 
-    private FursResponse exchangeJson(URL url, FursRequest request) throws IOException {
+    private HttpBody tracedExecute(HttpRequest httpRequest, FursSpan parent) throws IOException {
+        FursSpan span = startSpan(HTTP, parent);
+        try {
+            HttpBody responseBody;
+            FursScope scope = span.makeCurrent();
+            try {
+                span.setAttribute(ATTR_REQUEST_BYTES, httpRequest.getContentLength());
+                responseBody = httpClient.execute(httpRequest);
+                if (responseBody == null)
+                    throw new NullPointerException("null body returned from httpClient");
+                span.setAttribute(ATTR_RESPONSE_BYTES, responseBody.getBuffer().remaining());
+            } finally {
+                scope.close();
+            }
+            endSpan(span, null);
+            return responseBody;
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
+    }
+
+    private FursResponse exchangeJson(FursConfig config, URL url, FursRequest request, FursSpan span) throws IOException {
         byte[] content = JSON.byteify(request);
-        HttpRequest httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content);
-        byte[] responseBytes = httpClient.execute(httpRequest);
-        return JSON.parse(responseBytes, FursResponse.class);
+        HttpRequest httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content, timeoutMillis());
+        HttpBody responseBody = tracedExecute(httpRequest, span);
+        try {
+            return JSON.parse(responseBody.getBuffer(), FursResponse.class);
+        } finally {
+            responseBody.release();
+        }
     }
 
-    private FursResponse exchangeJsonAsToken(URL url, FursRequest request) throws IOException, FursException {
-        TokenEnvelope tokenEnvelope = wrapInTokenForm(request);
+    private FursResponse exchangeJsonAsToken(FursConfig config, URL url, FursRequest request, FursSpan span) throws IOException, FursException {
+        TokenEnvelope tokenEnvelope = wrapInTokenForm(request, config, span);
         byte[] content = JSON.byteify(tokenEnvelope);
-        HttpRequest httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content);
-        byte[] responseBytes = httpClient.execute(httpRequest);
-        TokenEnvelope responseToken = JSON.parse(responseBytes, TokenEnvelope.class);
-        byte[] payload = verifySigAndExtractPayload(responseToken.getToken());
-        return JSON.parse(payload, FursResponse.class);
+        HttpRequest httpRequest = new HttpRequest(url, "POST", config.getSslContext(), jsonHeaders, content, timeoutMillis());
+
+        long captureStart = captureStart();
+        HttpBody responseBody = null;
+        try {
+            responseBody = tracedExecute(httpRequest, span);
+            TokenEnvelope responseToken = JSON.parse(responseBody.getBuffer(), TokenEnvelope.class);
+            byte[] payload = verifySigAndExtractPayload(responseToken.getToken(), span);
+            FursResponse response = JSON.parse(payload, FursResponse.class);
+            captureExchange(url, request, captureStart, content, responseBody, response, null);
+            return response;
+        } catch (Throwable t) {
+            captureExchange(url, request, captureStart, content, responseBody, null, t);
+            throw t;
+        } finally {
+            if (responseBody != null)
+                responseBody.release();
+        }
+    }
+
+    @Override
+    public WarmUpReport warmUp(int iterations, int connections) {
+        WarmUp.checkArgs(iterations, connections);
+        return WarmUp.echoBlocking(this, iterations, connections, warmUpLocally(iterations));
     }
 
     @Override
     public String echo(String message) throws IOException, FursException {
-        FursRequest req = new FursRequest(message);
-        FursResponse res = exchangeJson(config.getEnv().getEchoUrl(), req);
-        return extractEchoResponse(res);
+        FursSpan span = startSpan(ECHO, null);
+        try {
+            FursConfig config = configHolder.get();
+            FursRequest req = new FursRequest(message);
+            FursResponse res = exchangeJson(config, config.getEnv().getEchoUrl(), req, span);
+            String result = extractEchoResponse(res);
+            endSpan(span, null);
+            return result;
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
     }
 
     @Override
     public void businessPremise(BusinessPremise request) throws IOException, FursException {
-        BusinessPremiseRequest wrapper = new BusinessPremiseRequest(request);
-        FursRequest req = new FursRequest(wrapper);
-        FursResponse res = exchangeJsonAsToken(config.getEnv().getPremisesUrl(), req);
-        checkBusinessPremiseResponse(res);
+        businessPremise(request, false);
+    }
+
+    @Override
+    public void businessPremise(BusinessPremise request, boolean force) throws IOException, FursException {
+        FursConfig config = configHolder.get();
+        String cacheHash = premiseCacheHash(request, config);
+        if (cacheHash != null && !force && premiseCache.contains(cacheHash))
+            return;
+
+        FursSpan span = startSpan(BUSINESS_PREMISE, null);
+        try {
+            BusinessPremiseRequest wrapper = new BusinessPremiseRequest(request);
+            tagPremise(span, wrapper);
+            FursRequest req = new FursRequest(wrapper);
+            FursResponse res = exchangeJsonAsToken(config, config.getEnv().getPremisesUrl(), req, span);
+            checkBusinessPremiseResponse(res);
+            endSpan(span, null);
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
+
+        rememberPremise(cacheHash);
     }
 
     @Override
     public UUID invoice(InvoiceRequest request) throws IOException, FursException {
-        checkInvoiceRequest(request);
-        FursRequest req = new FursRequest(request);
-        FursResponse res = exchangeJsonAsToken(config.getEnv().getInvoicesUrl(), req);
-        return extractInvoiceResponse(res);
+        return invoice(request, false);
+    }
+
+    @Override
+    public UUID invoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        FursSpan span = startSpan(INVOICE, null);
+        try {
+            FursConfig config = configHolder.get();
+            checkInvoiceRequest(request, config, span);
+            tagInvoice(span, request);
+            FursRequest req = new FursRequest(request);
+            FursResponse res = exchangeJsonAsToken(config, invoicesUrl(config, batch), req, span);
+            UUID result = extractInvoiceResponse(res);
+            endSpan(span, null);
+            return result;
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
+    }
+
+    @Override
+    public void salesBookInvoice(InvoiceRequest request) throws IOException, FursException {
+        salesBookInvoice(request, false);
+    }
+
+    @Override
+    public void salesBookInvoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        FursSpan span = startSpan(SALES_BOOK_INVOICE, null);
+        try {
+            FursConfig config = configHolder.get();
+            checkSalesBookRequest(request, span);
+            tagSalesBookInvoice(span, request);
+            FursRequest req = new FursRequest(request);
+            FursResponse res = exchangeJsonAsToken(config, invoicesUrl(config, batch), req, span);
+            checkSalesBookResponse(res);
+            endSpan(span, null);
+        } catch (Throwable t) {
+            endSpan(span, t);
+            throw t;
+        }
     }
 
     private static final Map<String, String> jsonHeaders = singletonMap("content-type", "application/json; charset=UTF-8");
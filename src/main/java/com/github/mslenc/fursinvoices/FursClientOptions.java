@@ -0,0 +1,174 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.capture.WireCapture;
+import com.github.mslenc.fursinvoices.health.TimeoutPolicy;
+import com.github.mslenc.fursinvoices.tracing.FursTracer;
+import com.github.mslenc.fursinvoices.validation.InvoiceConsistencyCheck;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Optional settings for {@link FursClient} and {@link FursClientAsync}. The values are
+ * read when the client is created, so changing them afterwards has no effect on it.
+ */
+public class FursClientOptions {
+    private PremiseRegistrationCache premiseCache;
+    private FursTracer tracer;
+    private WireCapture wireCapture;
+    private Executor cpuExecutor;
+    private Executor callbackExecutor;
+    private InvoiceConsistencyCheck consistencyCheck;
+    private TimeoutPolicy timeoutPolicy;
+    private ScheduledExecutorService timerScheduler;
+
+    /**
+     * @see #setPremiseCache(PremiseRegistrationCache)
+     */
+    public PremiseRegistrationCache getPremiseCache() {
+        return premiseCache;
+    }
+
+    /**
+     * Sets a cache of business premise registrations that were already accepted by FURS.
+     * When set, registering a premise with exactly the same contents again is skipped,
+     * unless forced. By default, there is no cache.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setPremiseCache(PremiseRegistrationCache premiseCache) {
+        this.premiseCache = premiseCache;
+        return this;
+    }
+
+    /**
+     * @see #setTracer(FursTracer)
+     */
+    public FursTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Sets a tracer that receives a span for each call and for each of its stages (computing
+     * ZOI, signing, the HTTP exchange and verifying the response). By default, there is no
+     * tracer and no spans are created at all.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setTracer(FursTracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /**
+     * @see #setWireCapture(WireCapture)
+     */
+    public WireCapture getWireCapture() {
+        return wireCapture;
+    }
+
+    /**
+     * Sets a capture that receives the exact signed tokens exchanged with FURS (for invoices
+     * and business premises), for debugging rejections. By default, nothing is captured.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setWireCapture(WireCapture wireCapture) {
+        this.wireCapture = wireCapture;
+        return this;
+    }
+
+    /**
+     * @see #setCpuExecutor(Executor)
+     */
+    public Executor getCpuExecutor() {
+        return cpuExecutor;
+    }
+
+    /**
+     * Sets the executor on which {@link FursClientAsync} does its CPU-heavy work: computing ZOI,
+     * serializing and signing the request, and parsing and verifying the response. This keeps
+     * it off the thread that completes the HTTP future, which is typically an I/O event loop.
+     * By default, the request is prepared on the calling thread and the response is handled
+     * on the thread that completed the HTTP future.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setCpuExecutor(Executor cpuExecutor) {
+        this.cpuExecutor = cpuExecutor;
+        return this;
+    }
+
+    /**
+     * @see #setCallbackExecutor(Executor)
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Sets the executor on which the futures returned by {@link FursClientAsync} are completed,
+     * and so where their non-async dependent stages run. By default, they are completed on the
+     * thread that handled the response.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    /**
+     * @see #setConsistencyCheck(InvoiceConsistencyCheck)
+     */
+    public InvoiceConsistencyCheck getConsistencyCheck() {
+        return consistencyCheck;
+    }
+
+    /**
+     * Sets a check that each invoice must pass before its protected ID is computed and it is
+     * signed and sent. An invoice that fails is rejected locally with a
+     * {@link com.github.mslenc.fursinvoices.validation.ValidationException} listing all the
+     * problems. By default, invoices aren't checked.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setConsistencyCheck(InvoiceConsistencyCheck consistencyCheck) {
+        this.consistencyCheck = consistencyCheck;
+        return this;
+    }
+
+    /**
+     * @see #setTimeoutPolicy(TimeoutPolicy)
+     */
+    public TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    /**
+     * Sets the policy that decides the timeout of each call (and, for {@link FursClientAsync},
+     * the hedge delay of echo calls), e.g. an {@link com.github.mslenc.fursinvoices.health.AdaptiveTimeoutPolicy}
+     * from an {@link com.github.mslenc.fursinvoices.health.EndpointProber}. The timeout is passed
+     * to the HTTP client with each request, and the asynchronous client also enforces it itself.
+     * By default, there are no timeouts other than those of the HTTP client.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+        return this;
+    }
+
+    /**
+     * @see #setTimerScheduler(ScheduledExecutorService)
+     */
+    public ScheduledExecutorService getTimerScheduler() {
+        return timerScheduler;
+    }
+
+    /**
+     * Sets the scheduler on which {@link FursClientAsync} runs the timeouts and hedges of the
+     * {@link #setTimeoutPolicy(TimeoutPolicy) timeout policy}. A timeout fails the call on the
+     * scheduler's thread, so its dependent stages run there unless there is a
+     * {@link #setCallbackExecutor(Executor) callback executor}. By default, a daemon thread
+     * shared by all clients, and used for nothing else, is used.
+     * @return this, for fluent interface
+     */
+    public FursClientOptions setTimerScheduler(ScheduledExecutorService timerScheduler) {
+        this.timerScheduler = timerScheduler;
+        return this;
+    }
+}
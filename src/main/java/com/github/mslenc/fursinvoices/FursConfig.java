@@ -22,6 +22,7 @@ import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
 import java.util.ArrayList;
 
 import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
@@ -35,6 +36,8 @@ public class FursConfig {
     private final String subjectName;
     private final String issuerName;
     private final BigInteger serialNumber;
+    private final Instant certificateNotBefore;
+    private final Instant certificateNotAfter;
 
     public FursConfig(FursEnv env, SSLContext sslContext, PrivateKey privateKey, X509Certificate clientCertificate) {
         this.env = checkIfNull(env, "env");
@@ -45,6 +48,8 @@ public class FursConfig {
         this.subjectName = clientCertificate.getSubjectDN().toString();
         this.issuerName = clientCertificate.getIssuerDN().toString();
         this.serialNumber = clientCertificate.getSerialNumber();
+        this.certificateNotBefore = clientCertificate.getNotBefore().toInstant();
+        this.certificateNotAfter = clientCertificate.getNotAfter().toInstant();
 
         // sanity check
         Utils.computeRS256(new byte[] { 1, 2, 3 }, privateKey);
@@ -68,6 +73,29 @@ public class FursConfig {
         return privateKey;
     }
 
+    /**
+     * Returns the subject of the client certificate, which identifies the taxpayer.
+     */
+    public String getCertificateSubjectName() {
+        return subjectName;
+    }
+
+    public BigInteger getCertificateSerialNumber() {
+        return serialNumber;
+    }
+
+    public Instant getCertificateNotBefore() {
+        return certificateNotBefore;
+    }
+
+    /**
+     * Returns the time when the client certificate expires, after which FURS will refuse
+     * the connection.
+     */
+    public Instant getCertificateNotAfter() {
+        return certificateNotAfter;
+    }
+
     public static FursConfig createFromPem(byte[] pem, char[] password, FursEnv env) throws IOException, CertificateException, OperatorCreationException, PKCSException, KeyStoreException, NoSuchAlgorithmException, UnrecoverableKeyException, KeyManagementException {
         checkIfNull(pem, "pem");
         checkIfNull(password, "password");
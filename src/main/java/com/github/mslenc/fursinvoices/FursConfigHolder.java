@@ -0,0 +1,189 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Holds the current {@link FursConfig} of one or more clients and allows replacing it while
+ * they are in use, e.g. when the certificate is renewed. Each call reads the config once at
+ * its start, so calls in flight finish with the config they started with.
+ * <p>
+ * The replacement must be for the same {@link FursEnv}. Use {@link #swapAfterEcho(FursConfig, HttpClient)}
+ * to first check that FURS accepts the new certificate (which also warms up its SSL context),
+ * or {@link #watchPem(Path, char[], HttpClient, Consumer)} to reload it whenever the PEM file
+ * changes.
+ */
+public class FursConfigHolder {
+    private final FursEnv env;
+    private final AtomicReference<FursConfig> config;
+    private final List<Consumer<FursConfig>> swapListeners = new CopyOnWriteArrayList<>();
+    private volatile Instant lastSwap;
+    private volatile int swapCount;
+
+    public FursConfigHolder(FursConfig config) {
+        checkIfNull(config, "config");
+
+        this.env = config.getEnv();
+        this.config = new AtomicReference<>(config);
+        this.lastSwap = Instant.now();
+    }
+
+    public FursConfig get() {
+        return config.get();
+    }
+
+    public FursEnv getEnv() {
+        return env;
+    }
+
+    /**
+     * Replaces the config immediately.
+     * @return the previous config
+     */
+    public FursConfig swap(FursConfig newConfig) {
+        checkIfNull(newConfig, "newConfig");
+        if (newConfig.getEnv() != env)
+            throw new IllegalArgumentException("The new config is for " + newConfig.getEnv() + " instead of " + env);
+
+        FursConfig previous = config.getAndSet(newConfig);
+        synchronized (this) {
+            swapCount++;
+            lastSwap = Instant.now();
+        }
+
+        for (Consumer<FursConfig> listener : swapListeners)
+            listener.accept(newConfig);
+
+        return previous;
+    }
+
+    /**
+     * Sends an echo request with the new config and replaces the current config only if
+     * it succeeds.
+     * @return the previous config
+     */
+    public FursConfig swapAfterEcho(FursConfig newConfig, HttpClient httpClient) throws IOException, FursException {
+        checkIfNull(newConfig, "newConfig");
+
+        FursClient.create(newConfig, httpClient).echo("prewarm");
+        return swap(newConfig);
+    }
+
+    /**
+     * Sends an echo request with the new config and replaces the current config only if
+     * it succeeds.
+     * @return a future with the previous config
+     */
+    public CompletableFuture<FursConfig> swapAfterEchoAsync(FursConfig newConfig, HttpClientAsync httpClient) {
+        checkIfNull(newConfig, "newConfig");
+
+        return FursClientAsync.create(newConfig, httpClient).echo("prewarm").thenApply(ignored -> swap(newConfig));
+    }
+
+    /**
+     * Watches a PEM file (as accepted by {@link FursConfig#createFromPem(byte[], char[], FursEnv)})
+     * and, whenever it changes, loads it and swaps it in with {@link #swapAfterEcho(FursConfig, HttpClient)}.
+     * If loading or the echo fails, the current config is kept and the error is passed to the
+     * error handler. The watching is done on a daemon thread, which stops when the returned
+     * handle is closed.
+     */
+    public Closeable watchPem(Path pemFile, char[] password, HttpClient httpClient, Consumer<Throwable> errorHandler) throws IOException {
+        checkIfNull(pemFile, "pemFile");
+        checkIfNull(password, "password");
+        checkIfNull(httpClient, "httpClient");
+        checkIfNull(errorHandler, "errorHandler");
+
+        Path file = pemFile.toAbsolutePath();
+        Path dir = file.getParent();
+        char[] passwordCopy = password.clone();
+
+        WatchService watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents())
+                        if (file.getFileName().equals(event.context()))
+                            changed = true;
+                    key.reset();
+
+                    if (!changed)
+                        continue;
+
+                    // editors and deployment tools often write a file in several steps
+                    WatchKey more;
+                    while ((more = watchService.poll(500, TimeUnit.MILLISECONDS)) != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+
+                    try {
+                        FursConfig newConfig = FursConfig.createFromPem(Files.readAllBytes(file), passwordCopy, env);
+                        swapAfterEcho(newConfig, httpClient);
+                    } catch (Throwable t) {
+                        errorHandler.accept(t);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // closed
+            } finally {
+                Arrays.fill(passwordCopy, '\0');
+            }
+        }, "furs-config-watch");
+        thread.setDaemon(true);
+        thread.start();
+
+        return () -> {
+            watchService.close();
+            thread.interrupt();
+        };
+    }
+
+    /**
+     * Adds a listener that is called with the new config after each swap.
+     */
+    public void addSwapListener(Consumer<FursConfig> listener) {
+        swapListeners.add(checkIfNull(listener, "listener"));
+    }
+
+    /**
+     * Returns the time remaining until the current client certificate expires (negative
+     * if it already has), e.g. for monitoring.
+     */
+    public Duration getTimeUntilExpiry() {
+        return Duration.between(Instant.now(), get().getCertificateNotAfter());
+    }
+
+    public Instant getCertificateNotAfter() {
+        return get().getCertificateNotAfter();
+    }
+
+    public int getSwapCount() {
+        return swapCount;
+    }
+
+    /**
+     * Returns the time of the last swap, or of creation, if there were none.
+     */
+    public Instant getLastSwap() {
+        return lastSwap;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.mslenc.fursinvoices;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the progress of an {@link InvoiceImporter} run, also returned as its summary.
+ */
+public class ImportProgress {
+    private final long linesRead;
+    private final long submitted;
+    private final long succeeded;
+    private final long failed;
+    private final Duration elapsed;
+
+    public ImportProgress(long linesRead, long submitted, long succeeded, long failed, Duration elapsed) {
+        this.linesRead = linesRead;
+        this.submitted = submitted;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * The number of non-blank lines read so far.
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * The number of invoices sent to FURS so far (including those still in flight).
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * The number of lines that failed, either locally (parsing or validation) or in FURS.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getCompleted() {
+        return succeeded + failed;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * The average number of completed lines per second so far.
+     */
+    public double getRate() {
+        long nanos = elapsed.toNanos();
+        return nanos > 0 ? getCompleted() * 1e9 / nanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "read " + linesRead + ", submitted " + submitted + ", succeeded " + succeeded + ", failed " + failed +
+               " in " + elapsed.toMillis() + "ms (" + Math.round(getRate()) + "/s)";
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.UUID;
+
+/**
+ * The outcome of a single line imported by {@link InvoiceImporter}. Exactly one of
+ * {@link #getUniqueInvoiceId()} and {@link #getError()} is non-null.
+ */
+public class ImportResult {
+    private final long lineNumber;
+    private final InvoiceRequest request;
+    private final boolean submitted;
+    private final UUID uniqueInvoiceId;
+    private final Throwable error;
+
+    public ImportResult(long lineNumber, InvoiceRequest request, boolean submitted, UUID uniqueInvoiceId, Throwable error) {
+        this.lineNumber = lineNumber;
+        this.request = request;
+        this.submitted = submitted;
+        this.uniqueInvoiceId = uniqueInvoiceId;
+        this.error = error;
+    }
+
+    /**
+     * The number of the line in the input, starting with 1.
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * The request that was submitted, or null if the line couldn't be parsed.
+     */
+    public InvoiceRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * The unique invoice ID (EOR) returned by FURS, or null if the line wasn't imported.
+     */
+    public UUID getUniqueInvoiceId() {
+        return uniqueInvoiceId;
+    }
+
+    /**
+     * The error that occurred (a parsing error, a
+     * {@link com.github.mslenc.fursinvoices.validation.ValidationException} if the invoice was
+     * rejected locally, or an error from submitting it), or null if the line was imported.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns true if the invoice was sent to FURS (successfully or not), false if it was
+     * rejected before that.
+     */
+    public boolean isSubmitted() {
+        return submitted;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.FursHeader;
+import com.github.mslenc.fursinvoices.dto.Invoice;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+import com.github.mslenc.fursinvoices.validation.InvoiceConsistencyCheck;
+
+import java.io.*;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static com.github.mslenc.fursinvoices.Utils.markSubsequentSubmit;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Imports invoices that were issued while the device couldn't reach FURS (or that come from
+ * another system), from a JSON Lines input: one invoice per line, in the same JSON form as
+ * sent to FURS (i.e. the contents of <tt>InvoiceRequest.Invoice</tt>), typically including the
+ * protected ID that was printed on the receipt. Blank lines are skipped.
+ * <p>
+ * The input is read one line at a time, and reading waits whenever <tt>parallelism</tt>
+ * invoices are in flight, so memory use doesn't depend on the size of the input. Each
+ * invoice is given a new header, marked as a subsequent submit (unless disabled), checked
+ * (if a consistency check is set) and submitted to the batch endpoint (unless disabled)
+ * through an {@link InvoicePipeline}. The
+ * protected IDs of invoices that don't have one are computed by the client, so set a CPU
+ * executor in its {@link FursClientOptions} to compute them in parallel.
+ * <p>
+ * A result is emitted for each non-blank line. Results of lines that were submitted are emitted
+ * in line order; lines that can't be parsed or fail the check are reported as soon as they
+ * are read. The sink is never called concurrently with itself.
+ */
+public class InvoiceImporter {
+    private final FursClientAsync client;
+    private int parallelism = 16;
+    private boolean markSubsequentSubmit = true;
+    private boolean useBatchEndpoint = true;
+    private InvoiceConsistencyCheck consistencyCheck;
+    private Consumer<ImportProgress> progressListener;
+    private long progressInterval = 1000;
+
+    public InvoiceImporter(FursClientAsync client) {
+        this.client = checkIfNull(client, "client");
+    }
+
+    /**
+     * Sets the maximum number of invoices in flight (default 16).
+     * @return this, for fluent interface
+     */
+    public InvoiceImporter setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") must be at least 1");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets whether each invoice is marked with <tt>SubsequentSubmit</tt> (default true).
+     * @return this, for fluent interface
+     */
+    public InvoiceImporter setMarkSubsequentSubmit(boolean markSubsequentSubmit) {
+        this.markSubsequentSubmit = markSubsequentSubmit;
+        return this;
+    }
+
+    /**
+     * Sets whether the invoices are submitted to the batch endpoint (default true), which is
+     * meant for invoices submitted after the fact, rather than to the real-time one.
+     * @return this, for fluent interface
+     * @see FursClientAsync#invoice(InvoiceRequest, boolean)
+     */
+    public InvoiceImporter setUseBatchEndpoint(boolean useBatchEndpoint) {
+        this.useBatchEndpoint = useBatchEndpoint;
+        return this;
+    }
+
+    /**
+     * Sets a check that each invoice must pass before it is submitted; those that don't are
+     * reported with a {@link com.github.mslenc.fursinvoices.validation.ValidationException}.
+     * By default, invoices aren't checked (other than by the client, if it has its own check).
+     * @return this, for fluent interface
+     */
+    public InvoiceImporter setConsistencyCheck(InvoiceConsistencyCheck consistencyCheck) {
+        this.consistencyCheck = consistencyCheck;
+        return this;
+    }
+
+    /**
+     * Sets a listener that is called with the progress after every <tt>interval</tt> completed
+     * lines, on the same thread as the sink (and never concurrently with it).
+     * @return this, for fluent interface
+     */
+    public InvoiceImporter setProgressListener(Consumer<ImportProgress> progressListener, long interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("interval (" + interval + ") must be at least 1");
+
+        this.progressListener = progressListener;
+        this.progressInterval = interval;
+        return this;
+    }
+
+    /**
+     * Imports all the invoices from the file.
+     * @see #run(InputStream, Consumer)
+     */
+    public ImportProgress run(File file, Consumer<ImportResult> sink) throws IOException, InterruptedException {
+        try (InputStream in = new FileInputStream(file)) {
+            return run(in, sink);
+        }
+    }
+
+    /**
+     * Imports all the invoices from the input (which is not closed), blocking until they have
+     * all completed. If reading fails or the thread is interrupted, no more lines are read, but
+     * the invoices already submitted are still waited for (and emitted) before the exception is
+     * thrown.
+     *
+     * @return the final progress, as a summary
+     */
+    public ImportProgress run(InputStream in, Consumer<ImportResult> sink) throws IOException, InterruptedException {
+        checkIfNull(in, "in");
+        checkIfNull(sink, "sink");
+
+        return new Run(sink).run(new BufferedReader(new InputStreamReader(in, UTF_8)));
+    }
+
+    private class Run {
+        private final Consumer<ImportResult> sink;
+        private final long startNanos = System.nanoTime();
+        private final ArrayDeque<Long> submittedLines = new ArrayDeque<>();
+        private final InvoicePipeline pipeline;
+        private long linesRead;
+        private long submitted;
+        private long succeeded;
+        private long failed;
+
+        Run(Consumer<ImportResult> sink) {
+            this.sink = sink;
+            this.pipeline = new InvoicePipeline(client, parallelism, true, useBatchEndpoint, this::onSubmitted);
+        }
+
+        ImportProgress run(BufferedReader reader) throws IOException, InterruptedException {
+            try {
+                String line;
+                long lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.trim().isEmpty())
+                        continue;
+
+                    synchronized (this) {
+                        linesRead++;
+                    }
+
+                    InvoiceRequest request = null;
+                    try {
+                        request = new InvoiceRequest(new FursHeader(), JSON.parse(line, Invoice.class));
+                        if (markSubsequentSubmit)
+                            request = markSubsequentSubmit(request);
+
+                        if (consistencyCheck != null)
+                            consistencyCheck.check(request.getInvoice()).throwIfAny();
+                    } catch (Exception e) {
+                        emit(new ImportResult(lineNumber, request, false, null, e));
+                        continue;
+                    }
+
+                    synchronized (this) {
+                        submitted++;
+                        submittedLines.add(lineNumber);
+                    }
+
+                    try {
+                        pipeline.submit(request).get(); // waits for a free slot
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+            } finally {
+                awaitUninterruptibly(pipeline);
+            }
+
+            return progress();
+        }
+
+        private void onSubmitted(InvoiceResult result) {
+            long lineNumber;
+            synchronized (this) {
+                lineNumber = submittedLines.poll();
+            }
+
+            emit(new ImportResult(lineNumber, result.getRequest(), true, result.getUniqueInvoiceId(), result.getError()));
+        }
+
+        private synchronized void emit(ImportResult result) {
+            if (result.isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+
+            try {
+                sink.accept(result);
+            } catch (Throwable t) {
+                // the sink is responsible for its own errors
+            }
+
+            if (progressListener != null && (succeeded + failed) % progressInterval == 0) {
+                try {
+                    progressListener.accept(progress());
+                } catch (Throwable t) {
+                    // same as for the sink
+                }
+            }
+        }
+
+        private synchronized ImportProgress progress() {
+            return new ImportProgress(linesRead, submitted, succeeded, failed, Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
+
+    private static void awaitUninterruptibly(InvoicePipeline pipeline) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pipeline.close().get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,312 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Submits a continuous stream of invoices through a {@link FursClientAsync}, with at most
+ * <tt>parallelism</tt> invoices being processed at any time. Results are passed to the sink
+ * either in submission order or in completion order.
+ * <p>
+ * Backpressure is demand-driven: {@link #submit(InvoiceRequest)} returns a future that
+ * completes only once the invoice has actually been started, so a producer that waits for
+ * it (e.g. before polling more records from a queue) never gets ahead of the pipeline.
+ * In ordered mode, results that are waiting for an earlier invoice to complete still occupy
+ * their slot, so memory use stays bounded. Invoices that wait for a slot are capped too (see
+ * {@link #setMaxWaiting(int)}); above the cap, submit fails rather than queueing without limit.
+ * <p>
+ * Invoices can be sent to the batch endpoint ({@link FursEnv#getBatchInvoicesUrl()}) always,
+ * or only while demand is high (see {@link #setBatchWhenBusy(int)}), so that a burst is
+ * submitted as bulk traffic, while the real-time endpoint is used when the pipeline keeps up.
+ * <p>
+ * The sink is never called concurrently with itself. Exceptions thrown by the sink are logged
+ * and otherwise ignored, so that they don't stall the pipeline.
+ */
+public class InvoicePipeline {
+    private static final Logger log = Logger.getLogger(InvoicePipeline.class.getName());
+
+    private final FursClientAsync client;
+    private final int parallelism;
+    private final boolean ordered;
+    private final boolean batch;
+    private final Consumer<InvoiceResult> sink;
+    private int maxWaiting = 1024;
+    private int batchBelowFreeSlots = -1;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Pending> waiting = new ArrayDeque<>();
+    private final HashMap<Long, InvoiceResult> completedOutOfOrder = new HashMap<>();
+    private final ArrayDeque<InvoiceResult> readyToEmit = new ArrayDeque<>();
+    private final CompletableFuture<Void> closedPromise = new CompletableFuture<>();
+    private int slotsUsed;
+    private long nextSeq;
+    private long nextSeqToEmit;
+    private boolean emitting;
+    private boolean closed;
+
+    /**
+     * @param client the client to submit invoices with
+     * @param parallelism maximum number of invoices in flight (including, in ordered mode, those awaiting emission)
+     * @param ordered true to emit results in submission order, false to emit them as they complete
+     * @param sink the consumer of results
+     */
+    public InvoicePipeline(FursClientAsync client, int parallelism, boolean ordered, Consumer<InvoiceResult> sink) {
+        this(client, parallelism, ordered, false, sink);
+    }
+
+    /**
+     * @param client the client to submit invoices with
+     * @param parallelism maximum number of invoices in flight (including, in ordered mode, those awaiting emission)
+     * @param ordered true to emit results in submission order, false to emit them as they complete
+     * @param batch true to submit to the batch endpoint (see {@link FursClient#invoice(InvoiceRequest, boolean)})
+     * @param sink the consumer of results
+     */
+    public InvoicePipeline(FursClientAsync client, int parallelism, boolean ordered, boolean batch, Consumer<InvoiceResult> sink) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") must be at least 1");
+
+        this.client = checkIfNull(client, "client");
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.batch = batch;
+        this.sink = checkIfNull(sink, "sink");
+    }
+
+    /**
+     * Sets the maximum number of invoices that may wait for a slot (default 1024). A submit
+     * above it fails, so a producer that doesn't wait for the returned futures can't make the
+     * queue grow without limit.
+     * @return this, for fluent interface
+     */
+    public InvoicePipeline setMaxWaiting(int maxWaiting) {
+        if (maxWaiting < 0)
+            throw new IllegalArgumentException("maxWaiting (" + maxWaiting + ") must not be negative");
+
+        synchronized (lock) {
+            this.maxWaiting = maxWaiting;
+        }
+        return this;
+    }
+
+    /**
+     * Sends invoices to the batch endpoint while demand is high: when other invoices are waiting
+     * for a slot, or when fewer than <tt>minFreeSlots</tt> slots remain free after starting the
+     * invoice. The rest go to the real-time endpoint. By default, the endpoint is the one chosen
+     * in the constructor. With <tt>minFreeSlots</tt> 0, only a queue of waiting invoices counts.
+     * @return this, for fluent interface
+     */
+    public InvoicePipeline setBatchWhenBusy(int minFreeSlots) {
+        if (minFreeSlots < 0 || minFreeSlots > parallelism)
+            throw new IllegalArgumentException("minFreeSlots (" + minFreeSlots + ") must be between 0 and parallelism (" + parallelism + ")");
+
+        synchronized (lock) {
+            this.batchBelowFreeSlots = minFreeSlots;
+        }
+        return this;
+    }
+
+    /**
+     * Submits an invoice. If a slot is free, it is started immediately, otherwise it is
+     * queued until one frees up.
+     *
+     * @param request the invoice to submit
+     * @return a future that completes once the invoice has been started, or fails with an
+     *         IllegalStateException if the pipeline has been closed, or a RejectedExecutionException
+     *         if {@link #setMaxWaiting(int) too many invoices} are already waiting
+     */
+    public CompletableFuture<Void> submit(InvoiceRequest request) {
+        checkIfNull(request, "request");
+
+        Pending pending = new Pending(request);
+        boolean startNow;
+
+        synchronized (lock) {
+            if (closed)
+                return rejected(new IllegalStateException("The pipeline has been closed"));
+
+            startNow = slotsUsed < parallelism;
+            if (!startNow && waiting.size() >= maxWaiting)
+                return rejected(new RejectedExecutionException("The pipeline already has " + waiting.size() + " invoices waiting"));
+
+            pending.seq = nextSeq++;
+            if (startNow) {
+                slotsUsed++;
+                pending.batch = useBatch();
+            } else {
+                waiting.add(pending);
+            }
+        }
+
+        if (startNow)
+            start(pending);
+
+        return pending.accepted;
+    }
+
+    /**
+     * Submits an invoice only if a slot is free.
+     *
+     * @param request the invoice to submit
+     * @return true if the invoice was started, false if the pipeline is full or has been closed
+     */
+    public boolean offer(InvoiceRequest request) {
+        checkIfNull(request, "request");
+
+        Pending pending = new Pending(request);
+
+        synchronized (lock) {
+            if (closed || slotsUsed >= parallelism || !waiting.isEmpty())
+                return false;
+
+            pending.seq = nextSeq++;
+            slotsUsed++;
+            pending.batch = useBatch();
+        }
+
+        start(pending);
+        return true;
+    }
+
+    /**
+     * Stops accepting new invoices.
+     *
+     * @return a future that completes once all invoices submitted so far have been emitted
+     */
+    public CompletableFuture<Void> close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        checkIfFinished();
+        return closedPromise;
+    }
+
+    // called under the lock, once the pending invoice has taken its slot
+    private boolean useBatch() {
+        if (batch)
+            return true;
+        if (batchBelowFreeSlots < 0)
+            return false;
+
+        return !waiting.isEmpty() || parallelism - slotsUsed < batchBelowFreeSlots;
+    }
+
+    private static CompletableFuture<Void> rejected(Throwable error) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.completeExceptionally(error);
+        return result;
+    }
+
+    private void start(Pending pending) {
+        pending.accepted.complete(null);
+
+        CompletableFuture<UUID> future;
+        try {
+            future = client.invoice(pending.request, pending.batch);
+        } catch (Throwable t) {
+            onCompleted(pending, null, t);
+            return;
+        }
+
+        future.whenComplete((uniqueInvoiceId, error) -> onCompleted(pending, uniqueInvoiceId, error));
+    }
+
+    private void onCompleted(Pending pending, UUID uniqueInvoiceId, Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+
+        InvoiceResult result = new InvoiceResult(pending.request, error == null ? uniqueInvoiceId : null, error);
+
+        synchronized (lock) {
+            if (ordered) {
+                completedOutOfOrder.put(pending.seq, result);
+                InvoiceResult next;
+                while ((next = completedOutOfOrder.remove(nextSeqToEmit)) != null) {
+                    readyToEmit.add(next);
+                    nextSeqToEmit++;
+                }
+            } else {
+                readyToEmit.add(result);
+            }
+        }
+
+        drain();
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            if (emitting)
+                return;
+            emitting = true;
+        }
+
+        while (true) {
+            InvoiceResult result;
+            synchronized (lock) {
+                result = readyToEmit.poll();
+                if (result == null) {
+                    emitting = false;
+                    break;
+                }
+            }
+
+            try {
+                sink.accept(result);
+            } catch (Throwable t) {
+                // we don't want to lose the slot, so the error only gets logged
+                log.log(Level.WARNING, "The sink of an InvoicePipeline threw an exception", t);
+            }
+
+            releaseSlot();
+        }
+
+        checkIfFinished();
+    }
+
+    private void releaseSlot() {
+        Pending next;
+
+        synchronized (lock) {
+            next = waiting.poll();
+            if (next == null) {
+                slotsUsed--;
+            } else {
+                next.batch = useBatch();
+            }
+        }
+
+        if (next != null)
+            start(next);
+    }
+
+    private void checkIfFinished() {
+        boolean finished;
+        synchronized (lock) {
+            finished = closed && slotsUsed == 0 && waiting.isEmpty();
+        }
+
+        if (finished)
+            closedPromise.complete(null);
+    }
+
+    private static class Pending {
+        final InvoiceRequest request;
+        final CompletableFuture<Void> accepted = new CompletableFuture<>();
+        long seq;
+        boolean batch;
+
+        Pending(InvoiceRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.UUID;
+
+/**
+ * The outcome of submitting a single invoice, as emitted by {@link InvoicePipeline}.
+ * Exactly one of {@link #getUniqueInvoiceId()} and {@link #getError()} is non-null.
+ */
+public class InvoiceResult {
+    private final InvoiceRequest request;
+    private final UUID uniqueInvoiceId;
+    private final Throwable error;
+
+    public InvoiceResult(InvoiceRequest request, UUID uniqueInvoiceId, Throwable error) {
+        this.request = request;
+        this.uniqueInvoiceId = uniqueInvoiceId;
+        this.error = error;
+    }
+
+    /**
+     * The request that was submitted.
+     */
+    public InvoiceRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * The unique invoice ID (EOR) returned by FURS, or null if the submission failed.
+     */
+    public UUID getUniqueInvoiceId() {
+        return uniqueInvoiceId;
+    }
+
+    /**
+     * The error that occurred, or null if the submission succeeded.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
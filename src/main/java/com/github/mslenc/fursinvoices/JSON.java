@@ -6,9 +6,11 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 class JSON {
     private JSON() {}
@@ -36,4 +38,15 @@ class JSON {
     static <T> T parse(byte[] input, Class<T> klass) throws IOException {
         return objectMapper.readValue(input, klass);
     }
+
+    static <T> T parse(String input, Class<T> klass) throws IOException {
+        return objectMapper.readValue(input, klass);
+    }
+
+    static <T> T parse(ByteBuffer input, Class<T> klass) throws IOException {
+        if (input.hasArray())
+            return objectMapper.readValue(input.array(), input.arrayOffset() + input.position(), input.remaining(), klass);
+
+        return objectMapper.readValue(new ByteBufferBackedInputStream(input.duplicate()), klass);
+    }
 }
@@ -0,0 +1,155 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.concurrent.KeyedSerialExecutor;
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+import com.github.mslenc.fursinvoices.dto.Invoice;
+import com.github.mslenc.fursinvoices.dto.InvoiceIdentifier;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+import com.github.mslenc.fursinvoices.dto.NumberingStructure;
+import com.github.mslenc.fursinvoices.dto.SalesBookInvoice;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Submits the invoices of each numbering sequence one at a time, in the order they are passed
+ * in, while invoices of different sequences are submitted in parallel. By default, a sequence
+ * is a business premise for central numbering, or an electronic device within a premise for
+ * numbering per register (see {@link #defaultKey(InvoiceRequest)}), always within a tax number.
+ * Each invoice is submitted only after the previous one of its sequence has completed, even if
+ * that failed, so failures must be retried by the caller (e.g. with a subsequent submit).
+ * <p>
+ * It can be used both for live traffic and for replays, e.g. as the client of an
+ * {@link InvoiceImporter}. Echo calls and premise registrations are passed through directly.
+ */
+public class OrderedClientAsync implements FursClientAsync {
+    private final FursClientAsync client;
+    private final KeyedSerialExecutor<Object> executor;
+    private Function<InvoiceRequest, Object> keyFunction = OrderedClientAsync::defaultKey;
+
+    /**
+     * @param client the client to pass calls to
+     * @param maxKeys the maximum number of sequences with invoices in progress at the same time
+     */
+    public OrderedClientAsync(FursClientAsync client, int maxKeys) {
+        this(client, new KeyedSerialExecutor<>(maxKeys));
+    }
+
+    public OrderedClientAsync(FursClientAsync client, KeyedSerialExecutor<Object> executor) {
+        this.client = checkIfNull(client, "client");
+        this.executor = checkIfNull(executor, "executor");
+    }
+
+    public KeyedSerialExecutor<Object> getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the function that determines the sequence of an invoice (default {@link #defaultKey(InvoiceRequest)}).
+     * Requests for which it returns null are passed through without ordering.
+     * @return this, for fluent interface
+     */
+    public OrderedClientAsync setKeyFunction(Function<InvoiceRequest, Object> keyFunction) {
+        this.keyFunction = checkIfNull(keyFunction, "keyFunction");
+        return this;
+    }
+
+    /**
+     * Returns <tt>taxNumber/premise</tt> for centrally numbered invoices and sales book invoices,
+     * <tt>taxNumber/premise/device</tt> for invoices numbered per register, and null if the
+     * request lacks the data.
+     */
+    public static Object defaultKey(InvoiceRequest request) {
+        if (request == null)
+            return null;
+
+        Invoice invoice = request.getInvoice();
+        if (invoice != null) {
+            InvoiceIdentifier identifier = invoice.getInvoiceIdentifier();
+            if (identifier == null || invoice.getTaxNumber() == null)
+                return null;
+
+            if (invoice.getNumberingStructure() == NumberingStructure.CENTRALLY)
+                return invoice.getTaxNumber() + "/" + identifier.getBusinessPremiseId();
+
+            return invoice.getTaxNumber() + "/" + identifier.getBusinessPremiseId() + "/" + identifier.getElectronicDeviceId();
+        }
+
+        SalesBookInvoice salesBookInvoice = request.getSalesBookInvoice();
+        if (salesBookInvoice != null && salesBookInvoice.getTaxNumber() != null)
+            return salesBookInvoice.getTaxNumber() + "/" + salesBookInvoice.getBusinessPremiseId();
+
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<String> echo(String message) {
+        return client.echo(message);
+    }
+
+    @Override
+    public CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        return client.warmUp(iterations, connections);
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request) {
+        Object key = keyFunction.apply(request);
+        if (key == null)
+            return client.invoice(request);
+
+        return submit(key, () -> client.invoice(request));
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        Object key = keyFunction.apply(request);
+        if (key == null)
+            return client.invoice(request, batch);
+
+        return submit(key, () -> client.invoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request) {
+        Object key = keyFunction.apply(request);
+        if (key == null)
+            return client.salesBookInvoice(request);
+
+        return submit(key, () -> client.salesBookInvoice(request));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        Object key = keyFunction.apply(request);
+        if (key == null)
+            return client.salesBookInvoice(request, batch);
+
+        return submit(key, () -> client.salesBookInvoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
+        return client.businessPremise(request);
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return client.businessPremise(request, force);
+    }
+
+    private <T> CompletableFuture<T> submit(Object key, Supplier<CompletableFuture<T>> call) {
+        try {
+            return executor.submit(key, call);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+}
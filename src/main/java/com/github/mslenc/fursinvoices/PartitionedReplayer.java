@@ -0,0 +1,263 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.cluster.ConsistentHashRing;
+import com.github.mslenc.fursinvoices.cluster.Lease;
+import com.github.mslenc.fursinvoices.cluster.LeaseStore;
+import com.github.mslenc.fursinvoices.dto.Invoice;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static com.github.mslenc.fursinvoices.Utils.markSubsequentSubmit;
+
+/**
+ * Replays the pending invoices of a {@link ReplayOutbox} from several nodes at once, so that each
+ * invoice is submitted by one node only, and the work is spread over all of them.
+ * <p>
+ * Each node calls {@link #replayOnce()} periodically. A round first renews the node's membership
+ * lease and reads the live nodes from the {@link LeaseStore}; the pending partitions are then
+ * split between the live nodes with a {@link ConsistentHashRing}, and this node replays those
+ * assigned to it, several partitions in parallel. Before replaying a partition, the node takes
+ * its lease, so even while the nodes' views of the membership differ (e.g. just after a node
+ * joins or dies), no two nodes replay the same partition. Within a partition, invoices are
+ * submitted one at a time, in the outbox's order, and the lease is renewed as it goes; if it is
+ * lost nevertheless (e.g. after a long pause), the partition is abandoned before the next invoice.
+ * <p>
+ * The outbox is read and written with the fencing token of the partition's lease, so it can
+ * reject a node whose lease was taken over while it was paused. An invoice can be submitted
+ * twice only if a node dies (or loses its lease) after FURS accepted it, but before
+ * {@link ReplayOutbox#markSubmitted} recorded that.
+ */
+public class PartitionedReplayer {
+    private static final String NODE_PREFIX = "node/";
+    private static final String PARTITION_PREFIX = "partition/";
+
+    private final String nodeId;
+    private final LeaseStore leaseStore;
+    private final ReplayOutbox outbox;
+    private final FursClient client;
+
+    private long leaseTtlMillis = TimeUnit.SECONDS.toMillis(30);
+    private int parallelism = 4;
+    private int batchSize = 100;
+    private int virtualNodes = 64;
+    private boolean markSubsequentSubmit = true;
+
+    private final Object nodeLeaseLock = new Object();
+    private Lease nodeLease;
+
+    /**
+     * @param nodeId the ID of this node, unique among the nodes sharing the lease store
+     * @param leaseStore the lease store shared by all nodes
+     * @param outbox the pending invoices, shared by all nodes
+     * @param client the client to submit invoices with
+     */
+    public PartitionedReplayer(String nodeId, LeaseStore leaseStore, ReplayOutbox outbox, FursClient client) {
+        this.nodeId = checkIfNull(nodeId, "nodeId");
+        this.leaseStore = checkIfNull(leaseStore, "leaseStore");
+        this.outbox = checkIfNull(outbox, "outbox");
+        this.client = checkIfNull(client, "client");
+    }
+
+    /**
+     * Sets the TTL of the node's membership lease and of partition leases (default 30 seconds).
+     * A node that dies is noticed by the others after this long, so {@link #replayOnce()} should
+     * be called more often than that.
+     * @return this, for fluent interface
+     */
+    public PartitionedReplayer setLeaseTtl(long leaseTtl, TimeUnit unit) {
+        long millis = unit.toMillis(leaseTtl);
+        if (millis < 1)
+            throw new IllegalArgumentException("leaseTtl must be at least 1 millisecond");
+
+        this.leaseTtlMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets the number of partitions replayed in parallel by this node (default 4).
+     * @return this, for fluent interface
+     */
+    public PartitionedReplayer setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism (" + parallelism + ") must be at least 1");
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the number of pending invoices read from the outbox at a time (default 100).
+     * @return this, for fluent interface
+     */
+    public PartitionedReplayer setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize (" + batchSize + ") must be at least 1");
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of points per node on the hash ring (default 64). All nodes must use the same value.
+     * @return this, for fluent interface
+     */
+    public PartitionedReplayer setVirtualNodes(int virtualNodes) {
+        if (virtualNodes < 1)
+            throw new IllegalArgumentException("virtualNodes (" + virtualNodes + ") must be at least 1");
+
+        this.virtualNodes = virtualNodes;
+        return this;
+    }
+
+    /**
+     * Sets whether each invoice is marked with <tt>SubsequentSubmit</tt> (default true).
+     * @return this, for fluent interface
+     */
+    public PartitionedReplayer setMarkSubsequentSubmit(boolean markSubsequentSubmit) {
+        this.markSubsequentSubmit = markSubsequentSubmit;
+        return this;
+    }
+
+    /**
+     * Returns the partition of an invoice: <tt>taxNumber/premise</tt>, or null if the request lacks the data.
+     */
+    public static String partitionOf(InvoiceRequest request) {
+        if (request == null)
+            return null;
+
+        if (request.getInvoice() != null) {
+            Invoice invoice = request.getInvoice();
+            if (invoice.getTaxNumber() == null || invoice.getInvoiceIdentifier() == null)
+                return null;
+            return invoice.getTaxNumber() + "/" + invoice.getInvoiceIdentifier().getBusinessPremiseId();
+        }
+
+        if (request.getSalesBookInvoice() != null && request.getSalesBookInvoice().getTaxNumber() != null)
+            return request.getSalesBookInvoice().getTaxNumber() + "/" + request.getSalesBookInvoice().getBusinessPremiseId();
+
+        return null;
+    }
+
+    /**
+     * Runs a single round of replay on this node, returning when all partitions assigned to it
+     * are done (or have failed).
+     *
+     * @throws IOException if the lease store or the outbox fail
+     */
+    public ReplayRound replayOnce() throws IOException {
+        renewNodeLease(true);
+
+        TreeSet<String> nodes = new TreeSet<>();
+        for (Lease lease : leaseStore.list(NODE_PREFIX))
+            nodes.add(lease.getOwner());
+        nodes.add(nodeId);
+
+        ConsistentHashRing ring = new ConsistentHashRing(nodes, virtualNodes);
+        ArrayList<String> assigned = new ArrayList<>();
+        for (String partition : outbox.getPendingPartitions())
+            if (nodeId.equals(ring.nodeFor(partition)))
+                assigned.add(partition);
+
+        AtomicInteger replayed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicLong submitted = new AtomicLong();
+
+        BulkReport<String> report = BulkRunner.runBlocking(assigned, new BulkOptions().setParallelism(parallelism), partition -> {
+            Lease lease = leaseStore.tryAcquire(PARTITION_PREFIX + partition, nodeId, leaseTtlMillis);
+            if (lease == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            replayed.incrementAndGet();
+            try {
+                replayPartition(partition, lease, submitted);
+            } finally {
+                leaseStore.release(lease);
+            }
+        });
+
+        return new ReplayRound(nodes.size(), assigned.size(), replayed.get(), skipped.get(), submitted.get(), report.getFailures());
+    }
+
+    private void replayPartition(String partition, Lease lease, AtomicLong submitted) throws Exception {
+        while (true) {
+            List<InvoiceRequest> batch = outbox.getPending(partition, batchSize, lease.getToken());
+            if (batch == null || batch.isEmpty())
+                return;
+
+            for (InvoiceRequest request : batch) {
+                if (Thread.currentThread().isInterrupted())
+                    throw new InterruptedIOException("Interrupted while replaying partition " + partition);
+
+                lease = renewIfNeeded(lease);
+                if (lease == null)
+                    throw new IllegalStateException("Lost the lease of partition " + partition);
+                renewNodeLease(false);
+
+                UUID uniqueInvoiceId = null;
+                if (request.getSalesBookInvoice() != null) {
+                    client.salesBookInvoice(request);
+                } else {
+                    uniqueInvoiceId = client.invoice(markSubsequentSubmit ? markSubsequentSubmit(request) : request);
+                }
+
+                // the call may have taken a while; the submission is recorded even if the lease
+                // was lost meanwhile, as the outbox rejects the token if another node took over
+                Lease renewed = renewIfNeeded(lease);
+                outbox.markSubmitted(partition, request, uniqueInvoiceId, lease.getToken());
+                submitted.incrementAndGet();
+                if (renewed == null)
+                    throw new IllegalStateException("Lost the lease of partition " + partition);
+                lease = renewed;
+            }
+        }
+    }
+
+    /**
+     * Renews a lease once less than half of its TTL remains, returning null if it was lost.
+     */
+    private Lease renewIfNeeded(Lease lease) throws IOException {
+        if (lease.getExpiresAtMillis() - System.currentTimeMillis() > leaseTtlMillis / 2)
+            return lease;
+
+        return leaseStore.renew(lease, leaseTtlMillis);
+    }
+
+    private void renewNodeLease(boolean always) throws IOException {
+        synchronized (nodeLeaseLock) {
+            Lease renewed = null;
+            if (nodeLease != null)
+                renewed = always ? leaseStore.renew(nodeLease, leaseTtlMillis) : renewIfNeeded(nodeLease);
+
+            // the lease expired and was taken anew (by this node, as nobody else uses its ID)
+            if (renewed == null)
+                renewed = leaseStore.tryAcquire(NODE_PREFIX + nodeId, nodeId, leaseTtlMillis);
+
+            nodeLease = renewed;
+        }
+    }
+
+    /**
+     * Gives up this node's membership, so that the other nodes take over its partitions in
+     * their next round, rather than after the lease expires.
+     */
+    public void leave() throws IOException {
+        synchronized (nodeLeaseLock) {
+            if (nodeLease != null) {
+                leaseStore.release(nodeLease);
+                nodeLease = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+
+/**
+ * Remembers which business premise registrations were already accepted by FURS, keyed by
+ * a hash of their full contents and where they were registered (see
+ * {@link #hashOf(BusinessPremise, FursConfig)}), so that registering the same premise again
+ * can be skipped. Any change to the premise (tax number, identifier, software suppliers,
+ * validity date, closing tag, ...) changes the hash, so it is registered again; so does
+ * registering it in another environment (e.g. production after test) or with another
+ * certificate, so one cache can be shared between them.
+ *
+ * @see FursClientOptions#setPremiseCache(PremiseRegistrationCache)
+ * @see FilePremiseRegistrationCache
+ */
+public interface PremiseRegistrationCache {
+    boolean contains(String premiseHash);
+
+    void put(String premiseHash);
+
+    void invalidate(String premiseHash);
+
+    void invalidateAll();
+
+    default void invalidate(BusinessPremise premise, FursConfig config) {
+        invalidate(hashOf(premise, config));
+    }
+
+    /**
+     * Computes the canonical hash of a premise registered with the given config, as the
+     * SHA-256 of the environment's premise URL, the subject of the client certificate (which
+     * includes the taxpayer's tax number) and the premise's JSON form.
+     */
+    static String hashOf(BusinessPremise premise, FursConfig config) {
+        checkIfNull(premise, "premise");
+        checkIfNull(config, "config");
+
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(config.getEnv().getPremisesUrl().toString().getBytes(UTF_8));
+            sha256.update((byte) 0);
+            sha256.update(config.getCertificateSubjectName().getBytes(UTF_8));
+            sha256.update((byte) 0);
+            return toHexString(sha256.digest(JSON.byteify(premise)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+/**
+ * The priority lanes used by {@link PriorityClient} and {@link PriorityClientAsync}, from the
+ * highest to the lowest. The ordinal of each is its lane in the {@link com.github.mslenc.fursinvoices.concurrent.PriorityGate}.
+ */
+public enum Priority {
+    /**
+     * Invoices issued right now, with a customer waiting at the register, and echo calls.
+     */
+    LIVE,
+
+    /**
+     * Invoices submitted subsequently (replays of offline invoices) and sales book invoices.
+     */
+    REPLAY,
+
+    /**
+     * Business premise registrations.
+     */
+    BACKGROUND;
+
+    public int getLane() {
+        return ordinal();
+    }
+
+    /**
+     * Returns {@link #REPLAY} for sales book invoices and invoices marked as subsequently
+     * submitted, and {@link #LIVE} for everything else.
+     */
+    public static Priority of(InvoiceRequest request) {
+        if (request == null)
+            return LIVE;
+
+        if (request.getSalesBookInvoice() != null)
+            return REPLAY;
+
+        if (request.getInvoice() != null && Boolean.TRUE.equals(request.getInvoice().getSubsequentSubmit()))
+            return REPLAY;
+
+        return LIVE;
+    }
+}
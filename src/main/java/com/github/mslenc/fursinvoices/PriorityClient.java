@@ -0,0 +1,132 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.concurrent.PriorityGate;
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.UUID;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * The blocking counterpart of {@link PriorityClientAsync}: each call waits for a permit from
+ * the gate in the lane of its {@link Priority}, and gives it back when done. If the thread is
+ * interrupted while waiting, the call isn't made and {@link InterruptedIOException} is thrown
+ * (with the interrupt flag kept set).
+ */
+public class PriorityClient implements FursClient {
+    private final FursClient client;
+    private final PriorityGate gate;
+
+    /**
+     * @param client the client to pass calls to
+     * @param gate the gate, with at least as many lanes as there are {@link Priority} values
+     */
+    public PriorityClient(FursClient client, PriorityGate gate) {
+        this.client = checkIfNull(client, "client");
+        this.gate = checkIfNull(gate, "gate");
+
+        if (gate.getLaneCount() < Priority.values().length)
+            throw new IllegalArgumentException("The gate must have at least " + Priority.values().length + " lanes");
+    }
+
+    public PriorityGate getGate() {
+        return gate;
+    }
+
+    @Override
+    public String echo(String message) throws IOException, FursException {
+        acquire(Priority.LIVE);
+        try {
+            return client.echo(message);
+        } finally {
+            gate.release();
+        }
+    }
+
+    /**
+     * Warms up the wrapped client directly, without taking a permit.
+     */
+    @Override
+    public WarmUpReport warmUp(int iterations, int connections) {
+        return client.warmUp(iterations, connections);
+    }
+
+    @Override
+    public UUID invoice(InvoiceRequest request) throws IOException, FursException {
+        return invoice(request, Priority.of(request));
+    }
+
+    /**
+     * Submits an invoice with the given priority, rather than the one determined by {@link Priority#of(InvoiceRequest)}.
+     */
+    public UUID invoice(InvoiceRequest request, Priority priority) throws IOException, FursException {
+        acquire(checkIfNull(priority, "priority"));
+        try {
+            return client.invoice(request);
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Override
+    public UUID invoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        acquire(Priority.of(request));
+        try {
+            return client.invoice(request, batch);
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Override
+    public void salesBookInvoice(InvoiceRequest request) throws IOException, FursException {
+        acquire(Priority.of(request));
+        try {
+            client.salesBookInvoice(request);
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Override
+    public void salesBookInvoice(InvoiceRequest request, boolean batch) throws IOException, FursException {
+        acquire(Priority.of(request));
+        try {
+            client.salesBookInvoice(request, batch);
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Override
+    public void businessPremise(BusinessPremise request) throws IOException, FursException {
+        acquire(Priority.BACKGROUND);
+        try {
+            client.businessPremise(request);
+        } finally {
+            gate.release();
+        }
+    }
+
+    @Override
+    public void businessPremise(BusinessPremise request, boolean force) throws IOException, FursException {
+        acquire(Priority.BACKGROUND);
+        try {
+            client.businessPremise(request, force);
+        } finally {
+            gate.release();
+        }
+    }
+
+    private void acquire(Priority priority) throws InterruptedIOException {
+        try {
+            gate.acquire(priority.getLane());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a " + priority + " permit");
+        }
+    }
+}
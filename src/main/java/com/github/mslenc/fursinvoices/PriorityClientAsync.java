@@ -0,0 +1,121 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.concurrent.PriorityGate;
+import com.github.mslenc.fursinvoices.dto.BusinessPremise;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static com.github.mslenc.fursinvoices.Utils.checkIfNull;
+
+/**
+ * Passes calls to a {@link FursClientAsync} through a {@link PriorityGate}, so that live
+ * checkout traffic goes ahead of replays and premise registrations waiting for the same
+ * connections (see {@link Priority} for how calls are classified). Calls of a lower priority
+ * that haven't started yet give way to live calls arriving after them; calls already in flight
+ * are never interrupted, so to keep live latency low when the gate is full of slow background
+ * work, reserve some permits for the live lane with {@link PriorityGate#setReserved(int)}.
+ * <p>
+ * The gate may be shared with other clients (including a {@link PriorityClient}), to apply
+ * the same limit to all of them.
+ */
+public class PriorityClientAsync implements FursClientAsync {
+    private final FursClientAsync client;
+    private final PriorityGate gate;
+
+    /**
+     * @param client the client to pass calls to
+     * @param gate the gate, with at least as many lanes as there are {@link Priority} values
+     */
+    public PriorityClientAsync(FursClientAsync client, PriorityGate gate) {
+        this.client = checkIfNull(client, "client");
+        this.gate = checkIfNull(gate, "gate");
+
+        if (gate.getLaneCount() < Priority.values().length)
+            throw new IllegalArgumentException("The gate must have at least " + Priority.values().length + " lanes");
+    }
+
+    public PriorityGate getGate() {
+        return gate;
+    }
+
+    @Override
+    public CompletableFuture<String> echo(String message) {
+        return schedule(Priority.LIVE, () -> client.echo(message));
+    }
+
+    /**
+     * Warms up the wrapped client directly, without waiting for a turn.
+     */
+    @Override
+    public CompletableFuture<WarmUpReport> warmUp(int iterations, int connections) {
+        return client.warmUp(iterations, connections);
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request) {
+        return schedule(Priority.of(request), () -> client.invoice(request));
+    }
+
+    /**
+     * Submits an invoice with the given priority, rather than the one determined by {@link Priority#of(InvoiceRequest)}.
+     */
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, Priority priority) {
+        return schedule(checkIfNull(priority, "priority"), () -> client.invoice(request));
+    }
+
+    @Override
+    public CompletableFuture<UUID> invoice(InvoiceRequest request, boolean batch) {
+        return schedule(Priority.of(request), () -> client.invoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request) {
+        return schedule(Priority.of(request), () -> client.salesBookInvoice(request));
+    }
+
+    @Override
+    public CompletableFuture<Void> salesBookInvoice(InvoiceRequest request, boolean batch) {
+        return schedule(Priority.of(request), () -> client.salesBookInvoice(request, batch));
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request) {
+        return schedule(Priority.BACKGROUND, () -> client.businessPremise(request));
+    }
+
+    @Override
+    public CompletableFuture<Void> businessPremise(BusinessPremise request, boolean force) {
+        return schedule(Priority.BACKGROUND, () -> client.businessPremise(request, force));
+    }
+
+    private <T> CompletableFuture<T> schedule(Priority priority, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> promise = new CompletableFuture<>();
+
+        gate.submit(priority.getLane(), () -> {
+            CompletableFuture<T> future;
+            try {
+                future = call.get();
+                if (future == null)
+                    throw new NullPointerException("null future returned from client");
+            } catch (Throwable t) {
+                gate.release();
+                promise.completeExceptionally(t);
+                return;
+            }
+
+            future.whenComplete((result, error) -> {
+                gate.release();
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(result);
+                }
+            });
+        });
+
+        return promise;
+    }
+}
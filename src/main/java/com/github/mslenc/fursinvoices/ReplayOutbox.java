@@ -0,0 +1,43 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The application's store of invoices that still have to be submitted (e.g. those issued while
+ * FURS was unreachable), split into partitions, as used by {@link PartitionedReplayer}. Each
+ * partition should be a numbering sequence or a group of them, e.g. the result of
+ * {@link PartitionedReplayer#partitionOf(InvoiceRequest)}, and must be visible to all nodes.
+ * <p>
+ * Reads and writes of a partition carry the fencing token of the replaying node's lease
+ * ({@link com.github.mslenc.fursinvoices.cluster.Lease#getToken()}). The outbox should keep
+ * the highest token seen per partition and reject (with an IOException) calls with a lower
+ * one, e.g. with a conditional update in the same transaction. A node that paused for longer
+ * than its lease then can't overwrite the work of the node that took the partition over.
+ */
+public interface ReplayOutbox {
+    /**
+     * Returns the partitions that have pending invoices.
+     */
+    Collection<String> getPendingPartitions() throws IOException;
+
+    /**
+     * Returns up to <tt>limit</tt> of the oldest pending invoices of a partition, in issue order.
+     * Invoices passed to {@link #markSubmitted} must not be returned again.
+     *
+     * @param fencingToken the token of the caller's lease of the partition
+     */
+    List<InvoiceRequest> getPending(String partition, int limit, long fencingToken) throws IOException;
+
+    /**
+     * Records that an invoice was accepted by FURS, removing it from the pending ones.
+     *
+     * @param uniqueInvoiceId the EOR returned by FURS, or null for sales book invoices
+     * @param fencingToken the token of the caller's lease of the partition
+     */
+    void markSubmitted(String partition, InvoiceRequest request, UUID uniqueInvoiceId, long fencingToken) throws IOException;
+}
@@ -0,0 +1,68 @@
+package com.github.mslenc.fursinvoices;
+
+import java.util.List;
+
+/**
+ * The outcome of a single {@link PartitionedReplayer#replayOnce()} on one node.
+ */
+public class ReplayRound {
+    private final int liveNodes;
+    private final int assignedPartitions;
+    private final int replayedPartitions;
+    private final int skippedPartitions;
+    private final long submitted;
+    private final List<BulkResult<String>> failures;
+
+    public ReplayRound(int liveNodes, int assignedPartitions, int replayedPartitions, int skippedPartitions, long submitted, List<BulkResult<String>> failures) {
+        this.liveNodes = liveNodes;
+        this.assignedPartitions = assignedPartitions;
+        this.replayedPartitions = replayedPartitions;
+        this.skippedPartitions = skippedPartitions;
+        this.submitted = submitted;
+        this.failures = failures;
+    }
+
+    /**
+     * The number of nodes (including this one) that took part in the assignment.
+     */
+    public int getLiveNodes() {
+        return liveNodes;
+    }
+
+    /**
+     * The number of pending partitions assigned to this node by the hash ring.
+     */
+    public int getAssignedPartitions() {
+        return assignedPartitions;
+    }
+
+    /**
+     * The number of assigned partitions whose lease this node got and replayed (completely or not).
+     */
+    public int getReplayedPartitions() {
+        return replayedPartitions;
+    }
+
+    /**
+     * The number of assigned partitions that were skipped because another node held their lease
+     * (e.g. while the nodes' views of the membership differed).
+     */
+    public int getSkippedPartitions() {
+        return skippedPartitions;
+    }
+
+    /**
+     * The number of invoices accepted by FURS and marked as submitted.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * The partitions whose replay stopped on an error (each with the error). Their remaining
+     * invoices stay pending, for the next round.
+     */
+    public List<BulkResult<String>> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.mslenc.fursinvoices;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the traffic of one tenant (tax number) of a {@link FairScheduler}.
+ */
+public class TenantStats {
+    private final Integer taxNumber;
+    private final int weight;
+    private final int queueDepth;
+    private final int inFlight;
+    private final long dispatched;
+    private final long failed;
+    private final long rejected;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    public TenantStats(Integer taxNumber, int weight, int queueDepth, int inFlight, long dispatched, long failed,
+                       long rejected, long totalWaitNanos, long maxWaitNanos) {
+
+        this.taxNumber = taxNumber;
+        this.weight = weight;
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.dispatched = dispatched;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    /**
+     * The tax number, or null for calls that don't belong to one (echo).
+     */
+    public Integer getTaxNumber() {
+        return taxNumber;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * The number of calls waiting to be dispatched.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * The number of calls passed to the client so far.
+     */
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    /**
+     * The number of dispatched calls that completed with an error.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * The number of calls rejected because the queue was full.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * The average time dispatched calls spent in the queue.
+     */
+    public Duration getAverageWait() {
+        return dispatched > 0 ? Duration.ofNanos(totalWaitNanos / dispatched) : Duration.ZERO;
+    }
+
+    /**
+     * The longest time a dispatched call spent in the queue.
+     */
+    public Duration getMaxWait() {
+        return Duration.ofNanos(maxWaitNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "tenant " + taxNumber + " (weight " + weight + "): queued " + queueDepth + ", in flight " + inFlight +
+               ", dispatched " + dispatched + ", failed " + failed + ", rejected " + rejected +
+               ", wait avg " + getAverageWait().toMillis() + "ms max " + getMaxWait().toMillis() + "ms";
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.mslenc.fursinvoices;
 
+import com.github.mslenc.fursinvoices.dto.Invoice;
+import com.github.mslenc.fursinvoices.dto.InvoiceRequest;
 import org.bouncycastle.asn1.ASN1String;
 import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
 import org.bouncycastle.asn1.x500.RDN;
@@ -30,12 +32,47 @@ public class Utils {
         }
     }
 
+    /**
+     * Returns the request with its invoice marked as a subsequent submit. A frozen invoice can't
+     * be changed, so it is copied (through its JSON form, including the protected ID) into a new
+     * request instead; the original request is left as it was.
+     */
+    static InvoiceRequest markSubsequentSubmit(InvoiceRequest request) throws IOException {
+        Invoice invoice = request.getInvoice();
+        if (invoice == null || Boolean.TRUE.equals(invoice.getSubsequentSubmit()))
+            return request;
+
+        if (!invoice.isFrozen()) {
+            invoice.setSubsequentSubmit(true);
+            return request;
+        }
+
+        Invoice copy = JSON.parse(JSON.byteify(invoice), Invoice.class);
+        copy.setSubsequentSubmit(true);
+        return new InvoiceRequest(request.getHeader(), copy);
+    }
+
     public static byte[] readFully(InputStream is) throws IOException {
-        byte[] bytes = new byte[1024];
+        return readFully(is, -1);
+    }
+
+    /**
+     * Reads the stream to the end. If the expected length is known (e.g. from the
+     * Content-Length header), the buffer is allocated with exactly that size, so that
+     * a body of the expected length is read without resizing or copying.
+     *
+     * @param expectedLength the expected number of bytes, or a negative value if unknown
+     */
+    public static byte[] readFully(InputStream is, int expectedLength) throws IOException {
+        byte[] bytes = new byte[expectedLength >= 0 ? expectedLength : 1024];
 
         int offset = 0;
         while (true) {
             if (offset >= bytes.length) {
+                int next = is.read();
+                if (next < 0)
+                    return bytes;
+
                 int newSize;
                 if (bytes.length <= Integer.MAX_VALUE / 2) {
                     newSize = bytes.length * 2;
@@ -45,7 +82,8 @@ public class Utils {
                         throw new IOException("Response too long (over 2 GiB)");
                 }
 
-                bytes = Arrays.copyOf(bytes, newSize);
+                bytes = Arrays.copyOf(bytes, Math.max(newSize, 1024));
+                bytes[offset++] = (byte) next;
             }
 
             int bytesRead = is.read(bytes, offset, bytes.length - offset);
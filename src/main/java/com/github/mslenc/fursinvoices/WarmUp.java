@@ -0,0 +1,111 @@
+package com.github.mslenc.fursinvoices;
+
+import com.github.mslenc.fursinvoices.WarmUpReport.Step;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The network half of warming up, shared by all clients: making concurrent echo calls, so
+ * that the connections (and their TLS sessions) are open before real traffic arrives.
+ */
+class WarmUp {
+    private WarmUp() {}
+
+    static void checkArgs(int iterations, int connections) {
+        if (iterations < 0)
+            throw new IllegalArgumentException("iterations (" + iterations + ") must not be negative");
+
+        if (connections < 0)
+            throw new IllegalArgumentException("connections (" + connections + ") must not be negative");
+    }
+
+    static WarmUpReport echoBlocking(FursClient client, int iterations, int connections, EnumMap<Step, Long> nanos) {
+        if (connections == 0)
+            return report(iterations, connections, nanos, 0, null);
+
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 1; i < connections; i++) {
+            String message = "warmup-" + i;
+            Thread thread = new Thread(() -> echo(client, message, firstError), "furs-warmup");
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        // the first one runs here
+        echo(client, "warmup-0", firstError);
+
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        return report(iterations, connections, nanos, System.nanoTime() - start, firstError.get());
+    }
+
+    private static void echo(FursClient client, String message, AtomicReference<Throwable> firstError) {
+        try {
+            client.echo(message);
+        } catch (Throwable t) {
+            firstError.compareAndSet(null, t);
+        }
+    }
+
+    static CompletableFuture<WarmUpReport> echoAsync(FursClientAsync client, int iterations, int connections, EnumMap<Step, Long> nanos) {
+        if (connections == 0)
+            return CompletableFuture.completedFuture(report(iterations, connections, nanos, 0, null));
+
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        long start = System.nanoTime();
+
+        CompletableFuture<?>[] echoes = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            CompletableFuture<String> echo;
+            try {
+                echo = client.echo("warmup-" + i);
+                if (echo == null)
+                    throw new NullPointerException("null future returned from client");
+            } catch (Throwable t) {
+                echo = new CompletableFuture<>();
+                echo.completeExceptionally(t);
+            }
+
+            echoes[i] = echo.handle((result, error) -> {
+                if (error instanceof CompletionException && error.getCause() != null)
+                    error = error.getCause();
+                if (error != null)
+                    firstError.compareAndSet(null, error);
+                return null;
+            });
+        }
+
+        return CompletableFuture.allOf(echoes).thenApply(ignored -> report(iterations, connections, nanos, System.nanoTime() - start, firstError.get()));
+    }
+
+    private static WarmUpReport report(int iterations, int connections, EnumMap<Step, Long> nanos, long echoNanos, Throwable echoError) {
+        EnumMap<Step, Duration> steps = new EnumMap<>(Step.class);
+        if (nanos != null)
+            nanos.forEach((step, value) -> steps.put(step, Duration.ofNanos(value)));
+        if (connections > 0)
+            steps.put(Step.ECHO, Duration.ofNanos(echoNanos));
+
+        return new WarmUpReport(nanos != null ? iterations : 0, connections, steps, echoError);
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.mslenc.fursinvoices;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The outcome of {@link FursClient#warmUp(int, int)} or {@link FursClientAsync#warmUp(int, int)}:
+ * how long each step took in total (over all iterations), and whether the echo calls succeeded.
+ */
+public class WarmUpReport {
+    public enum Step {
+        /** Checking the synthetic invoices, if the client has a consistency check. */
+        CONSISTENCY_CHECK,
+        /** Computing the protected ID (ZOI) of the synthetic invoices. */
+        PROTECTED_ID,
+        /** Serializing the requests to JSON. */
+        SERIALIZATION,
+        /** Signing the requests into tokens. */
+        TOKEN_WRAP,
+        /** Verifying token signatures against the server certificate. */
+        VERIFICATION,
+        /** Parsing tokens and responses from JSON. */
+        PARSING,
+        /** The echo calls, which open the connections (including the TLS handshakes). */
+        ECHO
+    }
+
+    private final int iterations;
+    private final int connections;
+    private final Map<Step, Duration> steps;
+    private final Throwable echoError;
+
+    public WarmUpReport(int iterations, int connections, Map<Step, Duration> steps, Throwable echoError) {
+        this.iterations = iterations;
+        this.connections = connections;
+        this.steps = Collections.unmodifiableMap(new EnumMap<>(steps));
+        this.echoError = echoError;
+    }
+
+    /**
+     * The number of synthetic invoices processed locally (0 if the client only warmed up its connections).
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * The number of concurrent echo calls made.
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * The total time spent in each step that ran.
+     */
+    public Map<Step, Duration> getSteps() {
+        return steps;
+    }
+
+    public Duration getTotal() {
+        Duration total = Duration.ZERO;
+        for (Duration duration : steps.values())
+            total = total.plus(duration);
+        return total;
+    }
+
+    /**
+     * The error of the first failed echo call, or null if all succeeded.
+     */
+    public Throwable getEchoError() {
+        return echoError;
+    }
+
+    /**
+     * Whether FURS was reachable, i.e. whether all echo calls succeeded. (The local steps don't
+     * fail with a working configuration, so their errors are thrown instead of reported.)
+     */
+    public boolean isSuccessful() {
+        return echoError == null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Warm-up of ").append(iterations).append(" iterations: ");
+        for (Map.Entry<Step, Duration> entry : steps.entrySet())
+            sb.append(entry.getKey()).append(' ').append(entry.getValue().toMillis()).append(" ms, ");
+        sb.append("total ").append(getTotal().toMillis()).append(" ms");
+        if (echoError != null)
+            sb.append(", echo failed: ").append(echoError);
+        return sb.toString();
+    }
+}
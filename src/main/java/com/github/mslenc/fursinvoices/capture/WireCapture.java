@@ -0,0 +1,185 @@
+package com.github.mslenc.fursinvoices.capture;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps the most recent signed exchanges with FURS in a bounded ring buffer, so that
+ * rejections can be debugged with the exact tokens that were sent and received. By
+ * default, only failed exchanges are kept; use {@link #setSampleRate(double)} to also
+ * keep a fraction of successful ones.
+ * <p>
+ * Recording is lock-free and nothing is copied or allocated for exchanges that aren't
+ * kept. When the buffer is full, the oldest exchanges are overwritten.
+ */
+public class WireCapture {
+    private final AtomicReferenceArray<WireExchange> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile double sampleRate = 0.0;
+    private volatile boolean captureErrors = true;
+
+    /**
+     * @param capacity the maximum number of exchanges to keep
+     */
+    public WireCapture(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be at least 1");
+
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction (between 0 and 1) of successful exchanges to keep. The default is 0.
+     * @return this, for fluent interface
+     */
+    public WireCapture setSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0))
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public boolean isCaptureErrors() {
+        return captureErrors;
+    }
+
+    /**
+     * Sets whether failed exchanges are always kept, regardless of the sample rate. The
+     * default is true.
+     * @return this, for fluent interface
+     */
+    public WireCapture setCaptureErrors(boolean captureErrors) {
+        this.captureErrors = captureErrors;
+        return this;
+    }
+
+    /**
+     * Offers a completed exchange to the capture, which keeps it if it failed (and errors
+     * are captured) or if it is sampled. This is called by the clients; the byte arrays are
+     * kept as they are, so they must not be modified afterwards.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the exchange started
+     * @param responseBytes the response body, or null if none was received
+     * @param error a description of the error, or null if the exchange succeeded
+     */
+    public void offer(URL url, UUID messageId, long startNanos, byte[] requestBytes, byte[] responseBytes, String error) {
+        if (shouldKeep(error != null))
+            store(url, messageId, startNanos, requestBytes, responseBytes, error);
+    }
+
+    /**
+     * Like {@link #offer(URL, UUID, long, byte[], byte[], String)}, but with the response in a
+     * buffer (which is not modified). The response is copied only if the exchange is kept.
+     */
+    public void offer(URL url, UUID messageId, long startNanos, byte[] requestBytes, ByteBuffer response, String error) {
+        if (!shouldKeep(error != null))
+            return;
+
+        byte[] responseBytes = null;
+        if (response != null) {
+            responseBytes = new byte[response.remaining()];
+            response.duplicate().get(responseBytes);
+        }
+
+        store(url, messageId, startNanos, requestBytes, responseBytes, error);
+    }
+
+    private void store(URL url, UUID messageId, long startNanos, byte[] requestBytes, byte[] responseBytes, String error) {
+        long durationNanos = System.nanoTime() - startNanos;
+        Instant startedAt = Instant.now().minusNanos(durationNanos);
+
+        long sequence = nextSequence.getAndIncrement();
+        WireExchange exchange = new WireExchange(sequence, url, messageId, startedAt, durationNanos, requestBytes, responseBytes, error);
+        int slot = (int) (sequence % slots.length());
+
+        // a slower writer that took an earlier sequence for the same slot mustn't overwrite a newer exchange
+        WireExchange current;
+        do {
+            current = slots.get(slot);
+            if (current != null && current.getSequence() > sequence)
+                return;
+        } while (!slots.compareAndSet(slot, current, exchange));
+    }
+
+    private boolean shouldKeep(boolean failed) {
+        if (failed && captureErrors)
+            return true;
+
+        double rate = sampleRate;
+        if (rate <= 0.0)
+            return false;
+
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * Returns the exchanges currently in the buffer, oldest first.
+     */
+    public List<WireExchange> snapshot() {
+        List<WireExchange> result = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            WireExchange exchange = slots.get(i);
+            if (exchange != null)
+                result.add(exchange);
+        }
+        result.sort(Comparator.comparingLong(WireExchange::getSequence));
+        return result;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++)
+            slots.set(i, null);
+    }
+
+    /**
+     * Writes the exchanges currently in the buffer to a text file, oldest first. Each one
+     * starts with a line with the time, duration, message ID, URL and error (if any),
+     * followed by the request body and the response body, exactly as they were on the wire.
+     */
+    public void dumpTo(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (WireExchange exchange : snapshot()) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("### #").append(exchange.getSequence());
+                sb.append(' ').append(exchange.getStartedAt());
+                sb.append(' ').append(TimeUnit.NANOSECONDS.toMillis(exchange.getDurationNanos())).append("ms");
+                sb.append(' ').append(exchange.getMessageId());
+                sb.append(' ').append(exchange.getUrl());
+                if (exchange.getError() != null)
+                    sb.append(" ERROR ").append(exchange.getError().replace('\n', ' '));
+                sb.append("\n>>> request\n");
+                out.write(sb.toString().getBytes(UTF_8));
+                out.write(exchange.getRequestBytes());
+
+                out.write("\n<<< response\n".getBytes(UTF_8));
+                if (exchange.getResponseBytes() != null)
+                    out.write(exchange.getResponseBytes());
+                out.write("\n\n".getBytes(UTF_8));
+            }
+        }
+    }
+}
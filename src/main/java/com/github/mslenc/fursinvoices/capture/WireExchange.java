@@ -0,0 +1,87 @@
+package com.github.mslenc.fursinvoices.capture;
+
+import java.net.URL;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A single captured exchange with FURS: the signed token that was sent, the signed token
+ * that came back (if any), and when and how long it took.
+ */
+public class WireExchange {
+    private final long sequence;
+    private final URL url;
+    private final UUID messageId;
+    private final Instant startedAt;
+    private final long durationNanos;
+    private final byte[] requestBytes;
+    private final byte[] responseBytes;
+    private final String error;
+
+    WireExchange(long sequence, URL url, UUID messageId, Instant startedAt, long durationNanos,
+                 byte[] requestBytes, byte[] responseBytes, String error) {
+
+        this.sequence = sequence;
+        this.url = url;
+        this.messageId = messageId;
+        this.startedAt = startedAt;
+        this.durationNanos = durationNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.error = error;
+    }
+
+    /**
+     * The position of this exchange among all those offered to the capture, starting with 0.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * The message ID from the request's header, or null if there was none.
+     */
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * The exact HTTP request body, i.e. the token envelope with the signed JWS token.
+     * The array is shared, so it must not be modified.
+     */
+    public byte[] getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * The exact HTTP response body, or null if no response was received. The array is
+     * shared, so it must not be modified.
+     */
+    public byte[] getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * A description of the error, if the exchange failed (including errors reported by FURS
+     * in an otherwise valid response), or null if it succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+}
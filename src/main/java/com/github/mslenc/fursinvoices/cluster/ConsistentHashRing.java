@@ -0,0 +1,68 @@
+package com.github.mslenc.fursinvoices.cluster;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Assigns keys to nodes by consistent hashing: each node is placed on a ring at a number of
+ * pseudo-random points (virtual nodes), and a key belongs to the node at the first point
+ * following the key's hash. When a node joins or leaves, only the keys between its points
+ * and their predecessors move, so the other nodes keep most of their keys. All nodes with the
+ * same node list compute the same assignment.
+ */
+public class ConsistentHashRing {
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param nodes the node IDs
+     * @param virtualNodes the number of points per node; more give a more even distribution
+     */
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes < 1)
+            throw new IllegalArgumentException("virtualNodes (" + virtualNodes + ") must be at least 1");
+
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                long point = hash(node + "#" + i);
+                String existing = ring.get(point);
+                // resolve the (very unlikely) collisions the same way on every node
+                if (existing == null || node.compareTo(existing) < 0)
+                    ring.put(point, node);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Returns the node the key belongs to, or null if there are no nodes.
+     */
+    public String nodeFor(String key) {
+        if (ring.isEmpty())
+            return null;
+
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    static long hash(String value) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(value.getBytes(UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        long result = 0;
+        for (int i = 0; i < 8; i++)
+            result = (result << 8) | (digest[i] & 0xFF);
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.mslenc.fursinvoices.cluster;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.mslenc.fursinvoices.cluster.InMemoryLeaseStore.checkArgs;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A {@link LeaseStore} in a directory on a shared filesystem, with a file per lease. Every
+ * operation holds an exclusive lock on a lock file in the directory, so it is atomic across
+ * processes, as long as the filesystem supports locking (local filesystems and NFSv4 do).
+ * It is meant for tests and small deployments; it doesn't scale to many nodes or leases.
+ */
+public class FileLeaseStore implements LeaseStore {
+    private static final String SUFFIX = ".lease";
+
+    // file locks are held per process, so threads of the same process must also be excluded
+    private static final ConcurrentHashMap<Path, Object> monitors = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Path lockFile;
+    private final Object monitor;
+
+    /**
+     * @param directory the directory to use; it is created if it doesn't exist
+     */
+    public FileLeaseStore(Path directory) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("null directory");
+
+        Files.createDirectories(directory);
+        this.directory = directory.toRealPath();
+        this.lockFile = this.directory.resolve(".lock");
+        this.monitor = monitors.computeIfAbsent(this.directory, dir -> new Object());
+    }
+
+    private interface Locked<T> {
+        T run() throws IOException;
+    }
+
+    private <T> T locked(Locked<T> operation) throws IOException {
+        synchronized (monitor) {
+            try (FileChannel channel = FileChannel.open(lockFile, CREATE, WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return operation.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Lease tryAcquire(String name, String owner, long ttlMillis) throws IOException {
+        checkArgs(name, owner, ttlMillis);
+
+        return locked(() -> {
+            long now = System.currentTimeMillis();
+            Lease existing = read(name);
+            Lease lease;
+            if (existing == null) {
+                lease = new Lease(name, owner, 1, now + ttlMillis);
+            } else if (existing.isExpired(now)) {
+                lease = new Lease(name, owner, existing.getToken() + 1, now + ttlMillis);
+            } else if (existing.getOwner().equals(owner)) {
+                lease = new Lease(name, owner, existing.getToken(), now + ttlMillis);
+            } else {
+                return null;
+            }
+
+            write(lease);
+            return lease;
+        });
+    }
+
+    @Override
+    public Lease renew(Lease lease, long ttlMillis) throws IOException {
+        checkArgs(lease.getName(), lease.getOwner(), ttlMillis);
+
+        return locked(() -> {
+            if (!isCurrent(lease))
+                return null;
+
+            Lease renewed = new Lease(lease.getName(), lease.getOwner(), lease.getToken(), System.currentTimeMillis() + ttlMillis);
+            write(renewed);
+            return renewed;
+        });
+    }
+
+    @Override
+    public void release(Lease lease) throws IOException {
+        locked(() -> {
+            // keep the token, so the next holder gets a higher one
+            if (isCurrent(lease))
+                write(new Lease(lease.getName(), lease.getOwner(), lease.getToken(), 0));
+            return null;
+        });
+    }
+
+    @Override
+    public List<Lease> list(String prefix) throws IOException {
+        return locked(() -> {
+            long now = System.currentTimeMillis();
+            ArrayList<Lease> result = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    String name = decode(fileName.substring(0, fileName.length() - SUFFIX.length()));
+                    if (!name.startsWith(prefix))
+                        continue;
+
+                    Lease lease = read(name);
+                    if (lease != null && !lease.isExpired(now))
+                        result.add(lease);
+                }
+            }
+            return result;
+        });
+    }
+
+    private boolean isCurrent(Lease lease) throws IOException {
+        Lease existing = read(lease.getName());
+        return existing != null && existing.getToken() == lease.getToken() && existing.getOwner().equals(lease.getOwner());
+    }
+
+    private Path fileOf(String name) {
+        return directory.resolve(encode(name) + SUFFIX);
+    }
+
+    private Lease read(String name) throws IOException {
+        Path file = fileOf(name);
+        if (!Files.exists(file))
+            return null;
+
+        List<String> lines = Files.readAllLines(file, UTF_8);
+        if (lines.size() < 3)
+            throw new IOException("Corrupt lease file " + file);
+
+        try {
+            return new Lease(name, lines.get(0), Long.parseLong(lines.get(1)), Long.parseLong(lines.get(2)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt lease file " + file, e);
+        }
+    }
+
+    private void write(Lease lease) throws IOException {
+        Path file = fileOf(lease.getName());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, Arrays.asList(lease.getOwner(), String.valueOf(lease.getToken()), String.valueOf(lease.getExpiresAtMillis())), UTF_8);
+        Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    private static String encode(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
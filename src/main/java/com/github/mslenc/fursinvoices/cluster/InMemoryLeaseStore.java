@@ -0,0 +1,92 @@
+package com.github.mslenc.fursinvoices.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link LeaseStore} in memory, for tests and for several nodes within a single process.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+    private final HashMap<String, Lease> leases = new HashMap<>();
+    private final LongSupplier clock;
+
+    public InMemoryLeaseStore() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the source of the current time in milliseconds, e.g. a fake one for tests
+     */
+    public InMemoryLeaseStore(LongSupplier clock) {
+        if (clock == null)
+            throw new IllegalArgumentException("null clock");
+
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized Lease tryAcquire(String name, String owner, long ttlMillis) {
+        checkArgs(name, owner, ttlMillis);
+
+        long now = clock.getAsLong();
+        Lease existing = leases.get(name);
+        Lease lease;
+        if (existing == null) {
+            lease = new Lease(name, owner, 1, now + ttlMillis);
+        } else if (existing.isExpired(now)) {
+            lease = new Lease(name, owner, existing.getToken() + 1, now + ttlMillis);
+        } else if (existing.getOwner().equals(owner)) {
+            lease = new Lease(name, owner, existing.getToken(), now + ttlMillis);
+        } else {
+            return null;
+        }
+
+        leases.put(name, lease);
+        return lease;
+    }
+
+    @Override
+    public synchronized Lease renew(Lease lease, long ttlMillis) {
+        checkArgs(lease.getName(), lease.getOwner(), ttlMillis);
+
+        Lease existing = leases.get(lease.getName());
+        if (existing == null || existing.getToken() != lease.getToken() || !existing.getOwner().equals(lease.getOwner()))
+            return null;
+
+        Lease renewed = new Lease(lease.getName(), lease.getOwner(), lease.getToken(), clock.getAsLong() + ttlMillis);
+        leases.put(lease.getName(), renewed);
+        return renewed;
+    }
+
+    @Override
+    public synchronized void release(Lease lease) {
+        Lease existing = leases.get(lease.getName());
+        if (existing != null && existing.getToken() == lease.getToken() && existing.getOwner().equals(lease.getOwner())) {
+            // keep the token, so the next holder gets a higher one
+            leases.put(lease.getName(), new Lease(lease.getName(), lease.getOwner(), lease.getToken(), 0));
+        }
+    }
+
+    @Override
+    public synchronized List<Lease> list(String prefix) {
+        long now = clock.getAsLong();
+        ArrayList<Lease> result = new ArrayList<>();
+        for (Lease lease : leases.values())
+            if (lease.getName().startsWith(prefix) && !lease.isExpired(now))
+                result.add(lease);
+        return result;
+    }
+
+    static void checkArgs(String name, String owner, long ttlMillis) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
+
+        if (ttlMillis < 1)
+            throw new IllegalArgumentException("ttlMillis (" + ttlMillis + ") must be at least 1");
+    }
+}
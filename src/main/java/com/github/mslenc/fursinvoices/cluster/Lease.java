@@ -0,0 +1,51 @@
+package com.github.mslenc.fursinvoices.cluster;
+
+/**
+ * A time-limited claim of an owner on a named resource, as granted by a {@link LeaseStore}.
+ * Each time a lease passes to a new holder, its token increases, so a lease obtained earlier
+ * can be recognized as stale even if the owner name is the same.
+ */
+public class Lease {
+    private final String name;
+    private final String owner;
+    private final long token;
+    private final long expiresAtMillis;
+
+    public Lease(String name, String owner, long token, long expiresAtMillis) {
+        this.name = name;
+        this.owner = owner;
+        this.token = token;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * The fencing token, which increases each time the lease is acquired anew.
+     */
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * When the lease expires, in milliseconds since the epoch.
+     */
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + owner + ", token " + token + ")";
+    }
+}
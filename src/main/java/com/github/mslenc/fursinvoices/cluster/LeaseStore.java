@@ -0,0 +1,36 @@
+package com.github.mslenc.fursinvoices.cluster;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Shared storage of {@link Lease}s, through which several nodes agree on who does what. All
+ * operations must be atomic with respect to all nodes using the store. Expiry is based on the
+ * wall clock, so the nodes' clocks should be reasonably in sync (well within the lease TTLs).
+ */
+public interface LeaseStore {
+    /**
+     * Acquires a lease, if it is free, expired, or already held by the same owner (in which case
+     * it is extended, keeping its token).
+     *
+     * @return the lease, or null if it is held by another owner
+     */
+    Lease tryAcquire(String name, String owner, long ttlMillis) throws IOException;
+
+    /**
+     * Extends a lease that is still held.
+     *
+     * @return the extended lease, or null if it has been released or passed to another holder in the meantime
+     */
+    Lease renew(Lease lease, long ttlMillis) throws IOException;
+
+    /**
+     * Releases a lease, if it is still held.
+     */
+    void release(Lease lease) throws IOException;
+
+    /**
+     * Returns the unexpired leases whose names start with the prefix.
+     */
+    List<Lease> list(String prefix) throws IOException;
+}
@@ -0,0 +1,221 @@
+package com.github.mslenc.fursinvoices.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs asynchronous operations one at a time per key, in the order they were submitted,
+ * while operations with different keys run fully in parallel. An operation is started only
+ * after the future of the previous operation with the same key has completed (successfully
+ * or not).
+ * <p>
+ * Each key has a mailbox, which is a lock-free queue with a counter of the operations it holds;
+ * whoever moves the counter from zero starts the operations, and whoever completes one starts
+ * the next. There is no thread per key and no lock on the submission path.
+ * <p>
+ * The number of keys is bounded: mailboxes that have been idle for longer than the idle timeout
+ * are removed by {@link #evictIdle()} (which is also called when the limit is reached, evicting
+ * any idle mailboxes if that is not enough). When all <tt>maxKeys</tt> mailboxes are busy,
+ * submissions with a new key are rejected with {@link RejectedExecutionException}.
+ */
+public class KeyedSerialExecutor<K> {
+    private static final int EVICTED = -1;
+
+    private final int maxKeys;
+    private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger keyCount = new AtomicInteger();
+    private volatile long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * @param maxKeys the maximum number of keys with a mailbox at the same time
+     */
+    public KeyedSerialExecutor(int maxKeys) {
+        if (maxKeys < 1)
+            throw new IllegalArgumentException("maxKeys (" + maxKeys + ") must be at least 1");
+
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Sets how long a mailbox must be idle before {@link #evictIdle()} removes it (default 1 minute).
+     * @return this, for fluent interface
+     */
+    public KeyedSerialExecutor<K> setIdleTimeout(long idleTimeout, TimeUnit unit) {
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException("idleTimeout (" + idleTimeout + ") must not be negative");
+
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        return this;
+    }
+
+    /**
+     * Queues an operation after the others with the same key. The operation is started either
+     * on the calling thread (if nothing else is queued for the key) or on the thread that
+     * completes the previous operation's future, so it should only start the work, not do it.
+     *
+     * @param key the key (must not be null)
+     * @param operation starts the operation and returns its future
+     * @return a future with the outcome of the operation
+     * @throws RejectedExecutionException if the key is new and there are already <tt>maxKeys</tt> busy keys
+     */
+    public <T> CompletableFuture<T> submit(K key, Supplier<CompletableFuture<T>> operation) {
+        if (key == null)
+            throw new IllegalArgumentException("null key");
+
+        if (operation == null)
+            throw new IllegalArgumentException("null operation");
+
+        Task<T> task = new Task<>(operation);
+
+        while (true) {
+            Mailbox mailbox = mailboxes.get(key);
+            if (mailbox == null)
+                mailbox = createMailbox(key);
+
+            int count = mailbox.count.get();
+            if (count == EVICTED)
+                continue; // it was just evicted, so get or create the new one
+
+            if (mailbox.count.compareAndSet(count, count + 1)) {
+                mailbox.queue.add(task);
+                if (count == 0)
+                    mailbox.drain();
+                return task.promise;
+            }
+        }
+    }
+
+    private Mailbox createMailbox(K key) {
+        if (keyCount.get() >= maxKeys && evict(idleTimeoutNanos) == 0 && evict(0) == 0 && keyCount.get() >= maxKeys)
+            throw new RejectedExecutionException("All " + maxKeys + " keys are busy");
+
+        Mailbox created = new Mailbox();
+        Mailbox existing = mailboxes.putIfAbsent(key, created);
+        if (existing != null)
+            return existing;
+
+        keyCount.incrementAndGet();
+        return created;
+    }
+
+    /**
+     * Removes the mailboxes that have been idle for longer than the idle timeout.
+     *
+     * @return the number of mailboxes removed
+     */
+    public int evictIdle() {
+        return evict(idleTimeoutNanos);
+    }
+
+    private int evict(long minIdleNanos) {
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        for (Map.Entry<K, Mailbox> entry : mailboxes.entrySet()) {
+            Mailbox mailbox = entry.getValue();
+            if (now - mailbox.idleSince < minIdleNanos)
+                continue;
+
+            // only an empty mailbox can be evicted; submitters seeing EVICTED will create a new one
+            if (mailbox.count.compareAndSet(0, EVICTED) && mailboxes.remove(entry.getKey(), mailbox)) {
+                keyCount.decrementAndGet();
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+    /**
+     * The number of keys that currently have a mailbox.
+     */
+    public int getKeyCount() {
+        return keyCount.get();
+    }
+
+    /**
+     * The number of operations queued or running for a key.
+     */
+    public int getQueueDepth(K key) {
+        Mailbox mailbox = mailboxes.get(key);
+        return mailbox != null ? Math.max(0, mailbox.count.get()) : 0;
+    }
+
+    private static class Mailbox {
+        final ConcurrentLinkedQueue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger count = new AtomicInteger();
+        volatile long idleSince = System.nanoTime();
+
+        /**
+         * Starts queued operations, one after another, until there are none left. Operations
+         * that complete synchronously are handled in the loop, so that a long queue of them
+         * doesn't recurse.
+         */
+        void drain() {
+            while (true) {
+                Task<?> task;
+                while ((task = queue.poll()) == null) {
+                    // the submitter has counted its task, but not yet added it
+                    Thread.yield();
+                }
+
+                CompletableFuture<?> done = task.start();
+                if (!done.isDone()) {
+                    done.whenComplete((result, error) -> next());
+                    return;
+                }
+
+                if (count.decrementAndGet() == 0) {
+                    idleSince = System.nanoTime();
+                    return;
+                }
+            }
+        }
+
+        private void next() {
+            if (count.decrementAndGet() == 0) {
+                idleSince = System.nanoTime();
+            } else {
+                drain();
+            }
+        }
+    }
+
+    private static class Task<T> {
+        final Supplier<CompletableFuture<T>> operation;
+        final CompletableFuture<T> promise = new CompletableFuture<>();
+
+        Task(Supplier<CompletableFuture<T>> operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Starts the operation, returning a future that completes after the promise.
+         */
+        CompletableFuture<?> start() {
+            CompletableFuture<T> future;
+            try {
+                future = operation.get();
+                if (future == null)
+                    throw new NullPointerException("null future returned from operation");
+            } catch (Throwable t) {
+                promise.completeExceptionally(t);
+                return promise;
+            }
+
+            return future.whenComplete((result, error) -> {
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.github.mslenc.fursinvoices.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of operations in progress to <tt>maxPermits</tt>, handing out free permits
+ * to waiting operations by priority. There is a fixed number of lanes, lane 0 having the highest
+ * priority. In {@link Mode#STRICT} mode, a permit always goes to the highest lane with waiting
+ * operations; in {@link Mode#WEIGHTED} mode, the lanes take turns in proportion to their weights.
+ * <p>
+ * Two further rules keep high-priority latency low and low-priority work moving:
+ * <ul>
+ *     <li>some permits can be reserved for lane 0, so that it doesn't have to wait for slow
+ *         low-priority operations to finish before it can start</li>
+ *     <li>an operation that has waited longer than the maximum wait is started next, regardless
+ *         of its lane (and of the reservation), so that lower lanes can't be starved</li>
+ * </ul>
+ * Both blocking callers ({@link #acquire(int)}) and asynchronous ones ({@link #submit(int, Runnable)})
+ * are supported, and can share the same gate. Either way, each granted permit must be given
+ * back with {@link #release()}.
+ */
+public class PriorityGate {
+    public enum Mode {
+        STRICT,
+        WEIGHTED
+    }
+
+    private final int maxPermits;
+    private final Lane[] lanes;
+    private final Object lock = new Object();
+    private Mode mode = Mode.STRICT;
+    private int reserved;
+    private long maxWaitNanos = TimeUnit.SECONDS.toNanos(10);
+    private int inUse;
+    private int current;
+    private boolean dispatching;
+
+    /**
+     * @param lanes the number of lanes (at least 1)
+     * @param maxPermits the maximum number of operations in progress at the same time
+     */
+    public PriorityGate(int lanes, int maxPermits) {
+        if (lanes < 1)
+            throw new IllegalArgumentException("lanes (" + lanes + ") must be at least 1");
+
+        if (maxPermits < 1)
+            throw new IllegalArgumentException("maxPermits (" + maxPermits + ") must be at least 1");
+
+        this.maxPermits = maxPermits;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++)
+            this.lanes[i] = new Lane(1 << Math.min(30, 2 * (lanes - 1 - i))); // 1, 4, 16, ... from the lowest lane up
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    /**
+     * Sets the mode (default {@link Mode#STRICT}).
+     * @return this, for fluent interface
+     */
+    public PriorityGate setMode(Mode mode) {
+        if (mode == null)
+            throw new IllegalArgumentException("null mode");
+
+        synchronized (lock) {
+            this.mode = mode;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the weights of the lanes, used in {@link Mode#WEIGHTED} mode. By default, each lane
+     * has four times the weight of the one below it.
+     * @return this, for fluent interface
+     */
+    public PriorityGate setWeights(int... weights) {
+        if (weights == null || weights.length != lanes.length)
+            throw new IllegalArgumentException("There must be exactly " + lanes.length + " weights");
+
+        for (int weight : weights)
+            if (weight < 1)
+                throw new IllegalArgumentException("weight (" + weight + ") must be at least 1");
+
+        synchronized (lock) {
+            for (int i = 0; i < lanes.length; i++)
+                lanes[i].weight = weights[i];
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of permits that only lane 0 may use (default 0).
+     * @return this, for fluent interface
+     */
+    public PriorityGate setReserved(int reserved) {
+        if (reserved < 0 || reserved >= maxPermits)
+            throw new IllegalArgumentException("reserved (" + reserved + ") must be between 0 and maxPermits - 1");
+
+        synchronized (lock) {
+            this.reserved = reserved;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum time an operation waits before it is started ahead of higher lanes
+     * (default 10 seconds; 0 disables this).
+     * @return this, for fluent interface
+     */
+    public PriorityGate setMaxWait(long maxWait, TimeUnit unit) {
+        if (maxWait < 0)
+            throw new IllegalArgumentException("maxWait (" + maxWait + ") must not be negative");
+
+        synchronized (lock) {
+            this.maxWaitNanos = unit.toNanos(maxWait);
+        }
+        return this;
+    }
+
+    /**
+     * Queues an operation, calling <tt>onGranted</tt> when it gets a permit (possibly right away,
+     * on the calling thread). <tt>onGranted</tt> should just start the operation, and must make
+     * sure {@link #release()} is called when it finishes.
+     */
+    public void submit(int lane, Runnable onGranted) {
+        if (onGranted == null)
+            throw new IllegalArgumentException("null onGranted");
+
+        enqueue(lane, new Waiter(onGranted));
+        dispatch();
+    }
+
+    /**
+     * Waits until a permit is granted to the calling thread, which must then call {@link #release()}.
+     */
+    public void acquire(int lane) throws InterruptedException {
+        CountDownLatch granted = new CountDownLatch(1);
+        Waiter waiter = new Waiter(granted::countDown);
+        Lane target = enqueue(lane, waiter);
+        dispatch();
+
+        try {
+            granted.await();
+        } catch (InterruptedException e) {
+            boolean removed;
+            synchronized (lock) {
+                removed = target.queue.remove(waiter);
+            }
+            if (!removed)
+                release(); // it was granted in the meantime
+            throw e;
+        }
+    }
+
+    public void release() {
+        synchronized (lock) {
+            if (inUse == 0)
+                throw new IllegalStateException("release() without a permit");
+            inUse--;
+        }
+
+        dispatch();
+    }
+
+    private Lane enqueue(int lane, Waiter waiter) {
+        if (lane < 0 || lane >= lanes.length)
+            throw new IllegalArgumentException("lane (" + lane + ") must be between 0 and " + (lanes.length - 1));
+
+        Lane target = lanes[lane];
+        synchronized (lock) {
+            target.queue.add(waiter);
+        }
+        return target;
+    }
+
+    /**
+     * Grants permits while there are any. Only one thread dispatches at a time, so that
+     * operations that complete synchronously don't recurse.
+     */
+    private void dispatch() {
+        synchronized (lock) {
+            if (dispatching)
+                return;
+            dispatching = true;
+        }
+
+        while (true) {
+            Waiter waiter;
+            synchronized (lock) {
+                waiter = next();
+                if (waiter == null) {
+                    dispatching = false;
+                    return;
+                }
+            }
+
+            try {
+                waiter.onGranted.run();
+            } catch (Throwable t) {
+                // onGranted is responsible for its own errors (and for releasing the permit)
+            }
+        }
+    }
+
+    // called with the lock held
+    private Waiter next() {
+        if (inUse >= maxPermits)
+            return null;
+
+        long now = System.nanoTime();
+        int lane = starvedLane(now);
+        if (lane >= 0) {
+            lanes[lane].promoted++;
+        } else {
+            lane = mode == Mode.STRICT ? highestWaiting() : weightedNext();
+            if (lane < 0)
+                return null;
+
+            if (lane > 0 && inUse >= maxPermits - reserved) {
+                // only lane 0 may use the rest
+                if (lanes[0].queue.isEmpty())
+                    return null;
+                lane = 0;
+            }
+
+            if (mode == Mode.WEIGHTED)
+                charge(lane);
+        }
+
+        Lane chosen = lanes[lane];
+        Waiter waiter = chosen.queue.poll();
+        long waitNanos = now - waiter.enqueuedNanos;
+        chosen.granted++;
+        chosen.totalWaitNanos += waitNanos;
+        chosen.maxWaitNanos = Math.max(chosen.maxWaitNanos, waitNanos);
+        inUse++;
+
+        return waiter;
+    }
+
+    private int starvedLane(long now) {
+        if (maxWaitNanos <= 0)
+            return -1;
+
+        int result = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 1; i < lanes.length; i++) {
+            Waiter head = lanes[i].queue.peek();
+            if (head != null && now - head.enqueuedNanos > maxWaitNanos && head.enqueuedNanos < oldest) {
+                oldest = head.enqueuedNanos;
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    private int highestWaiting() {
+        for (int i = 0; i < lanes.length; i++)
+            if (!lanes[i].queue.isEmpty())
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the lane whose turn it is in deficit round-robin, without charging it.
+     */
+    private int weightedNext() {
+        for (int i = 0; i < lanes.length; i++) {
+            Lane lane = lanes[current];
+            if (!lane.queue.isEmpty())
+                return current;
+
+            // an idle lane doesn't keep its credit
+            lane.deficit = 0;
+            current = (current + 1) % lanes.length;
+        }
+        return -1;
+    }
+
+    private void charge(int index) {
+        Lane lane = lanes[index];
+        if (lane.deficit < 1)
+            lane.deficit += lane.weight;
+
+        lane.deficit--;
+        if (index == current && (lane.deficit < 1 || lane.queue.size() <= 1))
+            current = (current + 1) % lanes.length;
+    }
+
+    public int getInUse() {
+        synchronized (lock) {
+            return inUse;
+        }
+    }
+
+    /**
+     * The number of operations waiting in a lane.
+     */
+    public int getQueueDepth(int lane) {
+        synchronized (lock) {
+            return lanes[lane].queue.size();
+        }
+    }
+
+    /**
+     * The number of permits granted to a lane so far.
+     */
+    public long getGranted(int lane) {
+        synchronized (lock) {
+            return lanes[lane].granted;
+        }
+    }
+
+    /**
+     * The number of permits granted to a lane ahead of higher lanes, because of the maximum wait.
+     */
+    public long getPromoted(int lane) {
+        synchronized (lock) {
+            return lanes[lane].promoted;
+        }
+    }
+
+    /**
+     * The average time operations of a lane waited for their permit, in nanoseconds.
+     */
+    public long getAverageWaitNanos(int lane) {
+        synchronized (lock) {
+            Lane l = lanes[lane];
+            return l.granted > 0 ? l.totalWaitNanos / l.granted : 0;
+        }
+    }
+
+    /**
+     * The longest time an operation of a lane waited for its permit, in nanoseconds.
+     */
+    public long getMaxWaitNanos(int lane) {
+        synchronized (lock) {
+            return lanes[lane].maxWaitNanos;
+        }
+    }
+
+    private static class Waiter {
+        final Runnable onGranted;
+        final long enqueuedNanos = System.nanoTime();
+
+        Waiter(Runnable onGranted) {
+            this.onGranted = onGranted;
+        }
+    }
+
+    private static class Lane {
+        final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+        int weight;
+        int deficit;
+        long granted;
+        long promoted;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        Lane(int weight) {
+            this.weight = weight;
+        }
+    }
+}
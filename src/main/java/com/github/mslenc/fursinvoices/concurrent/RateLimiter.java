@@ -0,0 +1,60 @@
+package com.github.mslenc.fursinvoices.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token-bucket rate limiter, allowing on average <tt>permitsPerSecond</tt>
+ * operations per second, with bursts of up to <tt>burst</tt> operations after a period
+ * of inactivity.
+ * <p>
+ * Permits are reserved rather than taken, so both blocking callers ({@link #acquire()})
+ * and asynchronous ones ({@link #reserve()}, then scheduling the operation after the
+ * returned delay) are supported.
+ */
+public class RateLimiter {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond the average rate (must be positive)
+     * @param burst the maximum number of permits available at once (at least 1)
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0))
+            throw new IllegalArgumentException("permitsPerSecond (" + permitsPerSecond + ") must be positive");
+
+        if (burst < 1)
+            throw new IllegalArgumentException("burst (" + burst + ") must be at least 1");
+
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * (burst - 1);
+        this.nextFreeNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * Reserves a single permit.
+     *
+     * @return the number of nanoseconds the caller must wait before using it (0 if it can be used immediately)
+     */
+    public long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextFreeNanos.get();
+            long start = next - now > -burstNanos ? next : now - burstNanos;
+
+            if (nextFreeNanos.compareAndSet(next, start + intervalNanos))
+                return Math.max(0, start - now);
+        }
+    }
+
+    /**
+     * Reserves a single permit and waits until it can be used.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
@@ -8,6 +8,7 @@ import com.github.mslenc.fursinvoices.validation.TaxNumberValidator;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.ANY;
@@ -21,7 +22,8 @@ public class BusinessPremise {
     private LocalDate validityDate;
     private String closingTag;
     private String specialNotes;
-    private ArrayList<SoftwareSupplier> softwareSuppliers = new ArrayList<>();
+    private final ArrayList<SoftwareSupplier> softwareSuppliers = new ArrayList<>();
+    private final List<SoftwareSupplier> softwareSuppliersView = Collections.unmodifiableList(softwareSuppliers);
     private BPIdentifier bpIdentifier;
 
 
@@ -87,6 +89,9 @@ public class BusinessPremise {
             if (element == null)
                 throw new IllegalArgumentException("null software supplier element");
 
+        if (softwareSuppliers == this.softwareSuppliersView)
+            return this;
+
         this.softwareSuppliers.clear();
         this.softwareSuppliers.addAll(softwareSuppliers);
 
@@ -102,11 +107,12 @@ public class BusinessPremise {
     }
 
     /**
+     * Returns an unmodifiable view of the list (no copy is made).
      * @see #setSoftwareSuppliers(List)
      */
     @JsonProperty("SoftwareSupplier")
     public List<SoftwareSupplier> getSoftwareSuppliers() {
-        return new ArrayList<>(softwareSuppliers);
+        return softwareSuppliersView;
     }
 
 
@@ -2,6 +2,7 @@ package com.github.mslenc.fursinvoices.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.mslenc.fursinvoices.validation.AmountValidator;
 import com.github.mslenc.fursinvoices.validation.TaxRateValidator;
 
@@ -13,17 +14,18 @@ import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZer
  * Contains information about flat-rate compensation.
  */
 public class FlatRateCompensation {
-    private BigDecimal flatRateRate;
-    private BigDecimal flatRateTaxableAmount;
-    private BigDecimal flatRateAmount;
+    private long flatRateRate;
+    private long flatRateTaxableAmount;
+    private long flatRateAmount;
+    private volatile boolean frozen;
 
     /**
      * Creates an object with all three fields initialized to 0.
      */
     public FlatRateCompensation() {
-        flatRateRate = FLAT_RATE_RATE.getNormalizedZero();
-        flatRateTaxableAmount = FLAT_RATE_TAXABLE_AMOUNT.getNormalizedZero();
-        flatRateAmount = FLAT_RATE_AMOUNT.getNormalizedZero();
+        flatRateRate = 0;
+        flatRateTaxableAmount = 0;
+        flatRateAmount = 0;
     }
 
     /**
@@ -47,8 +49,18 @@ public class FlatRateCompensation {
     /**
      * @see #setFlatRateRate(BigDecimal)
      */
-    @JsonProperty("FlatRateRate")
+    @JsonIgnore
     public BigDecimal getFlatRateRate() {
+        return FLAT_RATE_RATE.toBigDecimal(flatRateRate);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getFlatRateRate()
+     */
+    @JsonProperty("FlatRateRate")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getFlatRateRateUnscaled() {
         return flatRateRate;
     }
 
@@ -63,7 +75,8 @@ public class FlatRateCompensation {
      */
     @JsonProperty("FlatRateRate")
     public FlatRateCompensation setFlatRateRate(BigDecimal flatRateRate) {
-        this.flatRateRate = FLAT_RATE_RATE.validateAndNormalize(flatRateRate);
+        checkNotFrozen();
+        this.flatRateRate = FLAT_RATE_RATE.validateAndNormalizeUnscaled(flatRateRate);
         return this;
     }
 
@@ -72,15 +85,26 @@ public class FlatRateCompensation {
      */
     @JsonIgnore
     public FlatRateCompensation setFlatRateRate(double taxRate) {
-        this.flatRateRate = FLAT_RATE_RATE.validateAndConvert(taxRate);
+        checkNotFrozen();
+        this.flatRateRate = FLAT_RATE_RATE.validateAndConvertUnscaled(taxRate);
         return this;
     }
 
     /**
      * @see #setFlatRateTaxableAmount(BigDecimal)
      */
-    @JsonProperty("FlatRateTaxableAmount")
+    @JsonIgnore
     public BigDecimal getFlatRateTaxableAmount() {
+        return FLAT_RATE_TAXABLE_AMOUNT.toBigDecimal(flatRateTaxableAmount);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getFlatRateTaxableAmount()
+     */
+    @JsonProperty("FlatRateTaxableAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getFlatRateTaxableAmountUnscaled() {
         return flatRateTaxableAmount;
     }
 
@@ -96,7 +120,8 @@ public class FlatRateCompensation {
      */
     @JsonProperty("FlatRateTaxableAmount")
     public FlatRateCompensation setFlatRateTaxableAmount(BigDecimal flatRateTaxableAmount) {
-        this.flatRateTaxableAmount = FLAT_RATE_TAXABLE_AMOUNT.validateAndNormalize(flatRateTaxableAmount);
+        checkNotFrozen();
+        this.flatRateTaxableAmount = FLAT_RATE_TAXABLE_AMOUNT.validateAndNormalizeUnscaled(flatRateTaxableAmount);
         return this;
     }
 
@@ -105,7 +130,8 @@ public class FlatRateCompensation {
      */
     @JsonIgnore
     public FlatRateCompensation setFlatRateTaxableAmount(double taxableAmount) {
-        this.flatRateTaxableAmount = FLAT_RATE_TAXABLE_AMOUNT.validateAndConvert(taxableAmount);
+        checkNotFrozen();
+        this.flatRateTaxableAmount = FLAT_RATE_TAXABLE_AMOUNT.validateAndConvertUnscaled(taxableAmount);
         return this;
     }
 
@@ -113,8 +139,18 @@ public class FlatRateCompensation {
     /**
      * @see #setFlatRateAmount(BigDecimal)
      */
-    @JsonProperty("FlatRateAmount")
+    @JsonIgnore
     public BigDecimal getFlatRateAmount() {
+        return FLAT_RATE_AMOUNT.toBigDecimal(flatRateAmount);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getFlatRateAmount()
+     */
+    @JsonProperty("FlatRateAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getFlatRateAmountUnscaled() {
         return flatRateAmount;
     }
 
@@ -129,7 +165,8 @@ public class FlatRateCompensation {
      */
     @JsonProperty("FlatRateAmount")
     public FlatRateCompensation setFlatRateAmount(BigDecimal flatRateAmount) {
-        this.flatRateAmount = FLAT_RATE_AMOUNT.validateAndNormalize(flatRateAmount);
+        checkNotFrozen();
+        this.flatRateAmount = FLAT_RATE_AMOUNT.validateAndNormalizeUnscaled(flatRateAmount);
         return this;
     }
 
@@ -138,10 +175,32 @@ public class FlatRateCompensation {
      */
     @JsonIgnore
     public FlatRateCompensation setFlatRateAmount(double taxAmount) {
-        this.flatRateAmount = FLAT_RATE_AMOUNT.validateAndConvert(taxAmount);
+        checkNotFrozen();
+        this.flatRateAmount = FLAT_RATE_AMOUNT.validateAndConvertUnscaled(taxAmount);
+        return this;
+    }
+
+
+    /**
+     * Makes this object immutable; any setter called afterwards throws an <tt>IllegalStateException</tt>.
+     * @see Invoice#freeze()
+     * @return this, for fluent interface
+     */
+    @JsonIgnore
+    public FlatRateCompensation freeze() {
+        frozen = true;
         return this;
     }
 
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The flatRateCompensation has been frozen");
+    }
 
     private static final
     TaxRateValidator FLAT_RATE_RATE = new TaxRateValidator("flatRateRate", NO_NULLS);
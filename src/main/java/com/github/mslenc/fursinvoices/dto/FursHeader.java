@@ -27,9 +27,10 @@ public class FursHeader {
 
     /**
      * Creates a header with a new message ID (random UUID) and the current time.
+     * @see FursHeaderFactory
      */
     public FursHeader() {
-        this(UUID.randomUUID(), Instant.now());
+        this(FursHeaderFactory.getDefault().newMessageId(), FursHeaderFactory.getDefault().now());
     }
 
     /**
@@ -0,0 +1,98 @@
+package com.github.mslenc.fursinvoices.dto;
+
+import com.github.mslenc.fursinvoices.validation.ZoneOffsetCache;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Creates message headers without the shared bottlenecks of <tt>UUID.randomUUID()</tt>, which
+ * draws from a single <tt>SecureRandom</tt> that all threads contend for, and of converting the
+ * current time with the zone rules on every call.
+ * <p>
+ * Message IDs are random (version 4) UUIDs, drawn from one of a number of independently seeded
+ * <tt>SecureRandom</tt> instances, selected by thread. The time is converted with a cached
+ * Europe/Ljubljana offset, which is only recomputed when a transition is crossed.
+ * {@link FursHeader#FursHeader()} uses the default instance.
+ */
+public class FursHeaderFactory {
+    private static final FursHeaderFactory DEFAULT = new FursHeaderFactory(Math.max(16, 4 * Runtime.getRuntime().availableProcessors()));
+
+    private final SecureRandom[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes the number of random sources (rounded up to a power of two); about four
+     *                per CPU makes collisions between concurrent threads rare
+     */
+    public FursHeaderFactory(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("stripes (" + stripes + ") must be at least 1");
+
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes)
+            size <<= 1;
+
+        SecureRandom seedSource = new SecureRandom();
+        this.stripes = new SecureRandom[size];
+        for (int i = 0; i < size; i++) {
+            try {
+                // SHA1PRNG instances don't share any state, unlike the default NativePRNG on Linux
+                SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+                random.setSeed(seed(seedSource));
+                this.stripes[i] = random;
+            } catch (NoSuchAlgorithmException e) {
+                this.stripes[i] = new SecureRandom(seed(seedSource));
+            }
+        }
+        this.mask = size - 1;
+    }
+
+    private static byte[] seed(SecureRandom seedSource) {
+        byte[] seed = new byte[32];
+        seedSource.nextBytes(seed);
+        return seed;
+    }
+
+    public static FursHeaderFactory getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a header with a new message ID and the current time.
+     */
+    public FursHeader create() {
+        return new FursHeader(newMessageId(), now());
+    }
+
+    public UUID newMessageId() {
+        byte[] bytes = new byte[16];
+        stripes[stripeIndex()].nextBytes(bytes);
+
+        long msb = 0, lsb = 0;
+        for (int i = 0; i < 8; i++)
+            msb = (msb << 8) | (bytes[i] & 0xff);
+        for (int i = 8; i < 16; i++)
+            lsb = (lsb << 8) | (bytes[i] & 0xff);
+
+        msb = (msb & ~0xF000L) | 0x4000L;                            // version 4
+        lsb = (lsb & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;     // IETF variant
+
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Returns the current time in Europe/Ljubljana, truncated to whole seconds.
+     */
+    public LocalDateTime now() {
+        return ZoneOffsetCache.EUROPE_LJUBLJANA.now();
+    }
+
+    private int stripeIndex() {
+        // spread consecutive thread IDs over the stripes
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32) & mask;
+    }
+}
@@ -2,13 +2,16 @@ package com.github.mslenc.fursinvoices.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.mslenc.fursinvoices.FursConfig;
 import com.github.mslenc.fursinvoices.Utils;
 import com.github.mslenc.fursinvoices.validation.AmountValidator;
 import com.github.mslenc.fursinvoices.validation.DateTimeValidator;
+import com.github.mslenc.fursinvoices.validation.DecimalValidator;
 import com.github.mslenc.fursinvoices.validation.StringValidator;
 import com.github.mslenc.fursinvoices.validation.StringValidator.NullEmptyMode;
 import com.github.mslenc.fursinvoices.validation.TaxNumberValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
 
 import java.math.BigDecimal;
 import java.security.MessageDigest;
@@ -18,6 +21,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 import static com.github.mslenc.fursinvoices.Utils.computeRS256;
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
 import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZeroMode.NO_NULLS;
 import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZeroMode.ZERO_TO_NULL;
 import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.*;
@@ -39,15 +43,18 @@ public class Invoice {
     private NumberingStructure numberingStructure;
     private InvoiceIdentifier invoiceIdentifier;
     private String customerVatNumber;
-    private BigDecimal invoiceAmount;
-    private BigDecimal returnsAmount;
-    private BigDecimal paymentAmount;
-    private ArrayList<TaxPerSeller> taxesPerSeller = new ArrayList<>();
+    private long invoiceAmount = NULL_UNSCALED;
+    private long returnsAmount = NULL_UNSCALED;
+    private long paymentAmount = NULL_UNSCALED;
+    private final ArrayList<TaxPerSeller> taxesPerSeller = new ArrayList<>();
+    private final List<TaxPerSeller> taxesPerSellerView = Collections.unmodifiableList(taxesPerSeller);
     private Integer operatorTaxNumber;
     private Boolean foreignOperator;
     private String protectedId;
     private Boolean subsequentSubmit;
-    private ArrayList<ReferenceInvoice> referenceInvoices = new ArrayList<>();
+    private final ArrayList<ReferenceInvoice> referenceInvoices = new ArrayList<>();
+    private final List<ReferenceInvoice> referenceInvoicesView = Collections.unmodifiableList(referenceInvoices);
+    private volatile boolean frozen;
 
     /**
      * @see #setTaxNumber(Integer)
@@ -70,6 +77,7 @@ public class Invoice {
      */
     @JsonProperty("TaxNumber")
     public Invoice setTaxNumber(Integer taxNumber) {
+        checkNotFrozen();
         this.taxNumber = TAX_NUMBER.validate(taxNumber);
         return this;
     }
@@ -79,6 +87,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setTaxNumber(int taxNumber) {
+        checkNotFrozen();
         this.taxNumber = TAX_NUMBER.validate(taxNumber);
         return this;
     }
@@ -88,6 +97,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setTaxNumber(String taxNumber) {
+        checkNotFrozen();
         this.taxNumber = TAX_NUMBER.validateAndConvert(taxNumber);
         return this;
     }
@@ -112,6 +122,7 @@ public class Invoice {
      */
     @JsonProperty("IssueDateTime")
     public Invoice setIssueDateTime(LocalDateTime issueDateTime) {
+        checkNotFrozen();
         this.issueDateTime = ISSUE_DATE_TIME.validate(issueDateTime);
         return this;
     }
@@ -121,6 +132,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setIssueDateTime(Instant issueDateTime) {
+        checkNotFrozen();
         this.issueDateTime = ISSUE_DATE_TIME.validateAndConvert(issueDateTime);
         return this;
     }
@@ -151,6 +163,7 @@ public class Invoice {
      */
     @JsonProperty("NumberingStructure")
     public Invoice setNumberingStructure(NumberingStructure numberingStructure) {
+        checkNotFrozen();
         if (numberingStructure == null)
             throw new IllegalArgumentException("Null numberingStructure");
 
@@ -191,6 +204,7 @@ public class Invoice {
      */
     @JsonProperty("InvoiceIdentifier")
     public Invoice setInvoiceIdentifier(InvoiceIdentifier invoiceIdentifier) {
+        checkNotFrozen();
         this.invoiceIdentifier = invoiceIdentifier;
         return this;
     }
@@ -217,6 +231,7 @@ public class Invoice {
      */
     @JsonProperty("CustomerVATNumber")
     public Invoice setCustomerVatNumber(String customerVatNumber) {
+        checkNotFrozen();
         this.customerVatNumber = CUSTOMER_VAT_NUMBER.validate(customerVatNumber);
         return this;
     }
@@ -224,8 +239,18 @@ public class Invoice {
     /**
      * @see #setInvoiceAmount(BigDecimal)
      */
-    @JsonProperty("InvoiceAmount")
+    @JsonIgnore
     public BigDecimal getInvoiceAmount() {
+        return INVOICE_AMOUNT.toBigDecimal(invoiceAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getInvoiceAmount()
+     */
+    @JsonProperty("InvoiceAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getInvoiceAmountUnscaled() {
         return invoiceAmount;
     }
 
@@ -241,7 +266,8 @@ public class Invoice {
      */
     @JsonProperty("InvoiceAmount")
     public Invoice setInvoiceAmount(BigDecimal invoiceAmount) {
-        this.invoiceAmount = INVOICE_AMOUNT.validateAndNormalize(invoiceAmount);
+        checkNotFrozen();
+        this.invoiceAmount = INVOICE_AMOUNT.validateAndNormalizeUnscaled(invoiceAmount);
         return this;
     }
 
@@ -250,15 +276,26 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setInvoiceAmount(double invoiceAmount) {
-        this.invoiceAmount = INVOICE_AMOUNT.validateAndConvert(invoiceAmount);
+        checkNotFrozen();
+        this.invoiceAmount = INVOICE_AMOUNT.validateAndConvertUnscaled(invoiceAmount);
         return this;
     }
 
     /**
      * @see #setReturnsAmount(BigDecimal)
      */
-    @JsonProperty("ReturnsAmount")
+    @JsonIgnore
     public BigDecimal getReturnsAmount() {
+        return RETURNS_AMOUNT.toBigDecimal(returnsAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getReturnsAmount()
+     */
+    @JsonProperty("ReturnsAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getReturnsAmountUnscaled() {
         return returnsAmount;
     }
 
@@ -276,7 +313,8 @@ public class Invoice {
      */
     @JsonProperty("ReturnsAmount")
     public Invoice setReturnsAmount(BigDecimal returnsAmount) {
-        this.returnsAmount = RETURNS_AMOUNT.validateAndNormalize(returnsAmount);
+        checkNotFrozen();
+        this.returnsAmount = RETURNS_AMOUNT.validateAndNormalizeUnscaled(returnsAmount);
         return this;
     }
 
@@ -285,7 +323,8 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setReturnsAmount(double returnsAmount) {
-        this.returnsAmount = RETURNS_AMOUNT.validateAndConvert(returnsAmount);
+        checkNotFrozen();
+        this.returnsAmount = RETURNS_AMOUNT.validateAndConvertUnscaled(returnsAmount);
         return this;
     }
 
@@ -294,7 +333,8 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setReturnsAmount(Double returnsAmount) {
-        this.returnsAmount = RETURNS_AMOUNT.validateAndConvert(returnsAmount);
+        checkNotFrozen();
+        this.returnsAmount = RETURNS_AMOUNT.validateAndConvertUnscaled(returnsAmount);
         return this;
     }
 
@@ -302,8 +342,18 @@ public class Invoice {
     /**
      * @see #setPaymentAmount(BigDecimal)
      */
-    @JsonProperty("PaymentAmount")
+    @JsonIgnore
     public BigDecimal getPaymentAmount() {
+        return PAYMENT_AMOUNT.toBigDecimal(paymentAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getPaymentAmount()
+     */
+    @JsonProperty("PaymentAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getPaymentAmountUnscaled() {
         return paymentAmount;
     }
 
@@ -318,7 +368,8 @@ public class Invoice {
      */
     @JsonProperty("PaymentAmount")
     public Invoice setPaymentAmount(BigDecimal paymentAmount) {
-        this.paymentAmount = PAYMENT_AMOUNT.validateAndNormalize(paymentAmount);
+        checkNotFrozen();
+        this.paymentAmount = PAYMENT_AMOUNT.validateAndNormalizeUnscaled(paymentAmount);
         return this;
     }
 
@@ -327,7 +378,8 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setPaymentAmount(double paymentAmount) {
-        this.paymentAmount = PAYMENT_AMOUNT.validateAndConvert(paymentAmount);
+        checkNotFrozen();
+        this.paymentAmount = PAYMENT_AMOUNT.validateAndConvertUnscaled(paymentAmount);
         return this;
     }
 
@@ -337,6 +389,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice addTaxPerSeller(TaxPerSeller taxPerSeller) {
+        checkNotFrozen();
         if (taxPerSeller == null)
             throw new IllegalArgumentException("Null taxPerSeller");
 
@@ -361,6 +414,7 @@ public class Invoice {
      */
     @JsonProperty("TaxesPerSeller")
     public Invoice setTaxesPerSeller(List<TaxPerSeller> taxesPerSeller) {
+        checkNotFrozen();
         if (taxesPerSeller == null || taxesPerSeller.isEmpty())
             throw new IllegalArgumentException("Null or empty taxesPerSeller list");
 
@@ -368,6 +422,9 @@ public class Invoice {
             if (element == null)
                 throw new IllegalArgumentException("Null taxesPerSeller element");
 
+        if (taxesPerSeller == this.taxesPerSellerView)
+            return this;
+
         this.taxesPerSeller.clear();
         this.taxesPerSeller.addAll(taxesPerSeller);
 
@@ -383,11 +440,12 @@ public class Invoice {
     }
 
     /**
+     * Returns an unmodifiable view of the list (no copy is made).
      * @see #setTaxesPerSeller(List)
      */
     @JsonProperty("TaxesPerSeller")
     public List<TaxPerSeller> getTaxesPerSeller() {
-        return new ArrayList<>(taxesPerSeller);
+        return taxesPerSellerView;
     }
 
     /**
@@ -414,6 +472,7 @@ public class Invoice {
      */
     @JsonProperty("OperatorTaxNumber")
     public Invoice setOperatorTaxNumber(Integer operatorTaxNumber) {
+        checkNotFrozen();
         this.operatorTaxNumber = OPERATOR_TAX_NUMBER.validate(operatorTaxNumber);
         return this;
     }
@@ -423,6 +482,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice setOperatorTaxNumber(String operatorTaxNumber) {
+        checkNotFrozen();
         this.operatorTaxNumber = OPERATOR_TAX_NUMBER.validateAndConvert(operatorTaxNumber);
         return this;
     }
@@ -448,6 +508,7 @@ public class Invoice {
      */
     @JsonProperty("ForeignOperator")
     public Invoice setForeignOperator(Boolean foreignOperator) {
+        checkNotFrozen();
         this.foreignOperator = foreignOperator;
         return this;
     }
@@ -471,22 +532,27 @@ public class Invoice {
      */
     @JsonProperty("ProtectedID")
     public Invoice setProtectedId(String protectedId) {
+        checkNotFrozen();
         this.protectedId = PROTECTED_ID.validate(protectedId);
         return this;
     }
 
     @JsonIgnore
     public Invoice computeProtectedId(FursConfig config) {
+        checkNotFrozen();
         int taxNumber = requireNonNull(this.taxNumber, "Missing taxNumber");
         LocalDateTime issueDateTime = requireNonNull(this.issueDateTime, "Missing issueDateTime");
         InvoiceIdentifier id = requireNonNull(this.invoiceIdentifier, "Missing invoiceIdentifier");
         String invoiceNumber = requireNonNull(id.getInvoiceNumber(), "Missing invoiceNumber");
         String premiseId = requireNonNull(id.getBusinessPremiseId(), "Missing businessPremiseId");
         String deviceId = requireNonNull(id.getElectronicDeviceId(), "Missing electronicDeviceId");
-        BigDecimal amount = requireNonNull(this.invoiceAmount, "Missing invoiceAmount");
-        String amountString = amount.toPlainString();
+        if (this.invoiceAmount == NULL_UNSCALED)
+            throw new NullPointerException("Missing invoiceAmount");
 
-        String combined = taxNumber + Utils.formatDateTimeForZoi(issueDateTime) + invoiceNumber + premiseId + deviceId + amountString;
+        StringBuilder sb = new StringBuilder(100);
+        sb.append(taxNumber).append(Utils.formatDateTimeForZoi(issueDateTime)).append(invoiceNumber).append(premiseId).append(deviceId);
+        DecimalValidator.appendPlain(sb, this.invoiceAmount, INVOICE_AMOUNT.getScale());
+        String combined = sb.toString();
 
         byte[] signResult = computeRS256(combined.getBytes(UTF_8), config.getPrivateKey());
 
@@ -499,8 +565,8 @@ public class Invoice {
 
         byte[] digest = md5.digest(signResult);
 
-        String zoi = toHexString(digest);
-        return setProtectedId(zoi);
+        this.protectedId = toHexString(digest);
+        return this;
     }
 
 
@@ -526,6 +592,7 @@ public class Invoice {
      */
     @JsonProperty("SubsequentSubmit")
     public Invoice setSubsequentSubmit(Boolean subsequentSubmit) {
+        checkNotFrozen();
         this.subsequentSubmit = subsequentSubmit;
         return this;
     }
@@ -537,6 +604,7 @@ public class Invoice {
      */
     @JsonIgnore
     public Invoice addReferenceInvoice(ReferenceInvoice referenceInvoice) {
+        checkNotFrozen();
         if (referenceInvoice == null)
             throw new IllegalArgumentException("null referenceInvoice ");
 
@@ -564,6 +632,7 @@ public class Invoice {
      */
     @JsonProperty("ReferenceInvoice")
     public Invoice setReferenceInvoices(List<ReferenceInvoice> referenceInvoices) {
+        checkNotFrozen();
         if (referenceInvoices == null || referenceInvoices.isEmpty()) {
             this.referenceInvoices.clear();
             return this;
@@ -573,6 +642,9 @@ public class Invoice {
             if (element == null)
                 throw new IllegalArgumentException("Null referenceInvoices element");
 
+        if (referenceInvoices == this.referenceInvoicesView)
+            return this;
+
         this.referenceInvoices.clear();
         this.referenceInvoices.addAll(referenceInvoices);
 
@@ -588,11 +660,105 @@ public class Invoice {
     }
 
     /**
+     * Returns an unmodifiable view of the list (no copy is made).
      * @see #setReferenceInvoices(List)
      */
     @JsonProperty("ReferenceInvoice")
     public List<ReferenceInvoice> getReferenceInvoices() {
-        return new ArrayList<>(referenceInvoices);
+        return referenceInvoicesView;
+    }
+
+    /**
+     * Checks that all the data FURS requires is present, in this invoice and in its nested
+     * objects, and returns all the problems found (the values themselves are already checked
+     * by the setters). Use {@link ValidationErrors#throwIfAny()} to turn them into an exception.
+     */
+    @JsonIgnore
+    public ValidationErrors validate() {
+        ValidationErrors errors = new ValidationErrors();
+        validate(errors);
+        return errors;
+    }
+
+    /**
+     * Like {@link #validate()}, but adds the problems to an existing collector, which can be
+     * reused (after {@link ValidationErrors#clear()}) when validating many invoices.
+     * @return true if no problems were found
+     */
+    public boolean validate(ValidationErrors errors) {
+        int before = errors.size();
+
+        errors.checkRequired(taxNumber, "taxNumber");
+        errors.checkRequired(issueDateTime, "issueDateTime");
+        errors.checkRequired(numberingStructure, "numberingStructure");
+        if (errors.checkRequired(invoiceIdentifier, "invoiceIdentifier")) {
+            errors.push("invoiceIdentifier");
+            invoiceIdentifier.validate(errors);
+            errors.pop();
+        }
+        if (invoiceAmount == NULL_UNSCALED)
+            errors.add("invoiceAmount", "null invoiceAmount");
+        if (paymentAmount == NULL_UNSCALED)
+            errors.add("paymentAmount", "null paymentAmount");
+        if (taxesPerSeller.isEmpty())
+            errors.add("taxesPerSeller", "empty taxesPerSeller list");
+        for (int i = 0; i < taxesPerSeller.size(); i++) {
+            errors.push("taxesPerSeller", i);
+            taxesPerSeller.get(i).validate(errors);
+            errors.pop();
+        }
+        if (operatorTaxNumber == null && !Boolean.TRUE.equals(foreignOperator))
+            errors.add("operatorTaxNumber", "null operatorTaxNumber (required unless foreignOperator is true)");
+        for (int i = 0; i < referenceInvoices.size(); i++) {
+            errors.push("referenceInvoices", i);
+            referenceInvoices.get(i).validate(errors);
+            errors.pop();
+        }
+
+        return errors.size() == before;
+    }
+
+    /**
+     * Makes this invoice and everything it contains (identifiers, taxes per seller, VATs,
+     * reference invoices) immutable, so that it can be shared between threads and submitted
+     * without further copying. Any setter called afterwards, on the invoice or on any of its
+     * parts, throws an <tt>IllegalStateException</tt>. The protected ID must be computed
+     * before freezing, as it becomes immutable too.
+     * <p>
+     * Other threads see the frozen contents if the invoice is safely published to them
+     * (e.g. through a concurrent queue), or if they first see {@link #isFrozen()} return true.
+     * @return this, for fluent interface
+     * @throws IllegalStateException if the protected ID hasn't been set or computed yet
+     */
+    @JsonIgnore
+    public Invoice freeze() {
+        if (frozen)
+            return this;
+
+        if (protectedId == null)
+            throw new IllegalStateException("The protected ID must be computed before freezing the invoice");
+
+        taxesPerSeller.trimToSize();
+        referenceInvoices.trimToSize();
+        if (invoiceIdentifier != null)
+            invoiceIdentifier.freeze();
+        for (TaxPerSeller taxPerSeller : taxesPerSeller)
+            taxPerSeller.freeze();
+        for (ReferenceInvoice referenceInvoice : referenceInvoices)
+            referenceInvoice.freeze();
+
+        frozen = true;
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The invoice has been frozen");
     }
 
     private static final
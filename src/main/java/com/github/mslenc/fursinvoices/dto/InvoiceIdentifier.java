@@ -1,7 +1,9 @@
 package com.github.mslenc.fursinvoices.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.github.mslenc.fursinvoices.validation.StringValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
 
 import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.ANY;
 import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.ASCII_ALNUM;
@@ -11,6 +13,7 @@ public class InvoiceIdentifier {
     private String businessPremiseId = null;
     private String electronicDeviceId = null;
     private String invoiceNumber = null;
+    private volatile boolean frozen;
 
     public InvoiceIdentifier() {
 
@@ -42,6 +45,7 @@ public class InvoiceIdentifier {
      */
     @JsonProperty("BusinessPremiseID")
     public InvoiceIdentifier setBusinessPremiseId(String businessPremiseID) {
+        checkNotFrozen();
         this.businessPremiseId = BUSINESS_PREMISE_ID.validate(businessPremiseID);
         return this;
     }
@@ -63,6 +67,7 @@ public class InvoiceIdentifier {
      */
     @JsonProperty("ElectronicDeviceID")
     public InvoiceIdentifier setElectronicDeviceId(String electronicDeviceID) {
+        checkNotFrozen();
         this.electronicDeviceId = ELECTRONIC_DEVICE_ID.validate(electronicDeviceID);
         return this;
     }
@@ -84,10 +89,41 @@ public class InvoiceIdentifier {
      */
     @JsonProperty("InvoiceNumber")
     public InvoiceIdentifier setInvoiceNumber(String invoiceNumber) {
+        checkNotFrozen();
         this.invoiceNumber = INVOICE_NUMBER.validate(invoiceNumber);
         return this;
     }
 
+    /**
+     * Adds a problem to <tt>errors</tt> for each missing part.
+     */
+    public void validate(ValidationErrors errors) {
+        errors.checkRequired(businessPremiseId, "businessPremiseId");
+        errors.checkRequired(electronicDeviceId, "electronicDeviceId");
+        errors.checkRequired(invoiceNumber, "invoiceNumber");
+    }
+
+    /**
+     * Makes this object immutable; any setter called afterwards throws an <tt>IllegalStateException</tt>.
+     * @see Invoice#freeze()
+     * @return this, for fluent interface
+     */
+    @JsonIgnore
+    public InvoiceIdentifier freeze() {
+        frozen = true;
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The invoiceIdentifier has been frozen");
+    }
+
     static final
     StringValidator BUSINESS_PREMISE_ID = new StringValidator("businessPremiseId", 1, 20, ASCII_ALNUM, NO_NULLS);
 
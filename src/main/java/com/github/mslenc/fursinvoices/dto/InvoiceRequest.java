@@ -5,9 +5,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 public class InvoiceRequest {
     private FursHeader header;
     private Invoice invoice;
+    private SalesBookInvoice salesBookInvoice;
 
     public InvoiceRequest() {
-        this(new FursHeader(), null);
+        this(new FursHeader(), (Invoice) null);
     }
 
     public InvoiceRequest(FursHeader header, Invoice invoice) {
@@ -15,6 +16,11 @@ public class InvoiceRequest {
         this.invoice = invoice;
     }
 
+    public InvoiceRequest(FursHeader header, SalesBookInvoice salesBookInvoice) {
+        this.header = header;
+        this.salesBookInvoice = salesBookInvoice;
+    }
+
     @JsonProperty("Header")
     public FursHeader getHeader() {
         return header;
@@ -34,4 +40,17 @@ public class InvoiceRequest {
     public void setInvoice(Invoice invoice) {
         this.invoice = invoice;
     }
+
+    /**
+     * The invoice issued from a sales book, which is sent instead of {@link #getInvoice()}.
+     */
+    @JsonProperty("SalesBookInvoice")
+    public SalesBookInvoice getSalesBookInvoice() {
+        return salesBookInvoice;
+    }
+
+    @JsonProperty("SalesBookInvoice")
+    public void setSalesBookInvoice(SalesBookInvoice salesBookInvoice) {
+        this.salesBookInvoice = salesBookInvoice;
+    }
 }
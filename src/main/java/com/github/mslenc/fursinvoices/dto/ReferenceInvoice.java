@@ -3,6 +3,7 @@ package com.github.mslenc.fursinvoices.dto;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.github.mslenc.fursinvoices.validation.DateTimeValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -10,6 +11,7 @@ import java.time.LocalDateTime;
 public class ReferenceInvoice {
     private LocalDateTime referenceInvoiceIssueDateTime;
     private InvoiceIdentifier referenceInvoiceIdentifier;
+    private volatile boolean frozen;
 
     /**
      * @see #setReferenceInvoiceIssueDateTime(LocalDateTime)
@@ -31,6 +33,7 @@ public class ReferenceInvoice {
      */
     @JsonProperty("ReferenceInvoiceIssueDateTime")
     public ReferenceInvoice setReferenceInvoiceIssueDateTime(LocalDateTime referenceInvoiceIssueDateTime) {
+        checkNotFrozen();
         this.referenceInvoiceIssueDateTime = REF_INV_ISSUE_DT.validate(referenceInvoiceIssueDateTime);
         return this;
     }
@@ -40,6 +43,7 @@ public class ReferenceInvoice {
      */
     @JsonIgnore
     public ReferenceInvoice setReferenceInvoiceIssueDateTime(Instant referenceInvoiceIssueDateTime) {
+        checkNotFrozen();
         this.referenceInvoiceIssueDateTime = REF_INV_ISSUE_DT.validateAndConvert(referenceInvoiceIssueDateTime);
         return this;
     }
@@ -71,6 +75,7 @@ public class ReferenceInvoice {
      */
     @JsonProperty("ReferenceInvoiceIdentifier")
     public ReferenceInvoice setReferenceInvoiceIdentifier(InvoiceIdentifier referenceInvoiceIdentifier) {
+        checkNotFrozen();
         if (referenceInvoiceIdentifier == null)
             throw new IllegalArgumentException("null referenceInvoiceIdentifier");
 
@@ -78,6 +83,41 @@ public class ReferenceInvoice {
         return this;
     }
 
+    /**
+     * Adds a problem to <tt>errors</tt> for each missing value.
+     */
+    public void validate(ValidationErrors errors) {
+        errors.checkRequired(referenceInvoiceIssueDateTime, "referenceInvoiceIssueDateTime");
+        if (errors.checkRequired(referenceInvoiceIdentifier, "referenceInvoiceIdentifier")) {
+            errors.push("referenceInvoiceIdentifier");
+            referenceInvoiceIdentifier.validate(errors);
+            errors.pop();
+        }
+    }
+
+    /**
+     * Makes this object immutable; any setter called afterwards throws an <tt>IllegalStateException</tt>.
+     * @see Invoice#freeze()
+     * @return this, for fluent interface
+     */
+    @JsonIgnore
+    public ReferenceInvoice freeze() {
+        if (referenceInvoiceIdentifier != null)
+            referenceInvoiceIdentifier.freeze();
+        frozen = true;
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The referenceInvoice has been frozen");
+    }
+
     private static final
     DateTimeValidator REF_INV_ISSUE_DT = new DateTimeValidator("referenceInvoiceIssueDateTime");
 }
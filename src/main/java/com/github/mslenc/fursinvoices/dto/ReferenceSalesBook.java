@@ -0,0 +1,76 @@
+package com.github.mslenc.fursinvoices.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
+
+import java.time.LocalDate;
+
+public class ReferenceSalesBook {
+    private SalesBookIdentifier referenceSalesBookIdentifier;
+    private LocalDate referenceSalesBookIssueDate;
+
+    public ReferenceSalesBook() {
+
+    }
+
+    public ReferenceSalesBook(SalesBookIdentifier referenceSalesBookIdentifier, LocalDate referenceSalesBookIssueDate) {
+        setReferenceSalesBookIdentifier(referenceSalesBookIdentifier);
+        setReferenceSalesBookIssueDate(referenceSalesBookIssueDate);
+    }
+
+    /**
+     * @see #setReferenceSalesBookIdentifier(SalesBookIdentifier)
+     */
+    @JsonProperty("ReferenceSalesBookIdentifier")
+    public SalesBookIdentifier getReferenceSalesBookIdentifier() {
+        return referenceSalesBookIdentifier;
+    }
+
+    /**
+     * The sales book identifier of the invoice being modified.
+     * @param referenceSalesBookIdentifier the new value (may not be null)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("ReferenceSalesBookIdentifier")
+    public ReferenceSalesBook setReferenceSalesBookIdentifier(SalesBookIdentifier referenceSalesBookIdentifier) {
+        if (referenceSalesBookIdentifier == null)
+            throw new IllegalArgumentException("null referenceSalesBookIdentifier");
+
+        this.referenceSalesBookIdentifier = referenceSalesBookIdentifier;
+        return this;
+    }
+
+    /**
+     * @see #setReferenceSalesBookIssueDate(LocalDate)
+     */
+    @JsonProperty("ReferenceSalesBookIssueDate")
+    public LocalDate getReferenceSalesBookIssueDate() {
+        return referenceSalesBookIssueDate;
+    }
+
+    /**
+     * The date the invoice being modified was issued on.
+     * @param referenceSalesBookIssueDate the new value (may not be null)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("ReferenceSalesBookIssueDate")
+    public ReferenceSalesBook setReferenceSalesBookIssueDate(LocalDate referenceSalesBookIssueDate) {
+        if (referenceSalesBookIssueDate == null)
+            throw new IllegalArgumentException("null referenceSalesBookIssueDate");
+
+        this.referenceSalesBookIssueDate = referenceSalesBookIssueDate;
+        return this;
+    }
+
+    /**
+     * Adds a problem to <tt>errors</tt> for each missing value.
+     */
+    public void validate(ValidationErrors errors) {
+        errors.checkRequired(referenceSalesBookIssueDate, "referenceSalesBookIssueDate");
+        if (errors.checkRequired(referenceSalesBookIdentifier, "referenceSalesBookIdentifier")) {
+            errors.push("referenceSalesBookIdentifier");
+            referenceSalesBookIdentifier.validate(errors);
+            errors.pop();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.mslenc.fursinvoices.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.github.mslenc.fursinvoices.validation.StringValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
 
 import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.ANY;
 import static com.github.mslenc.fursinvoices.validation.StringValidator.NullEmptyMode.NO_NULLS;
@@ -20,30 +22,45 @@ public class SalesBookIdentifier {
         setSerialNumber(serialNumber);
     }
 
+    @JsonProperty("InvoiceNumber")
     public String getInvoiceNumber() {
         return invoiceNumber;
     }
 
+    @JsonProperty("InvoiceNumber")
     public void setInvoiceNumber(String invoiceNumber) {
         this.invoiceNumber = INVOICE_NUMBER.validate(invoiceNumber);
     }
 
+    @JsonProperty("SetNumber")
     public String getSetNumber() {
         return setNumber;
     }
 
+    @JsonProperty("SetNumber")
     public void setSetNumber(String setNumber) {
         this.setNumber = SET_NUMBER.validate(setNumber);
     }
 
+    @JsonProperty("SerialNumber")
     public String getSerialNumber() {
         return serialNumber;
     }
 
+    @JsonProperty("SerialNumber")
     public void setSerialNumber(String serialNumber) {
         this.serialNumber = SERIAL_NUMBER.validate(serialNumber);
     }
 
+    /**
+     * Adds a problem to <tt>errors</tt> for each missing part.
+     */
+    public void validate(ValidationErrors errors) {
+        errors.checkRequired(invoiceNumber, "invoiceNumber");
+        errors.checkRequired(setNumber, "setNumber");
+        errors.checkRequired(serialNumber, "serialNumber");
+    }
+
     private static final
     StringValidator INVOICE_NUMBER = new StringValidator("invoiceNumber", 1, 20, ANY, NO_NULLS);
 
@@ -0,0 +1,403 @@
+package com.github.mslenc.fursinvoices.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.github.mslenc.fursinvoices.validation.AmountValidator;
+import com.github.mslenc.fursinvoices.validation.TaxNumberValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZeroMode.NO_NULLS;
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZeroMode.ZERO_TO_NULL;
+
+/**
+ * Data about an invoice issued from a pre-numbered sales book (on paper), e.g. while the
+ * electronic device was out of order. Such invoices are submitted later, with the same
+ * tax data as an {@link Invoice}, but identified by the sales book instead of the device
+ * and without a protected ID.
+ * FURS says:
+ * <blockquote>
+ *     Data are entered about the invoice, which is issued from the book of
+ *     issued invoices (sales book).
+ * </blockquote>
+ */
+public class SalesBookInvoice {
+    private Integer taxNumber;
+    private LocalDate issueDate;
+    private SalesBookIdentifier salesBookIdentifier;
+    private String businessPremiseId;
+    private long invoiceAmount = NULL_UNSCALED;
+    private long returnsAmount = NULL_UNSCALED;
+    private long paymentAmount = NULL_UNSCALED;
+    private final ArrayList<TaxPerSeller> taxesPerSeller = new ArrayList<>();
+    private final List<TaxPerSeller> taxesPerSellerView = Collections.unmodifiableList(taxesPerSeller);
+    private final ArrayList<ReferenceSalesBook> referenceSalesBooks = new ArrayList<>();
+    private final List<ReferenceSalesBook> referenceSalesBooksView = Collections.unmodifiableList(referenceSalesBooks);
+
+    /**
+     * @see #setTaxNumber(Integer)
+     */
+    @JsonProperty("TaxNumber")
+    public Integer getTaxNumber() {
+        return taxNumber;
+    }
+
+    /**
+     * The tax number of the issuer of the invoice.
+     * @param taxNumber the new value (not null, must be exactly 8 digits)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("TaxNumber")
+    public SalesBookInvoice setTaxNumber(Integer taxNumber) {
+        this.taxNumber = TAX_NUMBER.validate(taxNumber);
+        return this;
+    }
+
+    /**
+     * @see #setTaxNumber(Integer)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setTaxNumber(String taxNumber) {
+        this.taxNumber = TAX_NUMBER.validateAndConvert(taxNumber);
+        return this;
+    }
+
+    /**
+     * @see #setIssueDate(LocalDate)
+     */
+    @JsonProperty("IssueDate")
+    public LocalDate getIssueDate() {
+        return issueDate;
+    }
+
+    /**
+     * The date the invoice was issued on.
+     * FURS says:
+     * <blockquote>
+     *     The date of issuing the invoice from the sales book is entered.
+     * </blockquote>
+     * @param issueDate the new value (not null)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("IssueDate")
+    public SalesBookInvoice setIssueDate(LocalDate issueDate) {
+        if (issueDate == null)
+            throw new IllegalArgumentException("null issueDate");
+
+        this.issueDate = issueDate;
+        return this;
+    }
+
+    /**
+     * @see #setSalesBookIdentifier(SalesBookIdentifier)
+     */
+    @JsonProperty("SalesBookIdentifier")
+    public SalesBookIdentifier getSalesBookIdentifier() {
+        return salesBookIdentifier;
+    }
+
+    /**
+     * The identifier of the invoice in the sales book.
+     * @param salesBookIdentifier the new value (not null)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("SalesBookIdentifier")
+    public SalesBookInvoice setSalesBookIdentifier(SalesBookIdentifier salesBookIdentifier) {
+        if (salesBookIdentifier == null)
+            throw new IllegalArgumentException("null salesBookIdentifier");
+
+        this.salesBookIdentifier = salesBookIdentifier;
+        return this;
+    }
+
+    /**
+     * @see #setBusinessPremiseId(String)
+     */
+    @JsonProperty("BusinessPremiseID")
+    public String getBusinessPremiseId() {
+        return businessPremiseId;
+    }
+
+    /**
+     * The identifier of the business premise where the invoice was issued.
+     * @param businessPremiseId the new value (not null, 0-9, a-z, A-Z)
+     * @return this, for fluent interface
+     * @see InvoiceIdentifier#setBusinessPremiseId(String)
+     */
+    @JsonProperty("BusinessPremiseID")
+    public SalesBookInvoice setBusinessPremiseId(String businessPremiseId) {
+        this.businessPremiseId = InvoiceIdentifier.BUSINESS_PREMISE_ID.validate(businessPremiseId);
+        return this;
+    }
+
+    /**
+     * @see #setInvoiceAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public BigDecimal getInvoiceAmount() {
+        return INVOICE_AMOUNT.toBigDecimal(invoiceAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getInvoiceAmount()
+     */
+    @JsonProperty("InvoiceAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getInvoiceAmountUnscaled() {
+        return invoiceAmount;
+    }
+
+    /**
+     * The value of the invoice.
+     * @param invoiceAmount the new amount (not null)
+     * @return this, for fluent interface
+     * @see Invoice#setInvoiceAmount(BigDecimal)
+     */
+    @JsonProperty("InvoiceAmount")
+    public SalesBookInvoice setInvoiceAmount(BigDecimal invoiceAmount) {
+        this.invoiceAmount = INVOICE_AMOUNT.validateAndNormalizeUnscaled(invoiceAmount);
+        return this;
+    }
+
+    /**
+     * @see #setInvoiceAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setInvoiceAmount(double invoiceAmount) {
+        this.invoiceAmount = INVOICE_AMOUNT.validateAndConvertUnscaled(invoiceAmount);
+        return this;
+    }
+
+    /**
+     * @see #setReturnsAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public BigDecimal getReturnsAmount() {
+        return RETURNS_AMOUNT.toBigDecimal(returnsAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getReturnsAmount()
+     */
+    @JsonProperty("ReturnsAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getReturnsAmountUnscaled() {
+        return returnsAmount;
+    }
+
+    /**
+     * The amount of refunds, if any.
+     * @param returnsAmount the new amount (null or zero for none)
+     * @return this, for fluent interface
+     * @see Invoice#setReturnsAmount(BigDecimal)
+     */
+    @JsonProperty("ReturnsAmount")
+    public SalesBookInvoice setReturnsAmount(BigDecimal returnsAmount) {
+        this.returnsAmount = RETURNS_AMOUNT.validateAndNormalizeUnscaled(returnsAmount);
+        return this;
+    }
+
+    /**
+     * @see #setReturnsAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setReturnsAmount(double returnsAmount) {
+        this.returnsAmount = RETURNS_AMOUNT.validateAndConvertUnscaled(returnsAmount);
+        return this;
+    }
+
+    /**
+     * @see #setPaymentAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public BigDecimal getPaymentAmount() {
+        return PAYMENT_AMOUNT.toBigDecimal(paymentAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getPaymentAmount()
+     */
+    @JsonProperty("PaymentAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getPaymentAmountUnscaled() {
+        return paymentAmount;
+    }
+
+    /**
+     * The amount to be paid.
+     * @param paymentAmount the new amount (not null)
+     * @return this, for fluent interface
+     * @see Invoice#setPaymentAmount(BigDecimal)
+     */
+    @JsonProperty("PaymentAmount")
+    public SalesBookInvoice setPaymentAmount(BigDecimal paymentAmount) {
+        this.paymentAmount = PAYMENT_AMOUNT.validateAndNormalizeUnscaled(paymentAmount);
+        return this;
+    }
+
+    /**
+     * @see #setPaymentAmount(BigDecimal)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setPaymentAmount(double paymentAmount) {
+        this.paymentAmount = PAYMENT_AMOUNT.validateAndConvertUnscaled(paymentAmount);
+        return this;
+    }
+
+    /**
+     * A list of tax information, with one entry per different taxpayer.
+     * @param taxesPerSeller the new list of taxes (must not be null or empty; replaces previous info, if any)
+     * @return this, for fluent interface
+     * @see Invoice#setTaxesPerSeller(List)
+     */
+    @JsonProperty("TaxesPerSeller")
+    public SalesBookInvoice setTaxesPerSeller(List<TaxPerSeller> taxesPerSeller) {
+        if (taxesPerSeller == null || taxesPerSeller.isEmpty())
+            throw new IllegalArgumentException("Null or empty taxesPerSeller list");
+
+        for (TaxPerSeller element : taxesPerSeller)
+            if (element == null)
+                throw new IllegalArgumentException("Null taxesPerSeller element");
+
+        if (taxesPerSeller == this.taxesPerSellerView)
+            return this;
+
+        this.taxesPerSeller.clear();
+        this.taxesPerSeller.addAll(taxesPerSeller);
+
+        return this;
+    }
+
+    /**
+     * @see #setTaxesPerSeller(List)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setTaxesPerSeller(TaxPerSeller... taxesPerSeller) {
+        return setTaxesPerSeller(Arrays.asList(taxesPerSeller));
+    }
+
+    /**
+     * Adds a single entry.
+     * @see #setTaxesPerSeller(List)
+     */
+    @JsonIgnore
+    public SalesBookInvoice addTaxPerSeller(TaxPerSeller taxPerSeller) {
+        if (taxPerSeller == null)
+            throw new IllegalArgumentException("Null taxPerSeller");
+
+        this.taxesPerSeller.add(taxPerSeller);
+        return this;
+    }
+
+    /**
+     * Returns an unmodifiable view of the list (no copy is made).
+     * @see #setTaxesPerSeller(List)
+     */
+    @JsonProperty("TaxesPerSeller")
+    public List<TaxPerSeller> getTaxesPerSeller() {
+        return taxesPerSellerView;
+    }
+
+    /**
+     * The sales book invoices being modified by this one, if any.
+     * @param referenceSalesBooks the new list (may be null or empty; replaces previous ones, if any)
+     * @return this, for fluent interface
+     */
+    @JsonProperty("ReferenceSalesBook")
+    public SalesBookInvoice setReferenceSalesBooks(List<ReferenceSalesBook> referenceSalesBooks) {
+        if (referenceSalesBooks == null || referenceSalesBooks.isEmpty()) {
+            this.referenceSalesBooks.clear();
+            return this;
+        }
+
+        for (ReferenceSalesBook element : referenceSalesBooks)
+            if (element == null)
+                throw new IllegalArgumentException("Null referenceSalesBooks element");
+
+        if (referenceSalesBooks == this.referenceSalesBooksView)
+            return this;
+
+        this.referenceSalesBooks.clear();
+        this.referenceSalesBooks.addAll(referenceSalesBooks);
+
+        return this;
+    }
+
+    /**
+     * @see #setReferenceSalesBooks(List)
+     */
+    @JsonIgnore
+    public SalesBookInvoice setReferenceSalesBooks(ReferenceSalesBook... referenceSalesBooks) {
+        return setReferenceSalesBooks(Arrays.asList(referenceSalesBooks));
+    }
+
+    /**
+     * Returns an unmodifiable view of the list (no copy is made).
+     * @see #setReferenceSalesBooks(List)
+     */
+    @JsonProperty("ReferenceSalesBook")
+    public List<ReferenceSalesBook> getReferenceSalesBooks() {
+        return referenceSalesBooksView;
+    }
+
+    /**
+     * Checks that all the data FURS requires is present and returns all the problems found.
+     * @see Invoice#validate()
+     */
+    @JsonIgnore
+    public ValidationErrors validate() {
+        ValidationErrors errors = new ValidationErrors();
+        validate(errors);
+        return errors;
+    }
+
+    /**
+     * @see Invoice#validate(ValidationErrors)
+     * @return true if no problems were found
+     */
+    public boolean validate(ValidationErrors errors) {
+        int before = errors.size();
+
+        errors.checkRequired(taxNumber, "taxNumber");
+        errors.checkRequired(issueDate, "issueDate");
+        errors.checkRequired(businessPremiseId, "businessPremiseId");
+        if (errors.checkRequired(salesBookIdentifier, "salesBookIdentifier")) {
+            errors.push("salesBookIdentifier");
+            salesBookIdentifier.validate(errors);
+            errors.pop();
+        }
+        if (invoiceAmount == NULL_UNSCALED)
+            errors.add("invoiceAmount", "null invoiceAmount");
+        if (paymentAmount == NULL_UNSCALED)
+            errors.add("paymentAmount", "null paymentAmount");
+        if (taxesPerSeller.isEmpty())
+            errors.add("taxesPerSeller", "empty taxesPerSeller list");
+        for (int i = 0; i < referenceSalesBooks.size(); i++) {
+            errors.push("referenceSalesBooks", i);
+            referenceSalesBooks.get(i).validate(errors);
+            errors.pop();
+        }
+
+        return errors.size() == before;
+    }
+
+    private static final
+    TaxNumberValidator TAX_NUMBER = new TaxNumberValidator("taxNumber", false);
+
+    private static final
+    AmountValidator INVOICE_AMOUNT = new AmountValidator("invoiceAmount", NO_NULLS);
+
+    private static final
+    AmountValidator PAYMENT_AMOUNT = new AmountValidator("paymentAmount", NO_NULLS);
+
+    private static final
+    AmountValidator RETURNS_AMOUNT = new AmountValidator("returnsAmount", ZERO_TO_NULL);
+}
@@ -2,14 +2,18 @@ package com.github.mslenc.fursinvoices.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.mslenc.fursinvoices.validation.AmountValidator;
 import com.github.mslenc.fursinvoices.validation.TaxNumberValidator;
+import com.github.mslenc.fursinvoices.validation.ValidationErrors;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
 import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZeroMode.ZERO_TO_NULL;
 
 /**
@@ -17,13 +21,15 @@ import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZer
  */
 public class TaxPerSeller {
     private Integer sellerTaxNumber = null;
-    private ArrayList<VAT> vats = new ArrayList<>();
+    private final ArrayList<VAT> vats = new ArrayList<>();
+    private final List<VAT> vatsView = Collections.unmodifiableList(vats);
     private FlatRateCompensation flatRateCompensation = null;
-    private BigDecimal otherTaxesAmount = null;
-    private BigDecimal exemptVatTaxableAmount = null;
-    private BigDecimal reverseVatTaxableAmount = null;
-    private BigDecimal nonTaxableAmount = null;
-    private BigDecimal specialTaxRulesAmount = null;
+    private long otherTaxesAmount = NULL_UNSCALED;
+    private long exemptVatTaxableAmount = NULL_UNSCALED;
+    private long reverseVatTaxableAmount = NULL_UNSCALED;
+    private long nonTaxableAmount = NULL_UNSCALED;
+    private long specialTaxRulesAmount = NULL_UNSCALED;
+    private volatile boolean frozen;
 
     /**
      * @see #setSellerTaxNumber(String)
@@ -49,6 +55,7 @@ public class TaxPerSeller {
      */
     @JsonProperty("SellerTaxNumber")
     public TaxPerSeller setSellerTaxNumber(Integer sellerTaxNumber) {
+        checkNotFrozen();
         this.sellerTaxNumber = SELLER_TAX_NUMBER.validate(sellerTaxNumber);
         return this;
     }
@@ -58,6 +65,7 @@ public class TaxPerSeller {
      */
     @JsonIgnore
     public TaxPerSeller setSellerTaxNumber(String sellerTaxNumber) {
+        checkNotFrozen();
         this.sellerTaxNumber = SELLER_TAX_NUMBER.validateAndConvert(sellerTaxNumber);
         return this;
     }
@@ -68,6 +76,7 @@ public class TaxPerSeller {
      */
     @JsonIgnore
     public TaxPerSeller addVat(VAT vat) {
+        checkNotFrozen();
         if (vat == null)
             throw new IllegalArgumentException("Null vat");
 
@@ -90,6 +99,7 @@ public class TaxPerSeller {
      */
     @JsonProperty("VAT")
     public TaxPerSeller setVats(List<VAT> vats) {
+        checkNotFrozen();
         if (vats == null)
             throw new IllegalArgumentException("Null VAT list");
 
@@ -97,6 +107,9 @@ public class TaxPerSeller {
             if (element == null)
                 throw new IllegalArgumentException("Null VAT element");
 
+        if (vats == this.vatsView)
+            return this;
+
         this.vats.clear();
         this.vats.addAll(vats);
 
@@ -112,11 +125,12 @@ public class TaxPerSeller {
     }
 
     /**
+     * Returns an unmodifiable view of the list (no copy is made).
      * @see #setVats(List)
      */
     @JsonProperty("VAT")
     public List<VAT> getVats() {
-        return new ArrayList<>(vats);
+        return vatsView;
     }
 
 
@@ -143,130 +157,235 @@ public class TaxPerSeller {
      */
     @JsonProperty("FlatRateCompensation")
     public TaxPerSeller setFlatRateCompensation(FlatRateCompensation flatRateCompensation) {
+        checkNotFrozen();
         this.flatRateCompensation = flatRateCompensation;
         return this;
     }
 
 
-    @JsonProperty("OtherTaxesAmount")
+    @JsonIgnore
     public BigDecimal getOtherTaxesAmount() {
+        return OTHER_TAXES_AMOUNT.toBigDecimal(otherTaxesAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getOtherTaxesAmount()
+     */
+    @JsonProperty("OtherTaxesAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getOtherTaxesAmountUnscaled() {
         return otherTaxesAmount;
     }
 
     @JsonProperty("OtherTaxesAmount")
     public TaxPerSeller setOtherTaxesAmount(BigDecimal otherTaxesAmount) {
-        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndNormalize(otherTaxesAmount);
+        checkNotFrozen();
+        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndNormalizeUnscaled(otherTaxesAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setOtherTaxesAmount(double otherTaxesAmount) {
-        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndConvert(otherTaxesAmount);
+        checkNotFrozen();
+        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndConvertUnscaled(otherTaxesAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setOtherTaxesAmount(Double otherTaxesAmount) {
-        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndConvert(otherTaxesAmount);
+        checkNotFrozen();
+        this.otherTaxesAmount = OTHER_TAXES_AMOUNT.validateAndConvertUnscaled(otherTaxesAmount);
         return this;
     }
 
 
-    @JsonProperty("ExemptVATTaxableAmount")
+    @JsonIgnore
     public BigDecimal getExemptVATTaxableAmount() {
+        return EXEMPT_VAT_TAXABLE_AMOUNT.toBigDecimal(exemptVatTaxableAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getExemptVATTaxableAmount()
+     */
+    @JsonProperty("ExemptVATTaxableAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getExemptVATTaxableAmountUnscaled() {
         return exemptVatTaxableAmount;
     }
 
     @JsonProperty("ExemptVATTaxableAmount")
     public TaxPerSeller setExemptVATTaxableAmount(BigDecimal exemptVatTaxableAmount) {
-        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndNormalize(exemptVatTaxableAmount);
+        checkNotFrozen();
+        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndNormalizeUnscaled(exemptVatTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setExemptVATTaxableAmount(double exemptVatTaxableAmount) {
-        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndConvert(exemptVatTaxableAmount);
+        checkNotFrozen();
+        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndConvertUnscaled(exemptVatTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setExemptVATTaxableAmount(Double exemptVatTaxableAmount) {
-        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndConvert(exemptVatTaxableAmount);
+        checkNotFrozen();
+        this.exemptVatTaxableAmount = EXEMPT_VAT_TAXABLE_AMOUNT.validateAndConvertUnscaled(exemptVatTaxableAmount);
         return this;
     }
 
 
-    @JsonProperty("ReverseVATTaxableAmount")
+    @JsonIgnore
     public BigDecimal getReverseVatTaxableAmount() {
+        return REVERSE_VAT_TAXABLE_AMOUNT.toBigDecimal(reverseVatTaxableAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getReverseVatTaxableAmount()
+     */
+    @JsonProperty("ReverseVATTaxableAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getReverseVatTaxableAmountUnscaled() {
         return reverseVatTaxableAmount;
     }
 
     @JsonProperty("ReverseVATTaxableAmount")
     public TaxPerSeller setReverseVatTaxableAmount(BigDecimal reverseVatTaxableAmount) {
-        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndNormalize(reverseVatTaxableAmount);
+        checkNotFrozen();
+        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndNormalizeUnscaled(reverseVatTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setReverseVatTaxableAmount(double reverseVatTaxableAmount) {
-        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndConvert(reverseVatTaxableAmount);
+        checkNotFrozen();
+        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndConvertUnscaled(reverseVatTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setReverseVatTaxableAmount(Double reverseVatTaxableAmount) {
-        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndConvert(reverseVatTaxableAmount);
+        checkNotFrozen();
+        this.reverseVatTaxableAmount = REVERSE_VAT_TAXABLE_AMOUNT.validateAndConvertUnscaled(reverseVatTaxableAmount);
         return this;
     }
 
 
-    @JsonProperty("NontaxableAmount")
+    @JsonIgnore
     public BigDecimal getNonTaxableAmount() {
+        return NON_TAXABLE_AMOUNT.toBigDecimal(nonTaxableAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getNonTaxableAmount()
+     */
+    @JsonProperty("NontaxableAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getNonTaxableAmountUnscaled() {
         return nonTaxableAmount;
     }
 
     @JsonProperty("NontaxableAmount")
     public TaxPerSeller setNonTaxableAmount(BigDecimal nonTaxableAmount) {
-        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndNormalize(nonTaxableAmount);
+        checkNotFrozen();
+        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndNormalizeUnscaled(nonTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setNonTaxableAmount(double nonTaxableAmount) {
-        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndConvert(nonTaxableAmount);
+        checkNotFrozen();
+        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndConvertUnscaled(nonTaxableAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setNonTaxableAmount(Double nonTaxableAmount) {
-        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndConvert(nonTaxableAmount);
+        checkNotFrozen();
+        this.nonTaxableAmount = NON_TAXABLE_AMOUNT.validateAndConvertUnscaled(nonTaxableAmount);
         return this;
     }
 
 
-    @JsonProperty("SpecialTaxRulesAmount")
+    @JsonIgnore
     public BigDecimal getSpecialTaxRulesAmount() {
+        return SPECIAL_TAX_RULES_AMOUNT.toBigDecimal(specialTaxRulesAmount);
+    }
+
+    /**
+     * @return the value in hundredths, or NULL_UNSCALED if not set
+     * @see #getSpecialTaxRulesAmount()
+     */
+    @JsonProperty("SpecialTaxRulesAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getSpecialTaxRulesAmountUnscaled() {
         return specialTaxRulesAmount;
     }
 
     @JsonProperty("SpecialTaxRulesAmount")
     public TaxPerSeller setSpecialTaxRulesAmount(BigDecimal specialTaxRulesAmount) {
-        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndNormalize(specialTaxRulesAmount);
+        checkNotFrozen();
+        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndNormalizeUnscaled(specialTaxRulesAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setSpecialTaxRulesAmount(double specialTaxRulesAmount) {
-        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndConvert(specialTaxRulesAmount);
+        checkNotFrozen();
+        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndConvertUnscaled(specialTaxRulesAmount);
         return this;
     }
 
     @JsonIgnore
     public TaxPerSeller setSpecialTaxRulesAmount(Double specialTaxRulesAmount) {
-        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndConvert(specialTaxRulesAmount);
+        checkNotFrozen();
+        this.specialTaxRulesAmount = SPECIAL_TAX_RULES_AMOUNT.validateAndConvertUnscaled(specialTaxRulesAmount);
+        return this;
+    }
+
+    /**
+     * Adds a problem to <tt>errors</tt> if this contains no data at all (no VAT, flat-rate
+     * compensation or other amount). The setters already reject bad values, so that is the
+     * only thing left to check.
+     */
+    public void validate(ValidationErrors errors) {
+        if (vats.isEmpty() && flatRateCompensation == null &&
+            otherTaxesAmount == NULL_UNSCALED && exemptVatTaxableAmount == NULL_UNSCALED &&
+            reverseVatTaxableAmount == NULL_UNSCALED && nonTaxableAmount == NULL_UNSCALED &&
+            specialTaxRulesAmount == NULL_UNSCALED)
+            errors.add("vats", "no VAT, flat-rate compensation or other amounts");
+    }
+
+    /**
+     * Makes this object immutable; any setter called afterwards throws an <tt>IllegalStateException</tt>.
+     * @see Invoice#freeze()
+     * @return this, for fluent interface
+     */
+    @JsonIgnore
+    public TaxPerSeller freeze() {
+        vats.trimToSize();
+        for (VAT vat : vats)
+            vat.freeze();
+        if (flatRateCompensation != null)
+            flatRateCompensation.freeze();
+        frozen = true;
         return this;
     }
 
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The taxPerSeller has been frozen");
+    }
+
     private static final
     TaxNumberValidator SELLER_TAX_NUMBER = new TaxNumberValidator("sellerTaxNumber", true);
 
@@ -0,0 +1,55 @@
+package com.github.mslenc.fursinvoices.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.github.mslenc.fursinvoices.validation.DecimalValidator;
+
+import java.io.IOException;
+
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
+
+/**
+ * Writes amounts and rates stored in hundredths (see the <tt>...Unscaled()</tt> getters)
+ * directly as JSON numbers with two decimals, the same as their BigDecimal form would be
+ * written, but without creating a BigDecimal and its string for each value. NULL_UNSCALED
+ * counts as empty, so such values are left out like nulls are.
+ */
+class UnscaledDecimalSerializer extends StdSerializer<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private static final int SCALE = 2;
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    UnscaledDecimalSerializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, Long value) {
+        return value == null || value == NULL_UNSCALED;
+    }
+
+    @Override
+    public void serialize(Long value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (value == NULL_UNSCALED) {
+            gen.writeNull();
+            return;
+        }
+
+        Buffer buffer = buffers.get();
+        buffer.text.setLength(0);
+        DecimalValidator.appendPlain(buffer.text, value, SCALE);
+
+        int length = buffer.text.length();
+        buffer.text.getChars(0, length, buffer.chars, 0);
+        gen.writeRawValue(buffer.chars, 0, length);
+    }
+
+    private static class Buffer {
+        // at most a sign, 19 digits and a decimal point
+        final StringBuilder text = new StringBuilder(24);
+        final char[] chars = new char[24];
+    }
+}
@@ -2,6 +2,7 @@ package com.github.mslenc.fursinvoices.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.github.mslenc.fursinvoices.validation.AmountValidator;
 import com.github.mslenc.fursinvoices.validation.TaxRateValidator;
 
@@ -13,17 +14,18 @@ import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NullZer
  * Describes a VAT-taxed amount with a single tax rate (and single taxpayer).
  */
 public class VAT {
-    private BigDecimal taxRate;
-    private BigDecimal taxableAmount;
-    private BigDecimal taxAmount;
+    private long taxRate;
+    private long taxableAmount;
+    private long taxAmount;
+    private volatile boolean frozen;
 
     /**
      * Creates a VAT object with all three values initialized to 0.
      */
     public VAT() {
-        taxRate = TAX_RATE.getNormalizedZero();
-        taxableAmount = TAXABLE_AMOUNT.getNormalizedZero();
-        taxAmount = TAX_AMOUNT.getNormalizedZero();
+        taxRate = 0;
+        taxableAmount = 0;
+        taxAmount = 0;
     }
 
     /**
@@ -47,8 +49,18 @@ public class VAT {
     /**
      * @see #setTaxRate(BigDecimal)
      */
-    @JsonProperty("TaxRate")
+    @JsonIgnore
     public BigDecimal getTaxRate() {
+        return TAX_RATE.toBigDecimal(taxRate);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getTaxRate()
+     */
+    @JsonProperty("TaxRate")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getTaxRateUnscaled() {
         return taxRate;
     }
 
@@ -63,7 +75,8 @@ public class VAT {
      */
     @JsonProperty("TaxRate")
     public VAT setTaxRate(BigDecimal taxRate) {
-        this.taxRate = TAX_RATE.validateAndNormalize(taxRate);
+        checkNotFrozen();
+        this.taxRate = TAX_RATE.validateAndNormalizeUnscaled(taxRate);
         return this;
     }
 
@@ -72,7 +85,8 @@ public class VAT {
      */
     @JsonIgnore
     public VAT setTaxRate(double taxRate) {
-        this.taxRate = TAX_RATE.validateAndConvert(taxRate);
+        checkNotFrozen();
+        this.taxRate = TAX_RATE.validateAndConvertUnscaled(taxRate);
         return this;
     }
 
@@ -80,8 +94,18 @@ public class VAT {
     /**
      * @see #setTaxableAmount(BigDecimal)
      */
-    @JsonProperty("TaxableAmount")
+    @JsonIgnore
     public BigDecimal getTaxableAmount() {
+        return TAXABLE_AMOUNT.toBigDecimal(taxableAmount);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getTaxableAmount()
+     */
+    @JsonProperty("TaxableAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getTaxableAmountUnscaled() {
         return taxableAmount;
     }
 
@@ -96,7 +120,8 @@ public class VAT {
      */
     @JsonProperty("TaxableAmount")
     public VAT setTaxableAmount(BigDecimal taxableAmount) {
-        this.taxableAmount = TAXABLE_AMOUNT.validateAndNormalize(taxableAmount);
+        checkNotFrozen();
+        this.taxableAmount = TAXABLE_AMOUNT.validateAndNormalizeUnscaled(taxableAmount);
         return this;
     }
 
@@ -105,15 +130,26 @@ public class VAT {
      */
     @JsonIgnore
     public VAT setTaxableAmount(double taxableAmount) {
-        this.taxableAmount = TAXABLE_AMOUNT.validateAndConvert(taxableAmount);
+        checkNotFrozen();
+        this.taxableAmount = TAXABLE_AMOUNT.validateAndConvertUnscaled(taxableAmount);
         return this;
     }
 
     /**
      * @see #setTaxAmount(BigDecimal)
      */
-    @JsonProperty("TaxAmount")
+    @JsonIgnore
     public BigDecimal getTaxAmount() {
+        return TAX_AMOUNT.toBigDecimal(taxAmount);
+    }
+
+    /**
+     * @return the value in hundredths
+     * @see #getTaxAmount()
+     */
+    @JsonProperty("TaxAmount")
+    @JsonSerialize(using = UnscaledDecimalSerializer.class)
+    public long getTaxAmountUnscaled() {
         return taxAmount;
     }
 
@@ -128,7 +164,8 @@ public class VAT {
      */
     @JsonProperty("TaxAmount")
     public VAT setTaxAmount(BigDecimal taxAmount) {
-        this.taxAmount = TAX_AMOUNT.validateAndNormalize(taxAmount);
+        checkNotFrozen();
+        this.taxAmount = TAX_AMOUNT.validateAndNormalizeUnscaled(taxAmount);
         return this;
     }
 
@@ -137,10 +174,32 @@ public class VAT {
      */
     @JsonIgnore
     public VAT setTaxAmount(double taxAmount) {
-        this.taxAmount = TAX_AMOUNT.validateAndConvert(taxAmount);
+        checkNotFrozen();
+        this.taxAmount = TAX_AMOUNT.validateAndConvertUnscaled(taxAmount);
+        return this;
+    }
+
+
+    /**
+     * Makes this object immutable; any setter called afterwards throws an <tt>IllegalStateException</tt>.
+     * @see Invoice#freeze()
+     * @return this, for fluent interface
+     */
+    @JsonIgnore
+    public VAT freeze() {
+        frozen = true;
         return this;
     }
 
+    @JsonIgnore
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("The VAT has been frozen");
+    }
 
     private static final
     TaxRateValidator TAX_RATE = new TaxRateValidator("taxRate", NO_NULLS);
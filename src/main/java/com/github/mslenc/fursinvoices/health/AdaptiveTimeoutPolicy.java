@@ -0,0 +1,162 @@
+package com.github.mslenc.fursinvoices.health;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TimeoutPolicy} derived from the round-trip times observed by a {@link LatencyTracker}
+ * (e.g. one fed by an {@link EndpointProber}): the timeout is a high percentile of the round-trip
+ * time times a safety factor, and the hedge delay (if hedging is enabled) is a lower percentile,
+ * both clamped to configured limits. Until there are enough observations, the default timeout
+ * is used and there is no hedging.
+ * <p>
+ * With an {@link EndpointProber}, the round-trip times are those of echo calls, so the hedge
+ * delay follows the echo latency, which is also what it applies to (other calls aren't hedged,
+ * see {@link TimeoutPolicy#getHedgeDelayMillis()}). The timeout applies to all calls, and the
+ * safety factor should leave room for signed calls, which take longer than echo.
+ * <p>
+ * The values are recomputed at most once per second, so the policy is cheap to consult on every call.
+ */
+public class AdaptiveTimeoutPolicy implements TimeoutPolicy {
+    private static final long RECOMPUTE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyTracker tracker;
+    private volatile double timeoutPercentile = 0.99;
+    private volatile double timeoutFactor = 3;
+    private volatile long minTimeoutMillis = 1000;
+    private volatile long maxTimeoutMillis = 30_000;
+    private volatile long defaultTimeoutMillis = 10_000;
+    private volatile double hedgePercentile = 0.95;
+    private volatile long minHedgeDelayMillis = 50;
+    private volatile boolean hedging;
+    private volatile int minSamples = 20;
+
+    private volatile Computed computed;
+
+    public AdaptiveTimeoutPolicy(LatencyTracker tracker) {
+        if (tracker == null)
+            throw new IllegalArgumentException("null tracker");
+
+        this.tracker = tracker;
+    }
+
+    public LatencyTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * Sets the timeout to <tt>factor</tt> times the given percentile of round-trip times (default 3 times the 99th).
+     * @return this, for fluent interface
+     */
+    public AdaptiveTimeoutPolicy setTimeout(double percentile, double factor) {
+        checkPercentile(percentile);
+        if (!(factor >= 1))
+            throw new IllegalArgumentException("factor (" + factor + ") must be at least 1");
+
+        this.timeoutPercentile = percentile;
+        this.timeoutFactor = factor;
+        this.computed = null;
+        return this;
+    }
+
+    /**
+     * Sets the limits of the timeout (default between 1 and 30 seconds), and the timeout used
+     * until there are enough observations (default 10 seconds).
+     * @return this, for fluent interface
+     */
+    public AdaptiveTimeoutPolicy setTimeoutLimits(long minMillis, long maxMillis, long defaultMillis) {
+        if (minMillis < 1 || maxMillis < minMillis || defaultMillis < minMillis || defaultMillis > maxMillis)
+            throw new IllegalArgumentException("The limits must satisfy 1 <= min <= default <= max");
+
+        this.minTimeoutMillis = minMillis;
+        this.maxTimeoutMillis = maxMillis;
+        this.defaultTimeoutMillis = defaultMillis;
+        this.computed = null;
+        return this;
+    }
+
+    /**
+     * Enables hedging after the given percentile of round-trip times (but not sooner than
+     * <tt>minDelayMillis</tt>). By default, there is no hedging.
+     * @return this, for fluent interface
+     */
+    public AdaptiveTimeoutPolicy setHedging(double percentile, long minDelayMillis) {
+        checkPercentile(percentile);
+        if (minDelayMillis < 1)
+            throw new IllegalArgumentException("minDelayMillis (" + minDelayMillis + ") must be at least 1");
+
+        this.hedgePercentile = percentile;
+        this.minHedgeDelayMillis = minDelayMillis;
+        this.hedging = true;
+        this.computed = null;
+        return this;
+    }
+
+    /**
+     * Sets the number of successful observations needed before the timeouts adapt (default 20).
+     * @return this, for fluent interface
+     */
+    public AdaptiveTimeoutPolicy setMinSamples(int minSamples) {
+        if (minSamples < 1)
+            throw new IllegalArgumentException("minSamples (" + minSamples + ") must be at least 1");
+
+        this.minSamples = minSamples;
+        this.computed = null;
+        return this;
+    }
+
+    @Override
+    public long getTimeoutMillis() {
+        return current().timeoutMillis;
+    }
+
+    @Override
+    public long getHedgeDelayMillis() {
+        return current().hedgeDelayMillis;
+    }
+
+    private Computed current() {
+        Computed result = computed;
+        long now = System.nanoTime();
+        if (result != null && now - result.computedAt < RECOMPUTE_NANOS)
+            return result;
+
+        long timeoutMillis = defaultTimeoutMillis;
+        long hedgeDelayMillis = 0;
+        if (tracker.getSuccessCount() >= minSamples) {
+            long rtt = TimeUnit.NANOSECONDS.toMillis(tracker.getPercentileNanos(timeoutPercentile));
+            timeoutMillis = clamp((long) Math.ceil(rtt * timeoutFactor), minTimeoutMillis, maxTimeoutMillis);
+
+            if (hedging) {
+                long hedgeRtt = TimeUnit.NANOSECONDS.toMillis(tracker.getPercentileNanos(hedgePercentile));
+                hedgeDelayMillis = Math.max(hedgeRtt, minHedgeDelayMillis);
+                if (hedgeDelayMillis >= timeoutMillis)
+                    hedgeDelayMillis = 0; // it would never be used
+            }
+        }
+
+        result = new Computed(now, timeoutMillis, hedgeDelayMillis);
+        computed = result;
+        return result;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static void checkPercentile(double percentile) {
+        if (!(percentile > 0 && percentile <= 1))
+            throw new IllegalArgumentException("percentile (" + percentile + ") must be above 0 and at most 1");
+    }
+
+    private static class Computed {
+        final long computedAt;
+        final long timeoutMillis;
+        final long hedgeDelayMillis;
+
+        Computed(long computedAt, long timeoutMillis, long hedgeDelayMillis) {
+            this.computedAt = computedAt;
+            this.timeoutMillis = timeoutMillis;
+            this.hedgeDelayMillis = hedgeDelayMillis;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.mslenc.fursinvoices.health;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A snapshot of the health of an endpoint, as observed by an {@link EndpointProber}.
+ */
+public class EndpointHealth {
+    private final String name;
+    private final long successes;
+    private final long failures;
+    private final double successRatio;
+    private final Duration p50;
+    private final Duration p95;
+    private final Duration p99;
+    private final double score;
+    private final Instant lastProbeAt;
+    private final String lastError;
+
+    public EndpointHealth(String name, long successes, long failures, double successRatio, Duration p50, Duration p95, Duration p99,
+                          double score, Instant lastProbeAt, String lastError) {
+        this.name = name;
+        this.successes = successes;
+        this.failures = failures;
+        this.successRatio = successRatio;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.score = score;
+        this.lastProbeAt = lastProbeAt;
+        this.lastError = lastError;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The number of successful probes in the window.
+     */
+    public long getSuccesses() {
+        return successes;
+    }
+
+    /**
+     * The number of failed probes in the window.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    public double getSuccessRatio() {
+        return successRatio;
+    }
+
+    /**
+     * The median round-trip time in the window, or null if no probe succeeded.
+     */
+    public Duration getP50() {
+        return p50;
+    }
+
+    public Duration getP95() {
+        return p95;
+    }
+
+    public Duration getP99() {
+        return p99;
+    }
+
+    /**
+     * The health score, between 0 (down or unknown) and 1 (all probes succeed, fast enough):
+     * the success ratio, reduced in proportion when the 95th percentile of the round-trip time
+     * exceeds the prober's target latency.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * When the last probe completed, or null if none has yet.
+     */
+    public Instant getLastProbeAt() {
+        return lastProbeAt;
+    }
+
+    /**
+     * The error of the last probe, or null if it succeeded.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": score " + String.format("%.2f", score) + ", " + successes + " ok, " + failures + " failed" +
+               (p50 != null ? ", p50 " + p50.toMillis() + " ms, p99 " + p99.toMillis() + " ms" : "") +
+               (lastError != null ? ", last error: " + lastError : "");
+    }
+}
@@ -0,0 +1,303 @@
+package com.github.mslenc.fursinvoices.health;
+
+import com.github.mslenc.fursinvoices.FursClientAsync;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically calls {@link FursClientAsync#echo(String)} on each registered endpoint (e.g. a
+ * client per {@link com.github.mslenc.fursinvoices.FursEnv}), keeping a rolling histogram of
+ * round-trip times and the share of successful probes for each. From these, it offers a health
+ * score ({@link #getHealth(String)}) and an {@link AdaptiveTimeoutPolicy} per endpoint, which
+ * can be given to the clients with {@link com.github.mslenc.fursinvoices.FursClientOptions#setTimeoutPolicy(TimeoutPolicy)}.
+ * <p>
+ * Echo calls aren't signed, so the round-trip times mostly measure the network and FURS's front
+ * end; the default timeout factor of the policies leaves room for the signing and processing
+ * of real requests.
+ */
+public class EndpointProber implements AutoCloseable {
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+    private final LinkedHashMap<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final AtomicLong nextProbe = new AtomicLong();
+    private long intervalMillis = TimeUnit.SECONDS.toMillis(10);
+    private long probeTimeoutMillis = TimeUnit.SECONDS.toMillis(5);
+    private long targetLatencyMillis = 500;
+    private ScheduledFuture<?> task;
+
+    public EndpointProber() {
+        this(Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "furs-prober");
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * @param scheduler the scheduler to run probes and timeouts on; it is not shut down by {@link #close()}
+     */
+    public EndpointProber(ScheduledExecutorService scheduler) {
+        this(scheduler, false);
+    }
+
+    private EndpointProber(ScheduledExecutorService scheduler, boolean ownScheduler) {
+        if (scheduler == null)
+            throw new IllegalArgumentException("null scheduler");
+
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+    }
+
+    /**
+     * Sets the time between probes of each endpoint (default 10 seconds). Takes effect on {@link #start()}.
+     * @return this, for fluent interface
+     */
+    public EndpointProber setInterval(long interval, TimeUnit unit) {
+        long millis = unit.toMillis(interval);
+        if (millis < 1)
+            throw new IllegalArgumentException("interval must be at least 1 millisecond");
+
+        this.intervalMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets the time after which a probe counts as failed (default 5 seconds).
+     * @return this, for fluent interface
+     */
+    public EndpointProber setProbeTimeout(long timeout, TimeUnit unit) {
+        long millis = unit.toMillis(timeout);
+        if (millis < 1)
+            throw new IllegalArgumentException("timeout must be at least 1 millisecond");
+
+        this.probeTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * Sets the 95th percentile of round-trip times above which the health score starts to
+     * decrease (default 500 ms).
+     * @return this, for fluent interface
+     */
+    public EndpointProber setTargetLatency(long targetLatency, TimeUnit unit) {
+        long millis = unit.toMillis(targetLatency);
+        if (millis < 1)
+            throw new IllegalArgumentException("targetLatency must be at least 1 millisecond");
+
+        this.targetLatencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Adds an endpoint to probe, with a tracker of the default window (5 minutes).
+     * @return this, for fluent interface
+     */
+    public EndpointProber addEndpoint(String name, FursClientAsync client) {
+        return addEndpoint(name, client, new LatencyTracker());
+    }
+
+    /**
+     * Adds an endpoint to probe, recording the probes into the given tracker.
+     * @return this, for fluent interface
+     */
+    public EndpointProber addEndpoint(String name, FursClientAsync client, LatencyTracker tracker) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+
+        if (client == null)
+            throw new IllegalArgumentException("null client");
+
+        if (tracker == null)
+            throw new IllegalArgumentException("null tracker");
+
+        synchronized (endpoints) {
+            if (endpoints.containsKey(name))
+                throw new IllegalArgumentException("There already is an endpoint named " + name);
+
+            endpoints.put(name, new Endpoint(name, client, tracker));
+        }
+        return this;
+    }
+
+    /**
+     * Starts probing all endpoints periodically, starting right away.
+     * @return this, for fluent interface
+     */
+    public synchronized EndpointProber start() {
+        if (task != null)
+            throw new IllegalStateException("Already started");
+
+        task = scheduler.scheduleWithFixedDelay(this::probeAll, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Probes all endpoints once, independently of the periodic probes.
+     *
+     * @return a future that completes when all the probes have completed (it never fails)
+     */
+    public CompletableFuture<Void> probeAll() {
+        List<Endpoint> endpoints = snapshot();
+        CompletableFuture<?>[] probes = new CompletableFuture<?>[endpoints.size()];
+        for (int i = 0; i < probes.length; i++)
+            probes[i] = probe(endpoints.get(i));
+        return CompletableFuture.allOf(probes);
+    }
+
+    private CompletableFuture<Void> probe(Endpoint endpoint) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicBoolean recorded = new AtomicBoolean();
+        String message = "probe-" + nextProbe.incrementAndGet();
+        long start = System.nanoTime();
+
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (recorded.compareAndSet(false, true)) {
+                endpoint.failed(new SocketTimeoutException("No echo within " + probeTimeoutMillis + " ms"));
+                done.complete(null);
+            }
+        }, probeTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<String> echo;
+        try {
+            echo = endpoint.client.echo(message);
+            if (echo == null)
+                throw new NullPointerException("null future returned from client");
+        } catch (Throwable t) {
+            echo = new CompletableFuture<>();
+            echo.completeExceptionally(t);
+        }
+
+        echo.whenComplete((response, error) -> {
+            if (!recorded.compareAndSet(false, true))
+                return;
+
+            timeout.cancel(false);
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+
+            if (error == null && !message.equals(response))
+                error = new IllegalStateException("Echo returned \"" + response + "\" instead of \"" + message + "\"");
+
+            if (error != null) {
+                endpoint.failed(error);
+            } else {
+                endpoint.succeeded(System.nanoTime() - start);
+            }
+            done.complete(null);
+        });
+
+        return done;
+    }
+
+    private List<Endpoint> snapshot() {
+        synchronized (endpoints) {
+            return new ArrayList<>(endpoints.values());
+        }
+    }
+
+    private Endpoint get(String name) {
+        synchronized (endpoints) {
+            Endpoint endpoint = endpoints.get(name);
+            if (endpoint == null)
+                throw new IllegalArgumentException("There is no endpoint named " + name);
+            return endpoint;
+        }
+    }
+
+    public LatencyTracker getTracker(String name) {
+        return get(name).tracker;
+    }
+
+    /**
+     * Returns the timeout policy based on the probes of an endpoint. The same policy is
+     * returned each time, so it can be configured once and then shared by the clients.
+     */
+    public AdaptiveTimeoutPolicy getTimeoutPolicy(String name) {
+        return get(name).timeoutPolicy;
+    }
+
+    public EndpointHealth getHealth(String name) {
+        return get(name).health(targetLatencyMillis);
+    }
+
+    public List<EndpointHealth> getAllHealth() {
+        ArrayList<EndpointHealth> result = new ArrayList<>();
+        for (Endpoint endpoint : snapshot())
+            result.add(endpoint.health(targetLatencyMillis));
+        return result;
+    }
+
+    /**
+     * Stops the periodic probes (and shuts down the scheduler, if the prober created it).
+     */
+    @Override
+    public synchronized void close() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+
+        if (ownScheduler)
+            scheduler.shutdownNow();
+    }
+
+    private static class Endpoint {
+        final String name;
+        final FursClientAsync client;
+        final LatencyTracker tracker;
+        final AdaptiveTimeoutPolicy timeoutPolicy;
+        volatile Instant lastProbeAt;
+        volatile String lastError;
+
+        Endpoint(String name, FursClientAsync client, LatencyTracker tracker) {
+            this.name = name;
+            this.client = client;
+            this.tracker = tracker;
+            this.timeoutPolicy = new AdaptiveTimeoutPolicy(tracker);
+        }
+
+        void succeeded(long nanos) {
+            tracker.recordSuccess(nanos);
+            lastError = null;
+            lastProbeAt = Instant.now();
+        }
+
+        void failed(Throwable error) {
+            tracker.recordFailure();
+            lastError = error.getMessage() != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : error.getClass().getSimpleName();
+            lastProbeAt = Instant.now();
+        }
+
+        EndpointHealth health(long targetLatencyMillis) {
+            long p50 = tracker.getPercentileNanos(0.5);
+            long p95 = tracker.getPercentileNanos(0.95);
+            long p99 = tracker.getPercentileNanos(0.99);
+            double successRatio = tracker.getSuccessRatio();
+
+            double score = successRatio;
+            long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+            if (p95 > targetNanos)
+                score *= (double) targetNanos / p95;
+
+            return new EndpointHealth(name, tracker.getSuccessCount(), tracker.getFailureCount(), successRatio,
+                                      duration(p50), duration(p95), duration(p99), score, lastProbeAt, lastError);
+        }
+
+        private static Duration duration(long nanos) {
+            return nanos >= 0 ? Duration.ofNanos(nanos) : null;
+        }
+    }
+}
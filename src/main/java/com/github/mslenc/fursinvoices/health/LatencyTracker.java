@@ -0,0 +1,161 @@
+package com.github.mslenc.fursinvoices.health;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a rolling histogram of round-trip times, along with counts of successes and failures,
+ * over a sliding window (5 minutes by default). The window is divided into slots, and the
+ * oldest slot is dropped as time moves on, so old observations stop affecting the results.
+ * <p>
+ * Times are counted in logarithmic buckets, four per power of two of microseconds, so
+ * percentiles are accurate to within 25%, which is plenty for choosing timeouts.
+ * Percentiles are reported as the upper bound of their bucket, i.e. they err on the high side.
+ */
+public class LatencyTracker {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final long slotNanos;
+    private final Slot[] slots;
+    private long currentSlotStart;
+    private int current;
+
+    public LatencyTracker() {
+        this(5, TimeUnit.MINUTES, 10);
+    }
+
+    /**
+     * @param window the length of the window
+     * @param unit the unit of <tt>window</tt>
+     * @param numSlots the number of slots the window is divided into
+     */
+    public LatencyTracker(long window, TimeUnit unit, int numSlots) {
+        if (numSlots < 1)
+            throw new IllegalArgumentException("numSlots (" + numSlots + ") must be at least 1");
+
+        long windowNanos = unit.toNanos(window);
+        if (windowNanos < numSlots)
+            throw new IllegalArgumentException("The window is too short");
+
+        this.slotNanos = windowNanos / numSlots;
+        this.slots = new Slot[numSlots];
+        for (int i = 0; i < numSlots; i++)
+            slots[i] = new Slot();
+        this.currentSlotStart = System.nanoTime();
+    }
+
+    /**
+     * Records a successful round trip.
+     */
+    public synchronized void recordSuccess(long nanos) {
+        Slot slot = advance();
+        slot.counts[bucketOf(nanos)]++;
+        slot.successes++;
+    }
+
+    /**
+     * Records a failed round trip (its time isn't counted in the histogram).
+     */
+    public synchronized void recordFailure() {
+        advance().failures++;
+    }
+
+    /**
+     * Returns the given percentile (between 0 and 1) of successful round-trip times in the
+     * window, in nanoseconds, or -1 if there were none.
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        if (!(percentile >= 0 && percentile <= 1))
+            throw new IllegalArgumentException("percentile (" + percentile + ") must be between 0 and 1");
+
+        advance();
+        long total = 0;
+        for (Slot slot : slots)
+            total += slot.successes;
+        if (total == 0)
+            return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            for (Slot slot : slots)
+                seen += slot.counts[bucket];
+            if (seen >= rank)
+                return TimeUnit.MICROSECONDS.toNanos(upperBoundMicros(bucket));
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBoundMicros(BUCKETS - 1));
+    }
+
+    public synchronized long getSuccessCount() {
+        advance();
+        long total = 0;
+        for (Slot slot : slots)
+            total += slot.successes;
+        return total;
+    }
+
+    public synchronized long getFailureCount() {
+        advance();
+        long total = 0;
+        for (Slot slot : slots)
+            total += slot.failures;
+        return total;
+    }
+
+    /**
+     * The share of round trips in the window that succeeded, or 0 if there were none.
+     */
+    public synchronized double getSuccessRatio() {
+        long successes = getSuccessCount();
+        long total = successes + getFailureCount();
+        return total > 0 ? (double) successes / total : 0;
+    }
+
+    // called with the lock held; clears the slots that have fallen out of the window
+    private Slot advance() {
+        long now = System.nanoTime();
+        long elapsedSlots = (now - currentSlotStart) / slotNanos;
+        if (elapsedSlots > 0) {
+            int toClear = (int) Math.min(elapsedSlots, slots.length);
+            for (int i = 1; i <= toClear; i++)
+                slots[(current + i) % slots.length].clear();
+
+            current = (int) ((current + elapsedSlots) % slots.length);
+            currentSlotStart += elapsedSlots * slotNanos;
+        }
+        return slots[current];
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        if (micros < SUB_BUCKETS)
+            return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+    }
+
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket + 1;
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    private static class Slot {
+        final long[] counts = new long[BUCKETS];
+        long successes;
+        long failures;
+
+        void clear() {
+            Arrays.fill(counts, 0);
+            successes = 0;
+            failures = 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.mslenc.fursinvoices.health;
+
+/**
+ * Decides the timeouts of calls to FURS, consulted by the clients at the start of each call
+ * (see {@link com.github.mslenc.fursinvoices.FursClientOptions#setTimeoutPolicy(TimeoutPolicy)}).
+ */
+public interface TimeoutPolicy {
+    /**
+     * The time after which a request is abandoned, in milliseconds, or 0 for no timeout.
+     */
+    long getTimeoutMillis();
+
+    /**
+     * The time after which the asynchronous client sends the same echo request again, if there
+     * is no response yet, using whichever response arrives first; 0 means no hedging. Only echo
+     * calls are hedged: a duplicate invoice or premise registration could be recorded twice by
+     * FURS, so those calls just wait for the timeout.
+     */
+    default long getHedgeDelayMillis() {
+        return 0;
+    }
+
+    static TimeoutPolicy fixed(long timeoutMillis, long hedgeDelayMillis) {
+        if (timeoutMillis < 0)
+            throw new IllegalArgumentException("timeoutMillis (" + timeoutMillis + ") must not be negative");
+
+        if (hedgeDelayMillis < 0)
+            throw new IllegalArgumentException("hedgeDelayMillis (" + hedgeDelayMillis + ") must not be negative");
+
+        return new TimeoutPolicy() {
+            @Override
+            public long getTimeoutMillis() {
+                return timeoutMillis;
+            }
+
+            @Override
+            public long getHedgeDelayMillis() {
+                return hedgeDelayMillis;
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.mslenc.fursinvoices.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A response body held in a (possibly pooled) buffer. The clients read the body and then
+ * call {@link #release()} exactly once, after which the buffer is not touched again, so
+ * implementations can return it to their pool.
+ */
+public interface HttpBody {
+    /**
+     * The body, between the buffer's position and limit. The clients don't modify the
+     * buffer's contents, but may move its position.
+     */
+    ByteBuffer getBuffer();
+
+    /**
+     * Called when the body is no longer needed.
+     */
+    void release();
+
+    /**
+     * Wraps a byte array, without copying it. Releasing does nothing.
+     */
+    static HttpBody of(byte[] bytes) {
+        if (bytes == null)
+            throw new IllegalArgumentException("null bytes");
+
+        return of(ByteBuffer.wrap(bytes), null);
+    }
+
+    /**
+     * Wraps a buffer, without copying it. When released, <tt>onRelease</tt> is run, if not null.
+     */
+    static HttpBody of(ByteBuffer buffer, Runnable onRelease) {
+        if (buffer == null)
+            throw new IllegalArgumentException("null buffer");
+
+        return new HttpBody() {
+            @Override
+            public ByteBuffer getBuffer() {
+                return buffer;
+            }
+
+            @Override
+            public void release() {
+                if (onRelease != null)
+                    onRelease.run();
+            }
+        };
+    }
+}
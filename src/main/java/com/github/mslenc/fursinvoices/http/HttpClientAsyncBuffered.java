@@ -0,0 +1,34 @@
+package com.github.mslenc.fursinvoices.http;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A variant of {@link HttpClientAsync} for transports that work with buffers (e.g. Netty
+ * or Vert.x), so that the response doesn't need to be copied into a byte array. The request
+ * body is available with {@link HttpRequest#getContentBuffer()}.
+ */
+public interface HttpClientAsyncBuffered {
+    /**
+     * Should execute the request, as described in {@link HttpClientAsync#execute(HttpRequest)},
+     * returning the response body. The body will be released by the caller.
+     *
+     * @param request the request to be made
+     * @return the future that will receive the response body (or an error)
+     */
+    CompletableFuture<HttpBody> execute(HttpRequest request);
+
+    /**
+     * Adapts a {@link HttpClientAsync}, wrapping the byte arrays it returns.
+     */
+    static HttpClientAsyncBuffered of(HttpClientAsync httpClient) {
+        if (httpClient == null)
+            throw new IllegalArgumentException("null httpClient");
+
+        return request -> {
+            CompletableFuture<byte[]> future = httpClient.execute(request);
+            if (future == null)
+                throw new NullPointerException("null future returned from httpClient");
+            return future.thenApply(HttpBody::of);
+        };
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mslenc.fursinvoices.http;
+
+import java.io.IOException;
+
+/**
+ * A variant of {@link HttpClient} for transports that work with buffers, so that the
+ * response doesn't need to be copied into a byte array. The request body is available
+ * with {@link HttpRequest#getContentBuffer()}.
+ */
+public interface HttpClientBuffered {
+    /**
+     * Should execute the request, as described in {@link HttpClient#execute(HttpRequest)},
+     * returning the response body. The body will be released by the caller.
+     *
+     * @param request the request to be made
+     * @return the response body
+     * @throws IOException if an error occurs
+     */
+    HttpBody execute(HttpRequest request) throws IOException;
+
+    /**
+     * Adapts a {@link HttpClient}, wrapping the byte arrays it returns.
+     */
+    static HttpClientBuffered of(HttpClient httpClient) {
+        if (httpClient == null)
+            throw new IllegalArgumentException("null httpClient");
+
+        return request -> HttpBody.of(httpClient.execute(request));
+    }
+}
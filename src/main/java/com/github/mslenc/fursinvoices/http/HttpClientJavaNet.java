@@ -40,6 +40,12 @@ public class HttpClientJavaNet implements HttpClient {
 
         conn.setRequestMethod(request.getMethod());
 
+        if (request.getTimeoutMillis() > 0) {
+            int timeout = (int) Math.min(Integer.MAX_VALUE, request.getTimeoutMillis());
+            conn.setConnectTimeout(timeout);
+            conn.setReadTimeout(timeout);
+        }
+
         conn.setDoInput(true);
 
         if (request.getContent() != null) {
@@ -66,7 +72,7 @@ public class HttpClientJavaNet implements HttpClient {
         }
 
         try (InputStream inputStream = conn.getInputStream()) {
-            return readFully(inputStream);
+            return readFully(inputStream, conn.getContentLength());
         }
     }
 }
@@ -2,6 +2,7 @@ package com.github.mslenc.fursinvoices.http;
 
 import javax.net.ssl.SSLContext;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -13,13 +14,19 @@ public class HttpRequest {
     private final SSLContext sslContext;
     private final Map<String, String> headers;
     private final byte[] content;
+    private final long timeoutMillis;
 
     public HttpRequest(URL url, String method, SSLContext sslContext, Map<String, String> headers, byte[] content) {
+        this(url, method, sslContext, headers, content, 0);
+    }
+
+    public HttpRequest(URL url, String method, SSLContext sslContext, Map<String, String> headers, byte[] content, long timeoutMillis) {
         this.url = url;
         this.method = method;
         this.sslContext = sslContext;
         this.headers = headers;
         this.content = content;
+        this.timeoutMillis = timeoutMillis;
     }
 
     /**
@@ -56,4 +63,28 @@ public class HttpRequest {
     public byte[] getContent() {
         return content;
     }
+
+    /**
+     * The body of the request, as a read-only buffer that shares the content (which is not
+     * copied). Each call returns a new buffer, positioned at the start.
+     */
+    public ByteBuffer getContentBuffer() {
+        return content != null ? ByteBuffer.wrap(content).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * The length of the body of the request, or 0 if there is none.
+     */
+    public int getContentLength() {
+        return content != null ? content.length : 0;
+    }
+
+    /**
+     * The time after which the request should be abandoned, in milliseconds, or 0 if there is
+     * no limit. HTTP clients should apply it as their connect and read timeouts (or as the
+     * timeout of the whole request).
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
 }
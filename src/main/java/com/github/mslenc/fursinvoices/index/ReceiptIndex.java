@@ -0,0 +1,724 @@
+package com.github.mslenc.fursinvoices.index;
+
+import com.github.mslenc.fursinvoices.dto.InvoiceIdentifier;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+import static org.bouncycastle.util.encoders.Hex.toHexString;
+
+/**
+ * An embedded, append-only index of fiscalised invoices, stored in a directory of
+ * memory-mapped segment files. It can be used to look up the unique invoice ID (EOR)
+ * of an invoice by its identifier or by its protected ID (ZOI), e.g. for reprints,
+ * and to list the invoices of a single electronic device in a time range, e.g. for audits.
+ * <p>
+ * Lookups are served from in-memory hash tables that point into the mapped segments,
+ * so they take constant time. Recording an invoice again (with the same identifier)
+ * replaces the previous record; the space taken by replaced records is reclaimed by
+ * {@link #compact()}, which can also be scheduled to run in the background; it copies the
+ * live records without blocking lookups or recording, and only briefly excludes them while
+ * switching over to the copies.
+ * <p>
+ * Invoice identifiers are only unique per taxpayer, so a separate index must be used
+ * for each tax number; a record with a different tax number than the ones already in the
+ * index is rejected. All methods are thread-safe.
+ */
+public class ReceiptIndex implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 8 << 20;
+
+    private static final String SEGMENT_PREFIX = "receipts-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_HEADER_SIZE = 8; // length + crc
+    private static final int MAX_RECORD_SIZE = 512;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicInteger nextSegmentId = new AtomicInteger(1);
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final HashMap<String, Location> byInvoice = new HashMap<>();
+    private final HashMap<String, Location> byProtectedId = new HashMap<>();
+    private final HashMap<String, TreeSet<Location>> byDevice = new HashMap<>();
+    private Segment active;
+    private long nextSeq;
+    private int taxNumber;
+    private boolean closed;
+
+    private ReceiptIndex(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public static ReceiptIndex open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens (or creates) an index in the given directory.
+     *
+     * @param directory the directory holding the segment files (created if missing)
+     * @param segmentSize the size of each segment file in bytes
+     * @return the opened index
+     * @throws IOException if the segments can't be read
+     */
+    public static ReceiptIndex open(Path directory, int segmentSize) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("null directory");
+
+        if (segmentSize < 4 * MAX_RECORD_SIZE)
+            throw new IllegalArgumentException("segmentSize (" + segmentSize + ") is too small");
+
+        Files.createDirectories(directory);
+
+        ReceiptIndex index = new ReceiptIndex(directory, segmentSize);
+        try {
+            index.load();
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    private void load() throws IOException {
+        ArrayList<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+                try {
+                    ids.add(Integer.parseInt(number));
+                } catch (NumberFormatException e) {
+                    // not ours
+                }
+            }
+        }
+        Collections.sort(ids);
+
+        for (int id : ids) {
+            Segment segment = Segment.open(segmentPath(id), id, segmentSize);
+            segments.put(id, segment);
+
+            ByteBuffer buf = segment.buffer;
+            int pos = 0;
+            while (true) {
+                int length = readRecordLength(buf, pos);
+                if (length <= 0)
+                    break;
+
+                ReceiptRecord record = decode(buf, pos + RECORD_HEADER_SIZE);
+                if (taxNumber == 0) {
+                    taxNumber = record.getTaxNumber();
+                } else if (record.getTaxNumber() != taxNumber) {
+                    throw new IOException("The index has records of more than one tax number (" + taxNumber + " and " + record.getTaxNumber() + ")");
+                }
+
+                long seq = buf.getLong(pos + RECORD_HEADER_SIZE);
+                addToIndexes(record, new Location(segment, pos, seq, issueKey(record)));
+                nextSeq = Math.max(nextSeq, seq + 1);
+                pos += RECORD_HEADER_SIZE + length;
+            }
+            segment.writePos = pos;
+            nextSegmentId.set(id + 1);
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(nextSegmentId.getAndIncrement());
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * Records a fiscalised invoice, replacing any previous record with the same invoice identifier.
+     * The record is written to the mapped file immediately, but is only guaranteed to survive
+     * an operating system crash after {@link #flush()}.
+     *
+     * @throws IllegalArgumentException if the index already has records of another tax number
+     */
+    public void record(ReceiptRecord record) throws IOException {
+        if (record == null)
+            throw new IllegalArgumentException("null record");
+
+        byte[] encoded = encode(record);
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (taxNumber != 0 && record.getTaxNumber() != taxNumber)
+                throw new IllegalArgumentException("The record's taxNumber (" + record.getTaxNumber() + ") differs from the index's (" + taxNumber + ")");
+
+            long seq = nextSeq++;
+            Location location = append(encoded, seq);
+            addToIndexes(record, new Location(location.segment, location.offset, seq, issueKey(record)));
+            taxNumber = record.getTaxNumber();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the record with the given invoice identifier, or null if there is none
+     */
+    public ReceiptRecord findByInvoice(InvoiceIdentifier identifier) {
+        if (identifier == null)
+            throw new IllegalArgumentException("null identifier");
+
+        String key = invoiceKey(identifier.getBusinessPremiseId(), identifier.getElectronicDeviceId(), identifier.getInvoiceNumber());
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return read(byInvoice.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the record with the given protected ID (ZOI, in any letter case), or null if there is none
+     */
+    public ReceiptRecord findByProtectedId(String protectedId) {
+        if (protectedId == null)
+            throw new IllegalArgumentException("null protectedId");
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            return read(byProtectedId.get(protectedId.toLowerCase(Locale.ROOT)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lists the invoices of a single electronic device that were issued in the given time range,
+     * ordered by issue time.
+     *
+     * @param businessPremiseId the business premise ID
+     * @param electronicDeviceId the electronic device ID
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return the matching records
+     */
+    public List<ReceiptRecord> scanDevice(String businessPremiseId, String electronicDeviceId, LocalDateTime from, LocalDateTime to) {
+        if (businessPremiseId == null || electronicDeviceId == null || from == null || to == null)
+            throw new IllegalArgumentException("null argument");
+
+        Location fromKey = new Location(null, 0, Long.MIN_VALUE, issueKey(from));
+        Location toKey = new Location(null, 0, Long.MIN_VALUE, issueKey(to));
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            TreeSet<Location> locations = byDevice.get(deviceKey(businessPremiseId, electronicDeviceId));
+            if (locations == null || fromKey.compareTo(toKey) >= 0)
+                return Collections.emptyList();
+
+            ArrayList<ReceiptRecord> result = new ArrayList<>();
+            for (Location location : locations.subSet(fromKey, true, toKey, false))
+                result.add(read(location));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the tax number of the records in the index, or 0 if it has none yet
+     */
+    public int getTaxNumber() {
+        lock.readLock().lock();
+        try {
+            return taxNumber;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of records in the index (not counting replaced ones)
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byInvoice.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all written records to the storage device.
+     */
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (Segment segment : segments.values())
+                segment.buffer.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reclaims space taken by replaced records. The live records of each full segment that
+     * contains replaced records are copied to new segments, after which the segment is deleted.
+     * <p>
+     * The records are read under the read lock and written to the new segments (and forced to
+     * the storage device) without holding any lock, so lookups and recording carry on in the
+     * meantime; only switching the index over to the copies and deleting the old segments
+     * excludes them. Records that are replaced during compaction are simply not switched over.
+     *
+     * @return the number of segments deleted
+     */
+    public int compact() throws IOException {
+        compactionLock.lock();
+        try {
+            ArrayList<Segment> compacted = new ArrayList<>();
+            ArrayList<Copy> copies = new ArrayList<>();
+
+            lock.readLock().lock();
+            try {
+                checkOpen();
+
+                HashMap<Segment, ArrayList<Location>> candidates = new HashMap<>();
+                for (Segment segment : segments.values())
+                    if (segment != active && segment.liveCount < segment.totalCount)
+                        candidates.put(segment, new ArrayList<>());
+
+                if (candidates.isEmpty())
+                    return 0;
+
+                for (Location location : byInvoice.values()) {
+                    ArrayList<Location> live = candidates.get(location.segment);
+                    if (live != null)
+                        live.add(location);
+                }
+
+                for (Map.Entry<Segment, ArrayList<Location>> entry : candidates.entrySet()) {
+                    Segment segment = entry.getKey();
+                    ArrayList<Location> live = entry.getValue();
+                    live.sort(Comparator.comparingLong(l -> l.seq));
+
+                    for (Location old : live) {
+                        byte[] payload = new byte[readRecordLength(segment.buffer, old.offset)];
+                        ByteBuffer src = segment.buffer.duplicate();
+                        src.position(old.offset + RECORD_HEADER_SIZE);
+                        src.get(payload);
+                        copies.add(new Copy(old, payload));
+                    }
+                    compacted.add(segment);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            // the new segments aren't visible to anyone else until they are switched over to
+            ArrayList<Segment> written = new ArrayList<>();
+            try {
+                Segment target = null;
+                for (Copy copy : copies) {
+                    int offset = target != null ? appendTo(target, copy.payload) : -1;
+                    if (offset < 0) {
+                        int id = nextSegmentId.getAndIncrement();
+                        target = Segment.open(segmentPath(id), id, segmentSize);
+                        written.add(target);
+                        offset = appendTo(target, copy.payload);
+                    }
+                    copy.moved = new Location(target, offset, copy.old.seq, copy.old.issueKey);
+                }
+
+                for (Segment segment : written)
+                    segment.buffer.force();
+            } catch (IOException | RuntimeException e) {
+                discard(written);
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    discard(written);
+                    return 0;
+                }
+
+                for (Segment segment : written)
+                    segments.put(segment.id, segment);
+
+                for (Copy copy : copies) {
+                    ReceiptRecord record = decode(ByteBuffer.wrap(copy.payload), 0);
+                    if (byInvoice.get(invoiceKey(record)) == copy.old) {
+                        addToIndexes(record, copy.moved);
+                    } else {
+                        copy.moved.segment.totalCount++; // replaced while we were copying
+                    }
+                }
+
+                for (Segment segment : compacted) {
+                    segments.remove(segment.id);
+                    segment.close();
+                    Files.deleteIfExists(segment.path);
+                }
+
+                return compacted.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private static void discard(List<Segment> segments) {
+        for (Segment segment : segments) {
+            try {
+                segment.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                // the copies are harmless, they are superseded or ignored when loading
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #compact()} periodically on the given executor. Errors are ignored
+     * (compaction is retried on the next run); cancel the returned future to stop.
+     */
+    public ScheduledFuture<?> scheduleCompaction(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        if (executor == null || unit == null)
+            throw new IllegalArgumentException("null argument");
+
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                if (!isClosed())
+                    compact();
+            } catch (Exception e) {
+                // try again next time
+            }
+        }, period, period, unit);
+    }
+
+    private boolean isClosed() {
+        lock.readLock().lock();
+        try {
+            return closed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+
+            IOException error = null;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.buffer.force();
+                    segment.close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            segments.clear();
+            byInvoice.clear();
+            byProtectedId.clear();
+            byDevice.clear();
+
+            if (error != null)
+                throw error;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("The index has been closed");
+    }
+
+    /**
+     * Appends the payload with the given sequence number to the active segment, and returns its
+     * location (with seq and issueKey left empty).
+     */
+    private Location append(byte[] payload, long seq) throws IOException {
+        ByteBuffer.wrap(payload).putLong(0, seq);
+
+        int offset = appendTo(active, payload);
+        if (offset < 0) {
+            active = createSegment(nextSegmentId.getAndIncrement());
+            offset = appendTo(active, payload);
+        }
+
+        return new Location(active, offset, 0, 0);
+    }
+
+    /**
+     * Appends the payload to the segment, and returns its offset, or -1 if it doesn't fit.
+     */
+    private static int appendTo(Segment segment, byte[] payload) {
+        int needed = RECORD_HEADER_SIZE + payload.length;
+        if (segment.writePos + needed > segment.buffer.capacity())
+            return -1;
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        MappedByteBuffer buf = segment.buffer;
+        int offset = segment.writePos;
+        ByteBuffer dst = buf.duplicate();
+        dst.position(offset + RECORD_HEADER_SIZE);
+        dst.put(payload);
+        buf.putInt(offset + 4, (int) crc.getValue());
+        buf.putInt(offset, payload.length); // written last, so a torn record is never seen as complete
+
+        segment.writePos = offset + needed;
+        return offset;
+    }
+
+    private void addToIndexes(ReceiptRecord record, Location location) {
+        location.segment.totalCount++;
+        location.segment.liveCount++;
+
+        String invoiceKey = invoiceKey(record);
+        String deviceKey = deviceKey(record.getBusinessPremiseId(), record.getElectronicDeviceId());
+
+        Location previous = byInvoice.get(invoiceKey);
+        if (previous != null && previous.seq > location.seq) {
+            // we're loading an older copy of a record that was moved by compaction
+            location.segment.liveCount--;
+            return;
+        }
+
+        if (previous != null) {
+            previous.segment.liveCount--;
+            byProtectedId.remove(read(previous).getProtectedId(), previous);
+            byDevice.get(deviceKey).remove(previous);
+        }
+
+        byInvoice.put(invoiceKey, location);
+        byProtectedId.put(record.getProtectedId().toLowerCase(Locale.ROOT), location);
+        byDevice.computeIfAbsent(deviceKey, k -> new TreeSet<>()).add(location);
+    }
+
+    private ReceiptRecord read(Location location) {
+        if (location == null)
+            return null;
+
+        return decode(location.segment.buffer, location.offset + RECORD_HEADER_SIZE);
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = Segment.open(segmentPath(id), id, segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return the length of the record at pos, or 0 if there is no complete record there
+     */
+    private static int readRecordLength(ByteBuffer buf, int pos) {
+        if (pos + RECORD_HEADER_SIZE > buf.limit())
+            return 0;
+
+        int length = buf.getInt(pos);
+        if (length <= 0 || length > MAX_RECORD_SIZE || pos + RECORD_HEADER_SIZE + length > buf.limit())
+            return 0;
+
+        ByteBuffer payload = buf.duplicate();
+        payload.position(pos + RECORD_HEADER_SIZE);
+        payload.limit(pos + RECORD_HEADER_SIZE + length);
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != buf.getInt(pos + 4))
+            return 0;
+
+        return length;
+    }
+
+    // payload layout: seq, taxNumber, issue time, invoice amount, payment amount, EOR, ZOI, premise, device, number
+    private static byte[] encode(ReceiptRecord record) {
+        byte[] premise = record.getBusinessPremiseId().getBytes(UTF_8);
+        byte[] device = record.getElectronicDeviceId().getBytes(UTF_8);
+        byte[] number = record.getInvoiceNumber().getBytes(UTF_8);
+        byte[] zoi = parseProtectedId(record.getProtectedId());
+
+        int size = 8 + 4 + 8 + 8 + 8 + 16 + 16 + 3 * 2 + premise.length + device.length + number.length;
+        if (size > MAX_RECORD_SIZE)
+            throw new IllegalArgumentException("Record is too large");
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putLong(0);
+        buf.putInt(record.getTaxNumber());
+        buf.putLong(issueKey(record));
+        buf.putLong(record.getInvoiceAmountUnscaled());
+        buf.putLong(record.getPaymentAmountUnscaled());
+        buf.putLong(record.getUniqueInvoiceId().getMostSignificantBits());
+        buf.putLong(record.getUniqueInvoiceId().getLeastSignificantBits());
+        buf.put(zoi);
+        putString(buf, premise);
+        putString(buf, device);
+        putString(buf, number);
+        return buf.array();
+    }
+
+    private static ReceiptRecord decode(ByteBuffer source, int offset) {
+        ByteBuffer buf = source.duplicate();
+        buf.position(offset + 8);
+
+        int taxNumber = buf.getInt();
+        LocalDateTime issueDateTime = LocalDateTime.ofEpochSecond(buf.getLong(), 0, ZoneOffset.UTC);
+        long invoiceAmount = buf.getLong();
+        long paymentAmount = buf.getLong();
+        UUID uniqueInvoiceId = new UUID(buf.getLong(), buf.getLong());
+        byte[] zoi = new byte[16];
+        buf.get(zoi);
+        String premise = getString(buf);
+        String device = getString(buf);
+        String number = getString(buf);
+
+        return new ReceiptRecord(taxNumber, premise, device, number, toHexString(zoi), uniqueInvoiceId, issueDateTime, invoiceAmount, paymentAmount);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] parseProtectedId(String protectedId) {
+        if (protectedId.length() != 32)
+            throw new IllegalArgumentException("protectedId must have 32 hex digits");
+
+        byte[] result = new byte[16];
+        for (int i = 0; i < 16; i++) {
+            int hi = Character.digit(protectedId.charAt(2 * i), 16);
+            int lo = Character.digit(protectedId.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0)
+                throw new IllegalArgumentException("protectedId must have 32 hex digits");
+            result[i] = (byte) (hi << 4 | lo);
+        }
+        return result;
+    }
+
+    private static long issueKey(ReceiptRecord record) {
+        return issueKey(record.getIssueDateTime());
+    }
+
+    private static long issueKey(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static String invoiceKey(ReceiptRecord record) {
+        return invoiceKey(record.getBusinessPremiseId(), record.getElectronicDeviceId(), record.getInvoiceNumber());
+    }
+
+    private static String invoiceKey(String premiseId, String deviceId, String invoiceNumber) {
+        return premiseId + '\u0000' + deviceId + '\u0000' + invoiceNumber;
+    }
+
+    private static String deviceKey(String premiseId, String deviceId) {
+        return premiseId + '\u0000' + deviceId;
+    }
+
+    private static class Segment {
+        final Path path;
+        final int id;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePos;
+        int totalCount;
+        int liveCount;
+
+        private Segment(Path path, int id, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.id = id;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+            try {
+                long mapSize = Math.max(size, channel.size());
+                return new Segment(path, id, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static class Copy {
+        final Location old;
+        final byte[] payload;
+        Location moved;
+
+        Copy(Location old, byte[] payload) {
+            this.old = old;
+            this.payload = payload;
+        }
+    }
+
+    private static class Location implements Comparable<Location> {
+        final Segment segment;
+        final int offset;
+        final long seq;
+        final long issueKey;
+
+        Location(Segment segment, int offset, long seq, long issueKey) {
+            this.segment = segment;
+            this.offset = offset;
+            this.seq = seq;
+            this.issueKey = issueKey;
+        }
+
+        @Override
+        public int compareTo(Location other) {
+            int result = Long.compare(issueKey, other.issueKey);
+            return result != 0 ? result : Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.mslenc.fursinvoices.index;
+
+import com.github.mslenc.fursinvoices.dto.Invoice;
+import com.github.mslenc.fursinvoices.dto.InvoiceIdentifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A single fiscalised invoice, as stored in a {@link ReceiptIndex}: its identifier,
+ * the protected ID (ZOI) and the unique invoice ID (EOR) returned by FURS, together
+ * with the issue time and amounts needed for reprints.
+ */
+public class ReceiptRecord {
+    private final int taxNumber;
+    private final String businessPremiseId;
+    private final String electronicDeviceId;
+    private final String invoiceNumber;
+    private final String protectedId;
+    private final UUID uniqueInvoiceId;
+    private final LocalDateTime issueDateTime;
+    private final long invoiceAmountUnscaled;
+    private final long paymentAmountUnscaled;
+
+    public ReceiptRecord(int taxNumber, String businessPremiseId, String electronicDeviceId, String invoiceNumber,
+                         String protectedId, UUID uniqueInvoiceId, LocalDateTime issueDateTime,
+                         long invoiceAmountUnscaled, long paymentAmountUnscaled) {
+
+        this.taxNumber = taxNumber;
+        this.businessPremiseId = requireNonNull(businessPremiseId, "businessPremiseId");
+        this.electronicDeviceId = requireNonNull(electronicDeviceId, "electronicDeviceId");
+        this.invoiceNumber = requireNonNull(invoiceNumber, "invoiceNumber");
+        this.protectedId = requireNonNull(protectedId, "protectedId");
+        this.uniqueInvoiceId = requireNonNull(uniqueInvoiceId, "uniqueInvoiceId");
+        this.issueDateTime = requireNonNull(issueDateTime, "issueDateTime");
+        this.invoiceAmountUnscaled = invoiceAmountUnscaled;
+        this.paymentAmountUnscaled = paymentAmountUnscaled;
+    }
+
+    /**
+     * Creates a record from a submitted invoice (which must have its protected ID computed)
+     * and the unique invoice ID that FURS returned for it.
+     */
+    public static ReceiptRecord of(Invoice invoice, UUID uniqueInvoiceId) {
+        requireNonNull(invoice, "invoice");
+        InvoiceIdentifier id = requireNonNull(invoice.getInvoiceIdentifier(), "Missing invoiceIdentifier");
+
+        return new ReceiptRecord(
+            requireNonNull(invoice.getTaxNumber(), "Missing taxNumber"),
+            id.getBusinessPremiseId(),
+            id.getElectronicDeviceId(),
+            id.getInvoiceNumber(),
+            requireNonNull(invoice.getProtectedId(), "Missing protectedId"),
+            uniqueInvoiceId,
+            invoice.getIssueDateTime(),
+            invoice.getInvoiceAmountUnscaled(),
+            invoice.getPaymentAmountUnscaled()
+        );
+    }
+
+    public int getTaxNumber() {
+        return taxNumber;
+    }
+
+    public String getBusinessPremiseId() {
+        return businessPremiseId;
+    }
+
+    public String getElectronicDeviceId() {
+        return electronicDeviceId;
+    }
+
+    public String getInvoiceNumber() {
+        return invoiceNumber;
+    }
+
+    public InvoiceIdentifier getInvoiceIdentifier() {
+        return new InvoiceIdentifier(businessPremiseId, electronicDeviceId, invoiceNumber);
+    }
+
+    /**
+     * The protected ID (ZOI) of the invoice, as 32 lower-case hex digits.
+     */
+    public String getProtectedId() {
+        return protectedId;
+    }
+
+    /**
+     * The unique invoice ID (EOR) returned by FURS.
+     */
+    public UUID getUniqueInvoiceId() {
+        return uniqueInvoiceId;
+    }
+
+    public LocalDateTime getIssueDateTime() {
+        return issueDateTime;
+    }
+
+    public BigDecimal getInvoiceAmount() {
+        return toBigDecimal(invoiceAmountUnscaled);
+    }
+
+    public long getInvoiceAmountUnscaled() {
+        return invoiceAmountUnscaled;
+    }
+
+    public BigDecimal getPaymentAmount() {
+        return toBigDecimal(paymentAmountUnscaled);
+    }
+
+    public long getPaymentAmountUnscaled() {
+        return paymentAmountUnscaled;
+    }
+
+    private static BigDecimal toBigDecimal(long unscaled) {
+        return unscaled == NULL_UNSCALED ? null : BigDecimal.valueOf(unscaled, 2);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import java.util.Base64;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class MessageIds {
+    private MessageIds() {}
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([A-Za-z0-9_=-]*)\\.([A-Za-z0-9_=-]*)\\.");
+    private static final Pattern MESSAGE_ID = Pattern.compile("\"MessageID\"\\s*:\\s*\"([0-9a-fA-F-]{36})\"");
+
+    /**
+     * Extracts the message ID from a request body, which is either plain JSON or a token
+     * envelope with the JSON in the JWS payload. Returns null if there is none.
+     */
+    static UUID extract(byte[] requestBody) {
+        if (requestBody == null)
+            return null;
+
+        String json = new String(requestBody, UTF_8);
+
+        Matcher token = TOKEN.matcher(json);
+        if (token.find()) {
+            try {
+                json = new String(Base64.getUrlDecoder().decode(token.group(2)), UTF_8);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        Matcher messageId = MESSAGE_ID.matcher(json);
+        if (!messageId.find())
+            return null;
+
+        try {
+            return UUID.fromString(messageId.group(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import java.net.URL;
+import java.util.UUID;
+
+/**
+ * A single HTTP exchange read from a {@link TrafficRecording}.
+ */
+public class RecordedExchange {
+    private final int sequence;
+    private final URL url;
+    private final UUID messageId;
+    private final long startOffsetNanos;
+    private final long durationNanos;
+    private final byte[] requestBytes;
+    private final byte[] responseBytes;
+    private final String error;
+
+    RecordedExchange(int sequence, URL url, UUID messageId, long startOffsetNanos, long durationNanos,
+                     byte[] requestBytes, byte[] responseBytes, String error) {
+
+        this.sequence = sequence;
+        this.url = url;
+        this.messageId = messageId;
+        this.startOffsetNanos = startOffsetNanos;
+        this.durationNanos = durationNanos;
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.error = error;
+    }
+
+    /**
+     * The position of the exchange in the recording, starting with 0.
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * The message ID of the request, or null if it had none (e.g. echo requests).
+     */
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    /**
+     * The time between the start of the recording and the start of this exchange, which
+     * can be used to reproduce the original traffic shape.
+     */
+    public long getStartOffsetNanos() {
+        return startOffsetNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public byte[] getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * The response body, or null if the exchange failed.
+     */
+    public byte[] getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * The message of the error the exchange failed with, or null if it succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.io.IOException;
+
+/**
+ * A {@link HttpClient} that passes requests on to another one, recording each exchange
+ * with a {@link TrafficRecorder}. If recording fails, the exchange still returns the response
+ * (or throws the error) of the delegate; the failure is logged and counted by the recorder.
+ */
+public class RecordingHttpClient implements HttpClient {
+    private final HttpClient delegate;
+    private final TrafficRecorder recorder;
+
+    public RecordingHttpClient(HttpClient delegate, TrafficRecorder recorder) {
+        if (delegate == null)
+            throw new IllegalArgumentException("null delegate");
+        if (recorder == null)
+            throw new IllegalArgumentException("null recorder");
+
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public byte[] execute(HttpRequest request) throws IOException {
+        long startNanos = System.nanoTime();
+
+        byte[] response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException e) {
+            recorder.recordQuietly(request, startNanos, null, e);
+            throw e;
+        }
+
+        recorder.recordQuietly(request, startNanos, response, null);
+        return response;
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link HttpClientAsync} that passes requests on to another one, recording each exchange
+ * with a {@link TrafficRecorder}. If recording fails, the exchange still completes with the
+ * response (or error) of the delegate; the failure is logged and counted by the recorder.
+ */
+public class RecordingHttpClientAsync implements HttpClientAsync {
+    private final HttpClientAsync delegate;
+    private final TrafficRecorder recorder;
+
+    public RecordingHttpClientAsync(HttpClientAsync delegate, TrafficRecorder recorder) {
+        if (delegate == null)
+            throw new IllegalArgumentException("null delegate");
+        if (recorder == null)
+            throw new IllegalArgumentException("null recorder");
+
+        this.delegate = delegate;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> execute(HttpRequest request) {
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<byte[]> future = delegate.execute(request);
+        if (future == null)
+            throw new NullPointerException("null future returned from delegate");
+
+        return future.whenComplete((response, error) -> {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+
+            recorder.recordQuietly(request, startNanos, response, error);
+        });
+    }
+}
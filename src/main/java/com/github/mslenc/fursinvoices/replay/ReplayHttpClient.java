@@ -0,0 +1,39 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpClient;
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link HttpClient} that doesn't connect anywhere, but answers requests with responses
+ * from a {@link TrafficRecording}, after waiting for the original duration of the exchange
+ * multiplied by <tt>latencyScale</tt> (so 1 reproduces the recorded latencies and 0 answers
+ * immediately). Recorded failures are replayed as IOExceptions.
+ */
+public class ReplayHttpClient implements HttpClient {
+    private final Replayer replayer;
+
+    public ReplayHttpClient(TrafficRecording recording, ReplayMatching matching, double latencyScale) {
+        this.replayer = new Replayer(recording, matching, latencyScale);
+    }
+
+    @Override
+    public byte[] execute(HttpRequest request) throws IOException {
+        RecordedExchange exchange = replayer.match(request);
+
+        long delayNanos = replayer.delayNanos(exchange);
+        if (delayNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying");
+            }
+        }
+
+        return Replayer.responseOf(exchange);
+    }
+}
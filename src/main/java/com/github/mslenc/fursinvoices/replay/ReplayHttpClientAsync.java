@@ -0,0 +1,45 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpClientAsync;
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The asynchronous version of {@link ReplayHttpClient}, which completes the futures on
+ * <tt>scheduler</tt> after the (scaled) recorded latency.
+ */
+public class ReplayHttpClientAsync implements HttpClientAsync {
+    private final Replayer replayer;
+    private final ScheduledExecutorService scheduler;
+
+    public ReplayHttpClientAsync(TrafficRecording recording, ReplayMatching matching, double latencyScale, ScheduledExecutorService scheduler) {
+        if (scheduler == null)
+            throw new IllegalArgumentException("null scheduler");
+
+        this.replayer = new Replayer(recording, matching, latencyScale);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> execute(HttpRequest request) {
+        CompletableFuture<byte[]> promise = new CompletableFuture<>();
+
+        try {
+            RecordedExchange exchange = replayer.match(request);
+            scheduler.schedule(() -> {
+                try {
+                    promise.complete(Replayer.responseOf(exchange));
+                } catch (Throwable t) {
+                    promise.completeExceptionally(t);
+                }
+            }, replayer.delayNanos(exchange), TimeUnit.NANOSECONDS);
+        } catch (Throwable t) {
+            promise.completeExceptionally(t);
+        }
+
+        return promise;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.mslenc.fursinvoices.replay;
+
+/**
+ * How a replaying transport chooses the recorded exchange to answer a request with.
+ */
+public enum ReplayMatching {
+    /**
+     * The exchange with the same message ID as the request (requests without a message ID,
+     * like echo, are matched by sequence). This requires replaying the same requests, with
+     * their original headers.
+     */
+    MESSAGE_ID,
+
+    /**
+     * The exchanges in recorded order, regardless of the requests, wrapping around at the
+     * end. This is useful for replaying the traffic shape with new requests.
+     */
+    SEQUENCE
+}
@@ -0,0 +1,55 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+class Replayer {
+    private final TrafficRecording recording;
+    private final ReplayMatching matching;
+    private final double latencyScale;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    Replayer(TrafficRecording recording, ReplayMatching matching, double latencyScale) {
+        if (recording == null)
+            throw new IllegalArgumentException("null recording");
+        if (matching == null)
+            throw new IllegalArgumentException("null matching");
+        if (!(latencyScale >= 0.0))
+            throw new IllegalArgumentException("latencyScale must not be negative");
+        if (recording.size() == 0)
+            throw new IllegalArgumentException("The recording is empty");
+
+        this.recording = recording;
+        this.matching = matching;
+        this.latencyScale = latencyScale;
+    }
+
+    RecordedExchange match(HttpRequest request) throws IOException {
+        if (matching == ReplayMatching.MESSAGE_ID) {
+            UUID messageId = MessageIds.extract(request.getContent());
+            if (messageId != null) {
+                RecordedExchange exchange = recording.findByMessageId(messageId);
+                if (exchange == null)
+                    throw new IOException("No recorded exchange with MessageID " + messageId);
+                return exchange;
+            }
+        }
+
+        int index = (int) (nextSequence.getAndIncrement() % recording.size());
+        return recording.getExchanges().get(index);
+    }
+
+    long delayNanos(RecordedExchange exchange) {
+        return (long) (exchange.getDurationNanos() * latencyScale);
+    }
+
+    static byte[] responseOf(RecordedExchange exchange) throws IOException {
+        if (exchange.getError() != null)
+            throw new IOException("Replayed error: " + exchange.getError());
+
+        return exchange.getResponseBytes();
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import com.github.mslenc.fursinvoices.http.HttpRequest;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes HTTP exchanges to a compact (gzipped binary) file, which can be read back with
+ * {@link TrafficRecording#load(Path)}. Use it through {@link RecordingHttpClient} or
+ * {@link RecordingHttpClientAsync}. Recording is thread-safe; the file is complete only
+ * after {@link #close()}.
+ * <p>
+ * Each record is encoded by the calling thread, and only written to the file under the lock,
+ * which is a {@link ReentrantLock} rather than a monitor, so a virtual thread blocked on the
+ * file doesn't pin its carrier. After the first failed write, the recorder stops writing (and
+ * further calls fail), as anything after it would be unreadable anyway.
+ */
+public class TrafficRecorder implements Closeable {
+    static final int MAGIC = 0x46525331; // "FRS1"
+    private static final int MAX_ERROR_LENGTH = 16384;
+    private static final Logger log = Logger.getLogger(TrafficRecorder.class.getName());
+
+    private final DataOutputStream out;
+    private final long startNanos;
+    private final AtomicLong failureCount = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean closed;
+    private IOException writeError;
+
+    public TrafficRecorder(Path file) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("null file");
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), 65536, true), 65536));
+        this.startNanos = System.nanoTime();
+
+        out.writeInt(MAGIC);
+    }
+
+    /**
+     * Records an exchange.
+     *
+     * @param requestStartNanos the value of {@link System#nanoTime()} when the request was started
+     * @param responseBytes the response body, or null if the exchange failed
+     * @param error the error, or null if the exchange succeeded
+     */
+    public void record(HttpRequest request, long requestStartNanos, byte[] responseBytes, Throwable error) throws IOException {
+        byte[] record = encode(request, requestStartNanos, responseBytes, error);
+
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            checkNotFailed();
+            try {
+                out.write(record);
+            } catch (IOException e) {
+                writeError = e;
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] encode(HttpRequest request, long requestStartNanos, byte[] responseBytes, Throwable error) throws IOException {
+        long durationNanos = System.nanoTime() - requestStartNanos;
+        UUID messageId = MessageIds.extract(request.getContent());
+        byte[] requestBytes = request.getContent() != null ? request.getContent() : new byte[0];
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(requestBytes.length + (responseBytes != null ? responseBytes.length : 0) + 256);
+        DataOutputStream data = new DataOutputStream(bytes);
+
+        data.writeLong(requestStartNanos - startNanos);
+        data.writeLong(durationNanos);
+        data.writeUTF(request.getUrl().toString());
+
+        data.writeBoolean(messageId != null);
+        if (messageId != null) {
+            data.writeLong(messageId.getMostSignificantBits());
+            data.writeLong(messageId.getLeastSignificantBits());
+        }
+
+        data.writeInt(requestBytes.length);
+        data.write(requestBytes);
+
+        if (error == null) {
+            data.writeBoolean(true);
+            data.writeInt(responseBytes.length);
+            data.write(responseBytes);
+        } else {
+            String message = String.valueOf(error.getMessage());
+            if (message.length() > MAX_ERROR_LENGTH)
+                message = message.substring(0, MAX_ERROR_LENGTH);
+
+            data.writeBoolean(false);
+            data.writeUTF(message);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private void checkNotFailed() throws IOException {
+        if (writeError != null)
+            throw new IOException("The recording stopped after an earlier write failed", writeError);
+    }
+
+    /**
+     * Like {@link #record(HttpRequest, long, byte[], Throwable)}, but doesn't throw. Used by
+     * the recording clients, so that a failure to record never fails the exchange itself
+     * (which FURS may have already processed). Failures are counted (see {@link #getFailureCount()})
+     * and logged, the first one as a warning.
+     */
+    void recordQuietly(HttpRequest request, long requestStartNanos, byte[] responseBytes, Throwable error) {
+        try {
+            record(request, requestStartNanos, responseBytes, error);
+        } catch (Throwable t) {
+            boolean first = failureCount.getAndIncrement() == 0;
+            log.log(first ? Level.WARNING : Level.FINE, "Failed to record an exchange with " + request.getUrl(), t);
+        }
+    }
+
+    /**
+     * Returns the number of exchanges the recording clients failed to record.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            checkNotFailed();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                writeError = e;
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+
+            closed = true;
+            out.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
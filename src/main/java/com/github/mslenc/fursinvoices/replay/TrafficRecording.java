@@ -0,0 +1,90 @@
+package com.github.mslenc.fursinvoices.replay;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The exchanges written by a {@link TrafficRecorder}, in the order they were recorded.
+ */
+public class TrafficRecording {
+    private final List<RecordedExchange> exchanges;
+    private final Map<UUID, RecordedExchange> byMessageId;
+
+    private TrafficRecording(List<RecordedExchange> exchanges) {
+        this.exchanges = Collections.unmodifiableList(exchanges);
+        this.byMessageId = new HashMap<>();
+        for (RecordedExchange exchange : exchanges)
+            if (exchange.getMessageId() != null)
+                byMessageId.putIfAbsent(exchange.getMessageId(), exchange);
+    }
+
+    /**
+     * Reads a recording. A recording that was not closed properly (e.g. because the process
+     * was killed) is read up to the last complete exchange.
+     */
+    public static TrafficRecording load(Path file) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("null file");
+
+        List<RecordedExchange> exchanges = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 65536), 65536))) {
+            if (in.readInt() != TrafficRecorder.MAGIC)
+                throw new IOException("Not a traffic recording: " + file);
+
+            while (true) {
+                RecordedExchange exchange;
+                try {
+                    exchange = readExchange(in, exchanges.size());
+                } catch (EOFException e) {
+                    break;
+                }
+                exchanges.add(exchange);
+            }
+        }
+
+        return new TrafficRecording(exchanges);
+    }
+
+    private static RecordedExchange readExchange(DataInputStream in, int sequence) throws IOException {
+        long startOffsetNanos = in.readLong();
+        long durationNanos = in.readLong();
+        URL url = new URL(in.readUTF());
+
+        UUID messageId = null;
+        if (in.readBoolean())
+            messageId = new UUID(in.readLong(), in.readLong());
+
+        byte[] requestBytes = new byte[in.readInt()];
+        in.readFully(requestBytes);
+
+        byte[] responseBytes = null;
+        String error = null;
+        if (in.readBoolean()) {
+            responseBytes = new byte[in.readInt()];
+            in.readFully(responseBytes);
+        } else {
+            error = in.readUTF();
+        }
+
+        return new RecordedExchange(sequence, url, messageId, startOffsetNanos, durationNanos, requestBytes, responseBytes, error);
+    }
+
+    public List<RecordedExchange> getExchanges() {
+        return exchanges;
+    }
+
+    public int size() {
+        return exchanges.size();
+    }
+
+    /**
+     * Returns the first exchange with the given message ID, or null if there is none.
+     */
+    public RecordedExchange findByMessageId(UUID messageId) {
+        return byMessageId.get(messageId);
+    }
+}
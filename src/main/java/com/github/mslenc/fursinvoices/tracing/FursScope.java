@@ -0,0 +1,11 @@
+package com.github.mslenc.fursinvoices.tracing;
+
+/**
+ * @see FursSpan#makeCurrent()
+ */
+public interface FursScope extends AutoCloseable {
+    @Override
+    void close();
+
+    FursScope NOOP = () -> { };
+}
@@ -0,0 +1,60 @@
+package com.github.mslenc.fursinvoices.tracing;
+
+/**
+ * A single span created by a {@link FursTracer}.
+ */
+public interface FursSpan {
+    /**
+     * Returns false if attributes set on the span are discarded anyway, so that callers
+     * can skip computing them.
+     */
+    default boolean isRecording() {
+        return true;
+    }
+
+    void setAttribute(String key, String value);
+
+    void setAttribute(String key, long value);
+
+    void recordError(Throwable error);
+
+    /**
+     * Makes this span the current one on the calling thread (e.g. so that HTTP client
+     * instrumentation attaches its own spans to it), until the returned scope is closed.
+     */
+    default FursScope makeCurrent() {
+        return FursScope.NOOP;
+    }
+
+    void end();
+
+    /**
+     * The span used when no tracer is configured, which does nothing.
+     */
+    FursSpan NOOP = new FursSpan() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+
+        }
+
+        @Override
+        public void setAttribute(String key, long value) {
+
+        }
+
+        @Override
+        public void recordError(Throwable error) {
+
+        }
+
+        @Override
+        public void end() {
+
+        }
+    };
+}
@@ -0,0 +1,29 @@
+package com.github.mslenc.fursinvoices.tracing;
+
+/**
+ * The names of spans and attributes produced by the clients.
+ */
+public class FursSpanNames {
+    private FursSpanNames() {}
+
+    public static final String ECHO = "furs.echo";
+    public static final String INVOICE = "furs.invoice";
+    public static final String SALES_BOOK_INVOICE = "furs.salesBookInvoice";
+    public static final String BUSINESS_PREMISE = "furs.businessPremise";
+
+    public static final String CHECK_CONSISTENCY = "furs.checkConsistency";
+    public static final String COMPUTE_PROTECTED_ID = "furs.computeProtectedId";
+    public static final String WRAP_IN_TOKEN = "furs.wrapInTokenForm";
+    public static final String HTTP = "furs.http";
+    public static final String VERIFY_SIGNATURE = "furs.verifySignature";
+
+    public static final String ATTR_TAX_NUMBER = "furs.tax_number";
+    public static final String ATTR_PREMISE_ID = "furs.business_premise_id";
+    public static final String ATTR_DEVICE_ID = "furs.electronic_device_id";
+    public static final String ATTR_MESSAGE_ID = "furs.message_id";
+    public static final String ATTR_PAYLOAD_BYTES = "furs.payload_bytes";
+    public static final String ATTR_REQUEST_BYTES = "furs.request_bytes";
+    public static final String ATTR_RESPONSE_BYTES = "furs.response_bytes";
+    public static final String ATTR_HTTP_ATTEMPTS = "furs.http_attempts";
+    public static final String ATTR_ERROR_CODE = "furs.error_code";
+}
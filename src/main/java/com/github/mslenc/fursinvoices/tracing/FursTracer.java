@@ -0,0 +1,35 @@
+package com.github.mslenc.fursinvoices.tracing;
+
+/**
+ * A minimal tracing SPI, which can be implemented on top of OpenTelemetry or any other
+ * tracing library. The clients create one span per call (e.g. {@link FursSpanNames#INVOICE}),
+ * with nested spans for each stage of processing (computing the protected ID, signing,
+ * the HTTP exchange and verifying the response).
+ * <p>
+ * Spans of a single call may be started and ended on different threads (when using
+ * {@link com.github.mslenc.fursinvoices.FursClientAsync}), so the parent of nested spans is
+ * always passed explicitly rather than taken from thread-local context. The span of a call
+ * itself is started on the calling thread, with {@link #currentSpan()} as its parent, so that
+ * it joins the caller's trace.
+ */
+public interface FursTracer {
+    /**
+     * Starts a new span.
+     *
+     * @param name the name of the span (see {@link FursSpanNames})
+     * @param parent the parent span, or null for a top-level span
+     * @return the new span (not null)
+     */
+    FursSpan startSpan(String name, FursSpan parent);
+
+    /**
+     * Returns the span that is current on the calling thread in the underlying tracing
+     * library (e.g. a wrapper of OpenTelemetry's <tt>Span.current()</tt>), which becomes the
+     * parent of the span of each call made on that thread.
+     *
+     * @return the current span, or null if there is none (the default)
+     */
+    default FursSpan currentSpan() {
+        return null;
+    }
+}
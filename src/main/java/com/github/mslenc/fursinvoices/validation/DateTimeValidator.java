@@ -1,7 +1,5 @@
 package com.github.mslenc.fursinvoices.validation;
 
-import com.github.mslenc.fursinvoices.FursEnv;
-
 import java.time.Instant;
 import java.time.LocalDateTime;
 
@@ -27,6 +25,6 @@ public class DateTimeValidator {
         if (instant == null)
             throw new IllegalArgumentException("null " + propertyName);
 
-        return validate(LocalDateTime.ofInstant(instant, FursEnv.EUROPE_LJUBLJANA));
+        return validate(ZoneOffsetCache.EUROPE_LJUBLJANA.toLocalDateTime(instant));
     }
 }
@@ -79,36 +79,117 @@ public class DecimalValidator {
     }
 
     public BigDecimal validateAndConvert(double value) {
+        return toBigDecimal(validateAndConvertUnscaled(value));
+    }
+
+    public BigDecimal validateAndConvert(Double value) {
+        return toBigDecimal(validateAndConvertUnscaled(value));
+    }
+
+    /**
+     * Like {@link #validateAndNormalize(BigDecimal)}, but returns the unscaled value
+     * (e.g. 1220 for 12.20 with scale 2), or {@link #NULL_UNSCALED} instead of null.
+     */
+    public long validateAndNormalizeUnscaled(BigDecimal value) {
+        BigDecimal normalized = validateAndNormalize(value);
+        if (normalized == null)
+            return NULL_UNSCALED;
+
+        // for a compact BigDecimal, this doesn't allocate a BigInteger like unscaledValue() does
+        return normalized.scaleByPowerOfTen(scale).longValueExact();
+    }
+
+    /**
+     * Like {@link #validateAndConvert(double)}, but returns the unscaled value
+     * (e.g. 1220 for 12.20 with scale 2), or {@link #NULL_UNSCALED} instead of null.
+     */
+    public long validateAndConvertUnscaled(double value) {
         if (Double.isNaN(value))
             throw new IllegalArgumentException("NaN " + propertyName);
 
         if (nullZeroMode == ZERO_TO_NULL && value == 0.0)
-            return null;
+            return NULL_UNSCALED;
 
         long unscaled = Math.round(value * scaleMultiplier);
 
         if (unscaled < minUnscaled || unscaled > maxUnscaled)
             throw new IllegalArgumentException(propertyName + " (" + value + ") is out of range " + minimum + " .. " + maximum);
 
-        return BigDecimal.valueOf(unscaled, scale);
+        return unscaled;
     }
 
-    public BigDecimal validateAndConvert(Double value) {
+    /**
+     * @see #validateAndConvertUnscaled(double)
+     */
+    public long validateAndConvertUnscaled(Double value) {
         if (value == null) {
             if (nullZeroMode == NO_NULLS) {
                 throw new IllegalArgumentException("null " + propertyName);
             } else {
-                return null;
+                return NULL_UNSCALED;
             }
         }
 
-        return validateAndConvert(value.doubleValue());
+        return validateAndConvertUnscaled(value.doubleValue());
+    }
+
+    /**
+     * Converts an unscaled value (as returned by the <tt>...Unscaled</tt> methods) back
+     * into a BigDecimal with this validator's scale.
+     */
+    public BigDecimal toBigDecimal(long unscaled) {
+        if (unscaled == NULL_UNSCALED)
+            return null;
+
+        return BigDecimal.valueOf(unscaled, scale);
     }
 
     public BigDecimal getNormalizedZero() {
         return normalizedZero;
     }
 
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Appends the plain decimal representation of an unscaled value (the same as
+     * <tt>BigDecimal.valueOf(unscaled, scale).toPlainString()</tt>), without creating
+     * any intermediate objects.
+     */
+    public static StringBuilder appendPlain(StringBuilder sb, long unscaled, int scale) {
+        if (unscaled == NULL_UNSCALED)
+            throw new IllegalArgumentException("NULL_UNSCALED has no representation");
+
+        if (unscaled < 0) {
+            sb.append('-');
+            unscaled = -unscaled;
+        }
+
+        if (scale <= 0) {
+            sb.append(unscaled);
+            for (int i = scale; i < 0; i++)
+                sb.append('0');
+            return sb;
+        }
+
+        long multiplier = powerOfTen(scale);
+        long fraction = unscaled % multiplier;
+
+        sb.append(unscaled / multiplier);
+        sb.append('.');
+        for (long digit = multiplier / 10; digit > 1 && fraction < digit; digit /= 10)
+            sb.append('0');
+        sb.append(fraction);
+
+        return sb;
+    }
+
+    /**
+     * Used by the <tt>...Unscaled</tt> methods to represent null.
+     */
+    public static final long NULL_UNSCALED = Long.MIN_VALUE;
+
     static long powerOfTen(int exponent) {
         long result = 1;
         while (exponent-->0)
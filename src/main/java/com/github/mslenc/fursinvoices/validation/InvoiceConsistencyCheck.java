@@ -0,0 +1,249 @@
+package com.github.mslenc.fursinvoices.validation;
+
+import com.github.mslenc.fursinvoices.dto.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import static com.github.mslenc.fursinvoices.validation.DecimalValidator.NULL_UNSCALED;
+
+/**
+ * Checks that the amounts of an invoice add up, before it is signed and sent to FURS, which
+ * would otherwise only reject it after the round trip. The checks are:
+ * <ul>
+ *     <li>everything checked by {@link Invoice#validate(ValidationErrors)}</li>
+ *     <li>each VAT tax amount (and flat-rate compensation amount) matches its rate applied to its
+ *         taxable amount, within the line tolerance</li>
+ *     <li>the invoice amount equals the sum of all the amounts in the taxes per seller (taxable
+ *         amounts, taxes, flat-rate compensations, other taxes, exempt, reverse-charge,
+ *         non-taxable and special-rules amounts), within the total tolerance</li>
+ *     <li>the payment amount equals the invoice amount minus the returns amount</li>
+ *     <li>reference invoices were issued no later than the invoice and aren't the invoice itself</li>
+ * </ul>
+ * All computation is done on the fixed-point values, so a consistent invoice is checked without
+ * allocating anything. Instances are immutable after configuration and can be shared.
+ */
+public class InvoiceConsistencyCheck {
+    private long lineTolerance = 1;
+    private long totalTolerance = 1;
+    private boolean checkInvoiceTotal = true;
+
+    /**
+     * Sets the largest allowed difference between a tax amount and its rate applied to its
+     * taxable amount. The default is 0.01, i.e. just rounding.
+     * @return this, for fluent interface
+     */
+    public InvoiceConsistencyCheck setLineTolerance(BigDecimal lineTolerance) {
+        this.lineTolerance = toUnscaled(lineTolerance, "lineTolerance");
+        return this;
+    }
+
+    public BigDecimal getLineTolerance() {
+        return BigDecimal.valueOf(lineTolerance, 2);
+    }
+
+    /**
+     * Sets the largest allowed difference between the invoice amount and the sum of its parts
+     * (and between the payment amount and the invoice amount minus returns). The default is 0.01.
+     * @return this, for fluent interface
+     */
+    public InvoiceConsistencyCheck setTotalTolerance(BigDecimal totalTolerance) {
+        this.totalTolerance = toUnscaled(totalTolerance, "totalTolerance");
+        return this;
+    }
+
+    public BigDecimal getTotalTolerance() {
+        return BigDecimal.valueOf(totalTolerance, 2);
+    }
+
+    /**
+     * Sets whether the invoice and payment amounts are checked against the sum of the taxes
+     * per seller. Turn this off if the invoices legitimately contain amounts that aren't broken
+     * down there. The default is true.
+     * @return this, for fluent interface
+     */
+    public InvoiceConsistencyCheck setCheckInvoiceTotal(boolean checkInvoiceTotal) {
+        this.checkInvoiceTotal = checkInvoiceTotal;
+        return this;
+    }
+
+    public boolean isCheckInvoiceTotal() {
+        return checkInvoiceTotal;
+    }
+
+    /**
+     * Checks the invoice and returns all the problems found.
+     */
+    public ValidationErrors check(Invoice invoice) {
+        ValidationErrors errors = new ValidationErrors();
+        check(invoice, errors);
+        return errors;
+    }
+
+    /**
+     * Checks the invoice, adding the problems found to <tt>errors</tt>.
+     * @return true if no problems were found
+     */
+    public boolean check(Invoice invoice, ValidationErrors errors) {
+        if (invoice == null)
+            throw new IllegalArgumentException("null invoice");
+
+        int before = errors.size();
+        invoice.validate(errors);
+
+        checkAmounts(invoice.getTaxesPerSeller(), invoice.getInvoiceAmountUnscaled(), invoice.getReturnsAmountUnscaled(), invoice.getPaymentAmountUnscaled(), errors);
+
+        List<ReferenceInvoice> references = invoice.getReferenceInvoices();
+        for (int i = 0; i < references.size(); i++) {
+            errors.push("referenceInvoices", i);
+            checkReference(invoice, references.get(i), errors);
+            errors.pop();
+        }
+
+        return errors.size() == before;
+    }
+
+    /**
+     * Checks an invoice issued from a sales book and returns all the problems found. The same
+     * rules apply as for other invoices, except that there are no reference invoices to check.
+     */
+    public ValidationErrors check(SalesBookInvoice invoice) {
+        ValidationErrors errors = new ValidationErrors();
+        check(invoice, errors);
+        return errors;
+    }
+
+    /**
+     * Checks an invoice issued from a sales book, adding the problems found to <tt>errors</tt>.
+     * @return true if no problems were found
+     */
+    public boolean check(SalesBookInvoice invoice, ValidationErrors errors) {
+        if (invoice == null)
+            throw new IllegalArgumentException("null invoice");
+
+        int before = errors.size();
+        invoice.validate(errors);
+        checkAmounts(invoice.getTaxesPerSeller(), invoice.getInvoiceAmountUnscaled(), invoice.getReturnsAmountUnscaled(), invoice.getPaymentAmountUnscaled(), errors);
+        return errors.size() == before;
+    }
+
+    private void checkAmounts(List<TaxPerSeller> taxesPerSeller, long invoiceAmount, long returnsAmount, long paymentAmount, ValidationErrors errors) {
+        long sum = 0;
+        for (int i = 0; i < taxesPerSeller.size(); i++) {
+            errors.push("taxesPerSeller", i);
+            sum += checkTaxPerSeller(taxesPerSeller.get(i), errors);
+            errors.pop();
+        }
+
+        if (!checkInvoiceTotal || invoiceAmount == NULL_UNSCALED || taxesPerSeller.isEmpty())
+            return;
+
+        if (Math.abs(invoiceAmount - sum) > totalTolerance)
+            errors.add("invoiceAmount", "invoiceAmount " + format(invoiceAmount) + " differs from the sum of taxesPerSeller " + format(sum));
+
+        if (paymentAmount != NULL_UNSCALED) {
+            long expected = returnsAmount == NULL_UNSCALED ? invoiceAmount : invoiceAmount - returnsAmount;
+            if (Math.abs(paymentAmount - expected) > totalTolerance)
+                errors.add("paymentAmount", "paymentAmount " + format(paymentAmount) + " differs from invoiceAmount minus returnsAmount " + format(expected));
+        }
+    }
+
+    /**
+     * Checks the lines and returns the sum of all the amounts.
+     */
+    private long checkTaxPerSeller(TaxPerSeller taxPerSeller, ValidationErrors errors) {
+        long sum = 0;
+
+        List<VAT> vats = taxPerSeller.getVats();
+        for (int i = 0; i < vats.size(); i++) {
+            VAT vat = vats.get(i);
+            long expected = applyRate(vat.getTaxableAmountUnscaled(), vat.getTaxRateUnscaled());
+            if (Math.abs(vat.getTaxAmountUnscaled() - expected) > lineTolerance) {
+                errors.push("vats", i);
+                errors.add("taxAmount", "taxAmount " + format(vat.getTaxAmountUnscaled()) + " doesn't match " + format(vat.getTaxRateUnscaled()) + "% of " + format(vat.getTaxableAmountUnscaled()) + " (" + format(expected) + ")");
+                errors.pop();
+            }
+            sum += vat.getTaxableAmountUnscaled() + vat.getTaxAmountUnscaled();
+        }
+
+        FlatRateCompensation flatRate = taxPerSeller.getFlatRateCompensation();
+        if (flatRate != null) {
+            long expected = applyRate(flatRate.getFlatRateTaxableAmountUnscaled(), flatRate.getFlatRateRateUnscaled());
+            if (Math.abs(flatRate.getFlatRateAmountUnscaled() - expected) > lineTolerance) {
+                errors.push("flatRateCompensation");
+                errors.add("flatRateAmount", "flatRateAmount " + format(flatRate.getFlatRateAmountUnscaled()) + " doesn't match " + format(flatRate.getFlatRateRateUnscaled()) + "% of " + format(flatRate.getFlatRateTaxableAmountUnscaled()) + " (" + format(expected) + ")");
+                errors.pop();
+            }
+            sum += flatRate.getFlatRateTaxableAmountUnscaled() + flatRate.getFlatRateAmountUnscaled();
+        }
+
+        sum += orZero(taxPerSeller.getOtherTaxesAmountUnscaled());
+        sum += orZero(taxPerSeller.getExemptVATTaxableAmountUnscaled());
+        sum += orZero(taxPerSeller.getReverseVatTaxableAmountUnscaled());
+        sum += orZero(taxPerSeller.getNonTaxableAmountUnscaled());
+        sum += orZero(taxPerSeller.getSpecialTaxRulesAmountUnscaled());
+
+        return sum;
+    }
+
+    private void checkReference(Invoice invoice, ReferenceInvoice reference, ValidationErrors errors) {
+        if (reference.getReferenceInvoiceIssueDateTime() != null && invoice.getIssueDateTime() != null &&
+                reference.getReferenceInvoiceIssueDateTime().isAfter(invoice.getIssueDateTime()))
+            errors.add("referenceInvoiceIssueDateTime", "referenceInvoiceIssueDateTime is after the invoice's issueDateTime");
+
+        if (sameIdentifier(reference.getReferenceInvoiceIdentifier(), invoice.getInvoiceIdentifier()))
+            errors.add("referenceInvoiceIdentifier", "the invoice refers to itself");
+    }
+
+    private static boolean sameIdentifier(InvoiceIdentifier a, InvoiceIdentifier b) {
+        if (a == null || b == null || a.getInvoiceNumber() == null)
+            return false;
+
+        return a.getInvoiceNumber().equals(b.getInvoiceNumber()) &&
+               a.getElectronicDeviceId() != null && a.getElectronicDeviceId().equals(b.getElectronicDeviceId()) &&
+               a.getBusinessPremiseId() != null && a.getBusinessPremiseId().equals(b.getBusinessPremiseId());
+    }
+
+    /**
+     * Applies a rate (in hundredths of a percent) to an amount (in hundredths), rounding half away from zero.
+     */
+    static long applyRate(long amount, long rate) {
+        long product;
+        try {
+            product = Math.multiplyExact(amount, rate);
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(rate)).divide(BigDecimal.valueOf(10000), 0, RoundingMode.HALF_UP).longValue();
+        }
+
+        long result = product / 10000;
+        long remainder = product % 10000;
+        if (remainder >= 5000) {
+            result++;
+        } else if (remainder <= -5000) {
+            result--;
+        }
+        return result;
+    }
+
+    private static long orZero(long unscaled) {
+        return unscaled == NULL_UNSCALED ? 0 : unscaled;
+    }
+
+    private static String format(long unscaled) {
+        return DecimalValidator.appendPlain(new StringBuilder(), unscaled, 2).toString();
+    }
+
+    private static long toUnscaled(BigDecimal value, String propertyName) {
+        if (value == null)
+            throw new IllegalArgumentException("null " + propertyName);
+        if (value.signum() < 0)
+            throw new IllegalArgumentException(propertyName + " must not be negative");
+
+        try {
+            return value.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(propertyName + " must have at most 2 decimal digits", e);
+        }
+    }
+}
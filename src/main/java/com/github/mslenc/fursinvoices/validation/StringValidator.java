@@ -1,40 +1,50 @@
 package com.github.mslenc.fursinvoices.validation;
 
-import static com.github.mslenc.fursinvoices.validation.StringValidator.CharsAllowed.ANY;
 import static com.github.mslenc.fursinvoices.validation.StringValidator.NullEmptyMode.EMPTY_TO_NULL;
 import static com.github.mslenc.fursinvoices.validation.StringValidator.NullEmptyMode.NO_NULLS;
 import static java.util.Objects.requireNonNull;
 
 public class StringValidator {
+    /**
+     * The sets of characters allowed. Except for ANY, they only contain ASCII characters
+     * and are stored as 128-bit lookup tables (two longs), so checking a character is a
+     * shift and a mask.
+     */
     public enum CharsAllowed {
-        ANY {
-            boolean isValidChar(char c) {
-                return true;
-            }
-        },
-        ASCII_ALNUM {
-            boolean isValidChar(char c) {
-                return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z');
-            }
-        },
-        HEX {
-            boolean isValidChar(char c) {
-                return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
-            }
-        },
-        VAT_ID_CHARS {
-            boolean isValidChar(char c) {
-                // TODO - allow hyphens? remove lower-case characters?
-                return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z');
-            }
-        },
-        DIGITS_ONLY {
-            boolean isValidChar(char c) {
-                return c >= '0' && c <= '9';
+        ANY(null),
+        ASCII_ALNUM("azAZ09"),
+        HEX("09afAF"),
+        // TODO - allow hyphens? remove lower-case characters?
+        VAT_ID_CHARS("azAZ09"),
+        DIGITS_ONLY("09");
+
+        private final long low;  // chars 0-63
+        private final long high; // chars 64-127
+
+        /**
+         * @param ranges pairs of characters, each pair being the first and last character of a range,
+         *               or null for any character
+         */
+        CharsAllowed(String ranges) {
+            long low = 0, high = 0;
+
+            if (ranges == null) {
+                low = high = -1L;
+            } else {
+                for (int i = 0; i < ranges.length(); i += 2) {
+                    for (char c = ranges.charAt(i); c <= ranges.charAt(i + 1); c++) {
+                        if (c < 64) {
+                            low |= 1L << c;
+                        } else {
+                            high |= 1L << (c - 64);
+                        }
+                    }
+                }
             }
-        };
 
-        abstract boolean isValidChar(char c);
+            this.low = low;
+            this.high = high;
+        }
     }
 
     public enum NullEmptyMode {
@@ -43,11 +53,19 @@ public class StringValidator {
         EMPTY_TO_NULL
     }
 
+    private static final int VALID = 0;
+    private static final int NULL_NOT_ALLOWED = 1;
+    private static final int BAD_LENGTH = 2;
+    private static final int BAD_CHAR = 3;
+
     private final String propertyName;
     private final int minLength;
     private final int maxLength;
     private final CharsAllowed charsAllowed;
     private final NullEmptyMode nullEmptyMode;
+    private final boolean anyChar;
+    private final long low;
+    private final long high;
 
     public StringValidator(String propertyName, int minLength, int maxLength, CharsAllowed charsAllowed, NullEmptyMode nullEmptyMode) {
         this.propertyName = requireNonNull(propertyName, "propertyName");
@@ -55,32 +73,84 @@ public class StringValidator {
         this.maxLength = maxLength;
         this.charsAllowed = requireNonNull(charsAllowed, "charsAllowed");
         this.nullEmptyMode = requireNonNull(nullEmptyMode, "nullEmptyMode");
+        this.anyChar = charsAllowed == CharsAllowed.ANY;
+        this.low = charsAllowed.low;
+        this.high = charsAllowed.high;
     }
 
-    public String validate(String value) {
-        if (value == null) {
-            if (nullEmptyMode == NO_NULLS) {
-                throw new IllegalArgumentException("null " + propertyName);
-            } else {
-                return null;
-            }
-        }
+    public String getPropertyName() {
+        return propertyName;
+    }
 
-        if (nullEmptyMode == EMPTY_TO_NULL && value.isEmpty())
-            return null;
+    /**
+     * Returns one of the result constants, without allocating anything.
+     */
+    private int check(String value) {
+        if (value == null)
+            return nullEmptyMode == NO_NULLS ? NULL_NOT_ALLOWED : VALID;
 
         int len = value.length();
+        if (len == 0 && nullEmptyMode == EMPTY_TO_NULL)
+            return VALID;
+
         if (len < minLength || len > maxLength)
-            throw new IllegalArgumentException("Length of " + propertyName + " must be between " + minLength + " and " + maxLength + ", but is " + len);
+            return BAD_LENGTH;
+
+        if (anyChar)
+            return VALID;
 
-        CharsAllowed chars = charsAllowed;
-        if (chars == ANY)
-            return value;
+        long low = this.low, high = this.high;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            // shifts only use the lowest 6 bits of c, so this selects the right bit in either half
+            if (c >= 128 || (((c < 64 ? low : high) >>> c) & 1L) == 0)
+                return BAD_CHAR;
+        }
 
-        for (int i = 0; i < len; i++)
-            if (!chars.isValidChar(value.charAt(i)))
-                throw new IllegalArgumentException(propertyName + " contains an invalid character (allowed=" + chars + ")");
+        return VALID;
+    }
+
+    private String normalize(String value) {
+        if (value != null && value.isEmpty() && nullEmptyMode == EMPTY_TO_NULL)
+            return null;
 
         return value;
     }
+
+    private String describe(int result, String value) {
+        switch (result) {
+            case NULL_NOT_ALLOWED:
+                return "null " + propertyName;
+            case BAD_LENGTH:
+                return "Length of " + propertyName + " must be between " + minLength + " and " + maxLength + ", but is " + value.length();
+            default:
+                return propertyName + " contains an invalid character (allowed=" + charsAllowed + ")";
+        }
+    }
+
+    public boolean isValid(String value) {
+        return check(value) == VALID;
+    }
+
+    public String validate(String value) {
+        int result = check(value);
+        if (result != VALID)
+            throw new IllegalArgumentException(describe(result, value));
+
+        return normalize(value);
+    }
+
+    /**
+     * Like {@link #validate(String)}, but adds the problem to <tt>errors</tt> instead of
+     * throwing, and returns null if the value is invalid.
+     */
+    public String validate(String value, ValidationErrors errors) {
+        int result = check(value);
+        if (result != VALID) {
+            errors.add(propertyName, describe(result, value));
+            return null;
+        }
+
+        return normalize(value);
+    }
 }
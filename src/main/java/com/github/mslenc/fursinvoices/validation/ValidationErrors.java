@@ -0,0 +1,163 @@
+package com.github.mslenc.fursinvoices.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects validation problems instead of throwing on the first one, so that all of them can
+ * be reported at once. The position in the object tree is tracked with {@link #push(String)}
+ * and {@link #pop()}; the path string is only built when a problem is actually added, so
+ * validating a correct object allocates nothing. An instance can be reused after {@link #clear()},
+ * but is not thread-safe.
+ */
+public class ValidationErrors {
+    public static class Violation {
+        private final String path;
+        private final String message;
+
+        Violation(String path, String message) {
+            this.path = path;
+            this.message = message;
+        }
+
+        /**
+         * The path of the offending property, e.g. <tt>taxesPerSeller[0].vat[1].taxRate</tt>.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + message;
+        }
+    }
+
+    private final ArrayList<Violation> violations = new ArrayList<>();
+    private final List<Violation> violationsView = Collections.unmodifiableList(violations);
+    private String[] names = new String[8];
+    private int[] indexes = new int[8];
+    private int depth;
+
+    /**
+     * Enters a nested object.
+     * @return this, for fluent interface
+     */
+    public ValidationErrors push(String name) {
+        return push(name, -1);
+    }
+
+    /**
+     * Enters a nested object that is an element of a list.
+     * @return this, for fluent interface
+     */
+    public ValidationErrors push(String name, int index) {
+        if (depth == names.length) {
+            names = Arrays.copyOf(names, depth * 2);
+            indexes = Arrays.copyOf(indexes, depth * 2);
+        }
+
+        names[depth] = name;
+        indexes[depth] = index;
+        depth++;
+        return this;
+    }
+
+    /**
+     * Leaves the object entered with the matching <tt>push</tt>.
+     * @return this, for fluent interface
+     */
+    public ValidationErrors pop() {
+        if (depth == 0)
+            throw new IllegalStateException("pop() without push()");
+
+        names[--depth] = null;
+        return this;
+    }
+
+    /**
+     * Adds a problem with a property of the current object.
+     * @return this, for fluent interface
+     */
+    public ValidationErrors add(String property, String message) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0)
+                sb.append('.');
+            sb.append(names[i]);
+            if (indexes[i] >= 0)
+                sb.append('[').append(indexes[i]).append(']');
+        }
+        if (property != null) {
+            if (depth > 0)
+                sb.append('.');
+            sb.append(property);
+        }
+
+        violations.add(new Violation(sb.toString(), message));
+        return this;
+    }
+
+    /**
+     * Adds a problem if <tt>value</tt> is null.
+     * @return true if the value was present
+     */
+    public boolean checkRequired(Object value, String property) {
+        if (value != null)
+            return true;
+
+        add(property, "null " + property);
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return violations.isEmpty();
+    }
+
+    public int size() {
+        return violations.size();
+    }
+
+    /**
+     * Returns an unmodifiable view of the problems, in the order they were found.
+     */
+    public List<Violation> getViolations() {
+        return violationsView;
+    }
+
+    /**
+     * Throws a {@link ValidationException} (an <tt>IllegalArgumentException</tt>) listing all
+     * the problems, if there are any.
+     */
+    public void throwIfAny() {
+        if (!violations.isEmpty())
+            throw new ValidationException(this);
+    }
+
+    public void clear() {
+        violations.clear();
+        while (depth > 0)
+            names[--depth] = null;
+    }
+
+    @Override
+    public String toString() {
+        if (violations.isEmpty())
+            return "no violations";
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(violations.size()).append(violations.size() == 1 ? " violation: " : " violations: ");
+        for (int i = 0; i < violations.size(); i++) {
+            if (i > 0)
+                sb.append("; ");
+            sb.append(violations.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.mslenc.fursinvoices.validation;
+
+/**
+ * Thrown by {@link ValidationErrors#throwIfAny()}, with all the problems found.
+ */
+public class ValidationException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final ValidationErrors errors;
+
+    public ValidationException(ValidationErrors errors) {
+        super(errors.toString());
+        this.errors = errors;
+    }
+
+    public ValidationErrors getErrors() {
+        return errors;
+    }
+}
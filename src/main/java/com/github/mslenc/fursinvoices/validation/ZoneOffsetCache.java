@@ -0,0 +1,80 @@
+package com.github.mslenc.fursinvoices.validation;
+
+import com.github.mslenc.fursinvoices.FursEnv;
+
+import java.time.*;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Converts instants to local date-times in a time zone, remembering the offset that applies
+ * between the last and the next transition, so that the zone rules are only consulted when a
+ * transition (e.g. to or from summer time) is crossed, rather than for every conversion.
+ */
+public class ZoneOffsetCache {
+    public static final ZoneOffsetCache EUROPE_LJUBLJANA = new ZoneOffsetCache(FursEnv.EUROPE_LJUBLJANA);
+
+    private final ZoneRules rules;
+    private volatile Period current;
+
+    public ZoneOffsetCache(ZoneId zone) {
+        if (zone == null)
+            throw new IllegalArgumentException("null zone");
+
+        this.rules = zone.getRules();
+        this.current = periodOf(Instant.now().getEpochSecond());
+    }
+
+    public ZoneOffset getOffset(Instant instant) {
+        return periodFor(instant.getEpochSecond()).offset;
+    }
+
+    public LocalDateTime toLocalDateTime(Instant instant) {
+        long epochSecond = instant.getEpochSecond();
+        return LocalDateTime.ofEpochSecond(epochSecond, instant.getNano(), periodFor(epochSecond).offset);
+    }
+
+    /**
+     * Returns the current local date-time, truncated to whole seconds.
+     */
+    public LocalDateTime now() {
+        long epochSecond = System.currentTimeMillis() / 1000;
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, periodFor(epochSecond).offset);
+    }
+
+    private Period periodFor(long epochSecond) {
+        Period period = current;
+        if (epochSecond >= period.from && epochSecond < period.until)
+            return period;
+
+        period = periodOf(epochSecond);
+
+        // only move the cache forward, so that converting an old instant doesn't evict the current period
+        if (period.from >= current.from)
+            current = period;
+
+        return period;
+    }
+
+    private Period periodOf(long epochSecond) {
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+
+        long from = previous != null ? previous.toEpochSecond() : Long.MIN_VALUE;
+        long until = next != null ? next.toEpochSecond() : Long.MAX_VALUE;
+        return new Period(from, until, rules.getOffset(instant));
+    }
+
+    private static class Period {
+        final long from;
+        final long until;
+        final ZoneOffset offset;
+
+        Period(long from, long until, ZoneOffset offset) {
+            this.from = from;
+            this.until = until;
+            this.offset = offset;
+        }
+    }
+}